@@ -16,21 +16,70 @@
 package io.github.zrdzn.bot.xorbot;
 
 import com.google.common.eventbus.EventBus;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
+import io.github.zrdzn.bot.xorbot.antispam.AntiSpamListener;
+import io.github.zrdzn.bot.xorbot.antispam.AntiSpamSettings;
+import io.github.zrdzn.bot.xorbot.antispam.DuplicateDetector;
+import io.github.zrdzn.bot.xorbot.antispam.FloodDetector;
+import io.github.zrdzn.bot.xorbot.antispam.RaidDetector;
+import io.github.zrdzn.bot.xorbot.antispam.SimHashIndex;
+import io.github.zrdzn.bot.xorbot.cache.DeletionIndex;
 import io.github.zrdzn.bot.xorbot.command.CommandListener;
 import io.github.zrdzn.bot.xorbot.command.CommandRegistry;
 import io.github.zrdzn.bot.xorbot.command.commands.BotInformationCommand;
+import io.github.zrdzn.bot.xorbot.command.commands.DeletedCommand;
 import io.github.zrdzn.bot.xorbot.command.commands.HelpCommand;
+import io.github.zrdzn.bot.xorbot.command.commands.LogsCommand;
+import io.github.zrdzn.bot.xorbot.command.commands.MassModerationCommand;
+import io.github.zrdzn.bot.xorbot.command.commands.ModulesCommand;
 import io.github.zrdzn.bot.xorbot.command.commands.MoneyCommand;
 import io.github.zrdzn.bot.xorbot.command.commands.SlowmodeCommand;
+import io.github.zrdzn.bot.xorbot.command.commands.SnipeCommand;
+import io.github.zrdzn.bot.xorbot.command.module.CommandModuleLoader;
+import io.github.zrdzn.bot.xorbot.database.BatchLoader;
+import io.github.zrdzn.bot.xorbot.database.CircuitBreaker;
+import io.github.zrdzn.bot.xorbot.database.DatabaseUnavailableException;
+import io.github.zrdzn.bot.xorbot.database.WriteReplayQueue;
+import io.github.zrdzn.bot.xorbot.diagnostics.RollingHistogram;
+import io.github.zrdzn.bot.xorbot.diagnostics.RuntimeDiagnostics;
+import io.github.zrdzn.bot.xorbot.economy.ActivityRewardFlusher;
+import io.github.zrdzn.bot.xorbot.economy.ActivityRewardListener;
+import io.github.zrdzn.bot.xorbot.economy.ActivityRewardTracker;
+import io.github.zrdzn.bot.xorbot.economy.EconomyPolicy;
+import io.github.zrdzn.bot.xorbot.economy.EconomyPolicyScheduler;
 import io.github.zrdzn.bot.xorbot.economy.EconomyRepository;
+import io.github.zrdzn.bot.xorbot.economy.EconomyRunRepository;
 import io.github.zrdzn.bot.xorbot.economy.EconomyService;
 import io.github.zrdzn.bot.xorbot.economy.XorEconomyService;
+import io.github.zrdzn.bot.xorbot.gateway.CacheProfile;
+import io.github.zrdzn.bot.xorbot.gateway.CacheProfileReporter;
+import io.github.zrdzn.bot.xorbot.gateway.EventDispatcher;
+import io.github.zrdzn.bot.xorbot.log.LogArchive;
 import io.github.zrdzn.bot.xorbot.log.LogListener;
+import io.github.zrdzn.bot.xorbot.log.LogPublisher;
+import io.github.zrdzn.bot.xorbot.log.LogRepository;
+import io.github.zrdzn.bot.xorbot.log.LogSuppressions;
+import io.github.zrdzn.bot.xorbot.logging.LoggingConfiguration;
+import io.github.zrdzn.bot.xorbot.logging.RingBufferAppender;
+import io.github.zrdzn.bot.xorbot.moderation.MassAction;
+import io.github.zrdzn.bot.xorbot.moderation.MassModerator;
+import io.github.zrdzn.bot.xorbot.rest.RestPriority;
+import io.github.zrdzn.bot.xorbot.rest.RestScheduler;
+import io.github.zrdzn.bot.xorbot.shard.ShardMetrics;
+import io.github.zrdzn.bot.xorbot.slowmode.AutoSlowmodeController;
+import io.github.zrdzn.bot.xorbot.slowmode.AutoSlowmodeListener;
+import io.github.zrdzn.bot.xorbot.slowmode.AutoSlowmodeSettings;
+import io.github.zrdzn.bot.xorbot.user.MemberRegistrar;
+import io.github.zrdzn.bot.xorbot.user.User;
 import io.github.zrdzn.bot.xorbot.user.UserRepository;
+import io.github.zrdzn.bot.xorbot.user.UserSnapshot;
+import io.github.zrdzn.bot.xorbot.user.UserSnapshotStore;
+import io.github.zrdzn.bot.xorbot.user.UsernameSynchronizer;
 import io.github.zrdzn.bot.xorbot.user.XorUserService;
-import net.dv8tion.jda.api.JDABuilder;
+import net.dv8tion.jda.api.sharding.DefaultShardManagerBuilder;
+import net.dv8tion.jda.api.sharding.ShardManager;
 import net.dv8tion.jda.internal.utils.JDALogger;
 import org.apache.log4j.BasicConfigurator;
 import org.slf4j.Logger;
@@ -38,10 +87,20 @@ import org.slf4j.Logger;
 import javax.security.auth.login.LoginException;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.nio.file.Path;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
 public class XorBot {
 
@@ -52,16 +111,195 @@ public class XorBot {
 
         boolean testBuild = args.length == 2 && args[1].equalsIgnoreCase("dev");
 
-        JDABuilder jdaBuilder = JDABuilder.createDefault(args[0]);
+        DefaultShardManagerBuilder shardManagerBuilder = DefaultShardManagerBuilder.createDefault(args[0]);
 
         XorBot app = new XorBot();
-        app.run(jdaBuilder, testBuild);
+        app.run(shardManagerBuilder, testBuild);
     }
 
-    public void run(JDABuilder jdaBuilder, boolean testBuild) throws LoginException {
-        BasicConfigurator.configure();
+    public void run(DefaultShardManagerBuilder shardManagerBuilder, boolean testBuild) throws LoginException {
+        Properties configuration = new Properties();
+        String fileName = "xorbot.config";
+        boolean configurationRead;
+        try (FileInputStream inputStream = new FileInputStream(fileName)) {
+            configuration.load(inputStream);
+            configurationRead = true;
+        } catch (IOException ex) {
+            configurationRead = false;
+        }
+
+        // Logging is configured from the configuration file, so it is read before anything is logged.
+        RingBufferAppender logAppender;
+        try {
+            logAppender = LoggingConfiguration.configure(configuration);
+        } catch (IllegalArgumentException exception) {
+            BasicConfigurator.configure();
+            JDALogger.getLog("DISCORD-BOT").error("Configuration contains invalid logging settings.", exception);
+            return;
+        }
+
         Logger logger = JDALogger.getLog("DISCORD-BOT");
 
+        if (!configurationRead) {
+            logger.error("Could not read configuration file.");
+            logAppender.close();
+            return;
+        }
+
+        logger.info("Read bot configuration file, logging asynchronously through a queue of {} events.", logAppender.getCapacity());
+
+        long logChannelId;
+        int shardTotal;
+        int shardMin;
+        int shardMax;
+        int shardMetricsInterval;
+        int snapshotInterval;
+        int messageCacheSize;
+        int messageVersions;
+        boolean logArchiveEnabled;
+        int logArchiveQueueSize;
+        int logArchiveBatchSize;
+        int logArchiveFlushMillis;
+        boolean activityRewardEnabled;
+        int activityReward;
+        int activityRewardCooldown;
+        int activityRewardMinLength;
+        int activityRewardFlushInterval;
+        int loaderWindowMillis;
+        int loaderBatchSize;
+        List<EconomyPolicy> economyPolicies = new ArrayList<>();
+        int economyPolicyChunkSize;
+        int economyPolicyCheckMinutes;
+        int restRouteTokens;
+        Map<RestPriority, Long> restDeadlines = new EnumMap<>(RestPriority.class);
+        int commandDeadlineSeconds;
+        int usernameSyncInterval;
+        boolean memberRegistrationEnabled;
+        int massModerationMaxTargets;
+        int deletionIndexRetention;
+        int deletionIndexCapacity;
+        int memberRegistrationChunkSize;
+        int databaseReplayQueueSize;
+        int databaseReplayInterval;
+        int databaseReplayMaxAttempts;
+        CircuitBreaker circuitBreaker;
+        CacheProfile cacheProfile;
+        AntiSpamSettings antiSpamSettings;
+        AutoSlowmodeSettings autoSlowmodeSettings;
+        try {
+            logChannelId = Long.parseLong(configuration.getProperty("channel_log_id"));
+            shardTotal = getInt(configuration, "shard_total", -1);
+            shardMin = getInt(configuration, "shard_min", -1);
+            shardMax = getInt(configuration, "shard_max", -1);
+            shardMetricsInterval = getInt(configuration, "shard_metrics_interval_seconds", 300);
+            snapshotInterval = getInt(configuration, "snapshot_interval_seconds", 300);
+            messageCacheSize = getInt(configuration, "message_cache_size", 1000);
+            messageVersions = getInt(configuration, "message_cache_versions", 10);
+            logArchiveEnabled = Boolean.parseBoolean(configuration.getProperty("log_archive_enabled", "true").trim());
+            logArchiveQueueSize = getInt(configuration, "log_archive_queue_size", 10000);
+            logArchiveBatchSize = getInt(configuration, "log_archive_batch_size", 100);
+            logArchiveFlushMillis = getInt(configuration, "log_archive_flush_millis", 1000);
+            activityRewardEnabled = Boolean.parseBoolean(configuration.getProperty("activity_reward_enabled", "true").trim());
+            activityReward = getInt(configuration, "activity_reward_amount", 1);
+            activityRewardCooldown = getInt(configuration, "activity_reward_cooldown_seconds", 60);
+            activityRewardMinLength = getInt(configuration, "activity_reward_min_length", 5);
+            activityRewardFlushInterval = getInt(configuration, "activity_reward_flush_seconds", 60);
+            loaderWindowMillis = getInt(configuration, "loader_window_millis", 2);
+            loaderBatchSize = getInt(configuration, "loader_batch_size", 100);
+
+            long interestBasisPoints = Math.round(Double.parseDouble(configuration.getProperty("economy_interest_percent", "0").trim()) * 100.0D);
+            if (interestBasisPoints > 0L) {
+                economyPolicies.add(EconomyPolicy.interest(interestBasisPoints,
+                    TimeUnit.HOURS.toMillis(getInt(configuration, "economy_interest_interval_hours", 24))));
+            }
+
+            long taxBasisPoints = Math.round(Double.parseDouble(configuration.getProperty("economy_tax_percent", "0").trim()) * 100.0D);
+            if (taxBasisPoints > 0L) {
+                economyPolicies.add(EconomyPolicy.tax(taxBasisPoints, getInt(configuration, "economy_tax_threshold", 100000),
+                    TimeUnit.HOURS.toMillis(getInt(configuration, "economy_tax_interval_hours", 24))));
+            }
+
+            economyPolicyChunkSize = getInt(configuration, "economy_policy_chunk_size", 1000);
+            economyPolicyCheckMinutes = getInt(configuration, "economy_policy_check_minutes", 10);
+            restRouteTokens = getInt(configuration, "rest_route_tokens", 2);
+            restDeadlines.put(RestPriority.COMMAND, TimeUnit.SECONDS.toMillis(getInt(configuration, "rest_command_deadline_seconds", 0)));
+            restDeadlines.put(RestPriority.LOG, TimeUnit.SECONDS.toMillis(getInt(configuration, "rest_log_deadline_seconds", 30)));
+            commandDeadlineSeconds = getInt(configuration, "command_deadline_seconds", 10);
+            usernameSyncInterval = getInt(configuration, "username_sync_interval_seconds", 60);
+            memberRegistrationEnabled = Boolean.parseBoolean(configuration.getProperty("member_registration_enabled", "true").trim());
+            memberRegistrationChunkSize = getInt(configuration, "member_registration_chunk_size", 1000);
+            massModerationMaxTargets = getInt(configuration, "mass_moderation_max_targets", 1000);
+            deletionIndexRetention = getInt(configuration, "deletion_index_retention_minutes", 60);
+            deletionIndexCapacity = getInt(configuration, "deletion_index_capacity", 10000);
+            databaseReplayQueueSize = getInt(configuration, "database_replay_queue_size", 1000);
+            databaseReplayInterval = getInt(configuration, "database_replay_interval_seconds", 5);
+            databaseReplayMaxAttempts = getInt(configuration, "database_replay_max_attempts", 5);
+        } catch (NumberFormatException exception) {
+            logger.error("Configuration contains an invalid number.", exception);
+            return;
+        }
+
+        // Every process of a sharded bot connects only its own range, a wrong range would open duplicate sessions.
+        if (shardMin >= 0 || shardMax >= 0) {
+            if (shardMin < 0 || shardMax < 0) {
+                logger.error("shard_min and shard_max must be specified together.");
+                return;
+            }
+
+            if (shardMax < shardMin) {
+                logger.error("shard_max must not be below shard_min.");
+                return;
+            }
+
+            if (shardTotal <= 0) {
+                logger.error("shard_total must be specified when using shard_min and shard_max.");
+                return;
+            }
+
+            if (shardMax >= shardTotal) {
+                logger.error("shard_max must be below shard_total.");
+                return;
+            }
+        }
+
+        if (databaseReplayMaxAttempts < 1) {
+            logger.error("database_replay_max_attempts must be above 0.");
+            return;
+        }
+
+        try {
+            cacheProfile = CacheProfile.fromConfiguration(configuration);
+        } catch (IllegalArgumentException exception) {
+            logger.error("Configuration contains an invalid cache profile.", exception);
+            return;
+        }
+
+        try {
+            antiSpamSettings = AntiSpamSettings.fromConfiguration(configuration);
+        } catch (IllegalArgumentException exception) {
+            logger.error("Configuration contains invalid anti-spam settings.", exception);
+            return;
+        }
+
+        try {
+            autoSlowmodeSettings = AutoSlowmodeSettings.fromConfiguration(configuration);
+        } catch (IllegalArgumentException exception) {
+            logger.error("Configuration contains invalid auto slowmode settings.", exception);
+            return;
+        }
+
+        try {
+            circuitBreaker = new CircuitBreaker(getInt(configuration, "database_breaker_window", 20),
+                getInt(configuration, "database_breaker_failure_percent", 50),
+                getInt(configuration, "database_breaker_slow_call_millis", 2000),
+                TimeUnit.SECONDS.toMillis(getInt(configuration, "database_breaker_open_seconds", 30)),
+                logger);
+        } catch (IllegalArgumentException exception) {
+            logger.error("Configuration contains invalid database circuit breaker settings.", exception);
+            return;
+        }
+        logger.info("Using channel with id {} as log channel.", logChannelId);
+
         String databaseConfig = testBuild ? "test_database" : "database";
         HikariDataSource dataSource = new HikariDataSource(new HikariConfig("/" + databaseConfig + ".properties"));
 
@@ -69,60 +307,288 @@ public class XorBot {
                 "id INT NOT NULL PRIMARY KEY AUTO_INCREMENT," +
                 "discord_id VARCHAR(20) NOT NULL UNIQUE KEY," +
                 "username VARCHAR(32) NOT NULL," +
-                "balance BIGINT UNSIGNED DEFAULT 0);";
-        try (Connection connection = dataSource.getConnection(); PreparedStatement statement = connection.prepareStatement(query)) {
+                "balance BIGINT UNSIGNED DEFAULT 0," +
+                "updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP," +
+                "INDEX users_updated_at (updated_at));";
+        String migrationQuery = "ALTER TABLE users " +
+                "ADD COLUMN IF NOT EXISTS updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP," +
+                "ADD INDEX IF NOT EXISTS users_updated_at (updated_at);";
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(query);
+             PreparedStatement migrationStatement = connection.prepareStatement(migrationQuery)) {
             logger.info("Checking if table 'users' exist...");
             if (statement.executeUpdate() == 0) {
                 logger.info("Table 'users' exists, skipping...");
             } else {
                 logger.info("Created new table 'users'.");
             }
+
+            migrationStatement.executeUpdate();
         } catch (SQLException exception) {
             logger.error("Could not create-if-not-exists table 'users'. Something went wrong.", exception);
             return;
         }
 
+        String economyRunsQuery = "CREATE TABLE IF NOT EXISTS economy_runs (" +
+                "id BIGINT NOT NULL PRIMARY KEY AUTO_INCREMENT," +
+                "policy VARCHAR(32) NOT NULL," +
+                "started_at BIGINT NOT NULL," +
+                "finished_at BIGINT NULL," +
+                "max_user_id BIGINT NOT NULL," +
+                "checkpoint BIGINT NOT NULL DEFAULT 0," +
+                "updated_rows BIGINT NOT NULL DEFAULT 0," +
+                "INDEX economy_runs_policy (policy, started_at));";
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(economyRunsQuery)) {
+            statement.executeUpdate();
+        } catch (SQLException exception) {
+            logger.error("Could not create-if-not-exists table 'economy_runs'. Something went wrong.", exception);
+            return;
+        }
+
+        // Every index ends with created_at, so searches by user or action page through a single index range.
+        String logQuery = "CREATE TABLE IF NOT EXISTS log_entries (" +
+                "id BIGINT NOT NULL PRIMARY KEY AUTO_INCREMENT," +
+                "guild_id BIGINT NOT NULL," +
+                "action VARCHAR(32) NOT NULL," +
+                "target_id BIGINT NOT NULL DEFAULT 0," +
+                "executor_id BIGINT NOT NULL DEFAULT 0," +
+                "created_at BIGINT NOT NULL," +
+                "details TEXT NOT NULL," +
+                "INDEX log_entries_guild (guild_id, created_at)," +
+                "INDEX log_entries_target (guild_id, target_id, created_at)," +
+                "INDEX log_entries_action (guild_id, action, created_at));";
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(logQuery)) {
+            statement.executeUpdate();
+        } catch (SQLException exception) {
+            logger.error("Could not create-if-not-exists table 'log_entries'. Something went wrong.", exception);
+            return;
+        }
+
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+            .setNameFormat("XorBot-Scheduler")
+            .setDaemon(true)
+            .build());
+
+        // Batch windows and command deadlines have to fire on time, so they never share a thread with database jobs.
+        ScheduledExecutorService timerScheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+            .setNameFormat("XorBot-Timer")
+            .setDaemon(true)
+            .build());
+
+        RestScheduler restScheduler = new RestScheduler(restRouteTokens, restDeadlines, logger);
+
         CommandRegistry commandRegistry = new CommandRegistry();
+        AutoSlowmodeController autoSlowmodeController = new AutoSlowmodeController(autoSlowmodeSettings, restScheduler, logger);
 
-        XorUserService userService = new XorUserService(new UserRepository(dataSource, logger));
-        userService.loadUsers();
-        logger.info("Loaded {} users from the database.", userService.getCachedUsers().size());
+        UserRepository userRepository = new UserRepository(dataSource, logger);
+        XorUserService userService = new XorUserService(userRepository,
+            new BatchLoader<Long, User>(discordIds -> userRepository.findAllByDiscordIds(discordIds)
+                .orElseThrow(() -> new DatabaseUnavailableException(false)), loaderWindowMillis, loaderBatchSize, timerScheduler),
+            circuitBreaker);
+        UserSnapshotStore snapshotStore = new UserSnapshotStore(Path.of(configuration.getProperty("snapshot_file", "users.snapshot")), logger);
 
-        EconomyService economyService = new XorEconomyService(new EconomyRepository(dataSource, logger));
+        long snapshotStart = System.nanoTime();
+        Optional<UserSnapshot> snapshotMaybe = snapshotStore.load();
+        if (snapshotMaybe.isPresent()) {
+            userService.loadSnapshot(snapshotMaybe.get());
+            logger.info("Loaded {} users from the snapshot in {} ms.", userService.getCachedUsers().size(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - snapshotStart));
 
-        logger.info("Registering default commands...");
-        commandRegistry.register(new HelpCommand(commandRegistry));
-        commandRegistry.register(new MoneyCommand(userService, economyService));
-        commandRegistry.register(new SlowmodeCommand());
-        commandRegistry.register(new BotInformationCommand(commandRegistry));
-        logger.info("Registered all default commands.");
+            scheduler.execute(() -> logger.info("Reconciled {} users changed since the snapshot.", userService.reconcile()));
+        } else {
+            userService.loadUsers();
+            logger.info("Loaded {} users from the database.", userService.getCachedUsers().size());
+        }
+
+        EconomyRepository economyRepository = new EconomyRepository(dataSource, logger);
+        WriteReplayQueue replayQueue = new WriteReplayQueue(databaseReplayQueueSize, databaseReplayMaxAttempts,
+            circuitBreaker, logger);
+        EconomyService economyService = new XorEconomyService(economyRepository,
+            new BatchLoader<>(economyRepository::getMoneyByDiscordIds, loaderWindowMillis, loaderBatchSize, timerScheduler),
+            circuitBreaker, replayQueue, userService::getCachedBalance);
+
+        ActivityRewardTracker activityRewardTracker = new ActivityRewardTracker(activityReward, activityRewardCooldown * 1000L);
+        ActivityRewardFlusher activityRewardFlusher = new ActivityRewardFlusher(activityRewardTracker, economyRepository, circuitBreaker, logger);
+        UsernameSynchronizer usernameSynchronizer = new UsernameSynchronizer(userService, userRepository, circuitBreaker, logger);
+
+        LogRepository logRepository = new LogRepository(dataSource, logger);
+        LogArchive logArchive = logArchiveEnabled
+            ? new LogArchive(logRepository, logArchiveQueueSize, logArchiveBatchSize, logger)
+            : null;
+        LogPublisher logPublisher = new LogPublisher(logChannelId, logArchive, restScheduler);
 
         logger.info("Initializing event bus...");
         EventBus eventBus = new EventBus("LogListener-EventBus");
 
-        logger.info("Reading bot configuration file...");
-        Properties configuration = new Properties();
-        String fileName = "xorbot.config";
-        try (FileInputStream inputStream = new FileInputStream(fileName)) {
-            configuration.load(inputStream);
-        } catch (IOException ex) {
-            logger.error("Could not read configuration file.");
-            return;
+        LogSuppressions logSuppressions = new LogSuppressions(TimeUnit.MINUTES.toMillis(10L));
+        DeletionIndex deletionIndex = new DeletionIndex(TimeUnit.MINUTES.toMillis(deletionIndexRetention), deletionIndexCapacity);
+        LogListener logListener = new LogListener(eventBus, logPublisher, logSuppressions, deletionIndex, restScheduler,
+            messageCacheSize, messageVersions);
+
+        RollingHistogram commandLatency = new RollingHistogram(6, TimeUnit.SECONDS.toMillis(10L));
+        LongAdder commandTimeouts = new LongAdder();
+        RuntimeDiagnostics diagnostics = new RuntimeDiagnostics(dataSource, logListener::getMessageCaches, commandLatency,
+            commandTimeouts);
+
+        RaidDetector raidDetector = new RaidDetector(antiSpamSettings);
+        MassModerator massModerator = new MassModerator(logPublisher, logSuppressions, restScheduler);
+
+        logger.info("Registering default commands...");
+        commandRegistry.register(new HelpCommand(commandRegistry, restScheduler));
+        commandRegistry.register(new MoneyCommand(userService, economyService, restScheduler));
+        commandRegistry.register(new SlowmodeCommand(autoSlowmodeController, restScheduler));
+        commandRegistry.register(new BotInformationCommand(commandRegistry, diagnostics, restScheduler));
+        commandRegistry.register(new LogsCommand(logRepository, restScheduler));
+        commandRegistry.register(new MassModerationCommand(MassAction.BAN, massModerator, raidDetector, massModerationMaxTargets, restScheduler));
+        commandRegistry.register(new MassModerationCommand(MassAction.KICK, massModerator, raidDetector, massModerationMaxTargets, restScheduler));
+        commandRegistry.register(new DeletedCommand(deletionIndex, deletionIndexRetention, restScheduler));
+        commandRegistry.register(new SnipeCommand(deletionIndex, restScheduler));
+        logger.info("Registered all default commands.");
+
+        Path modulesDirectory = Path.of(configuration.getProperty("modules_directory", "modules"));
+        CommandModuleLoader moduleLoader = new CommandModuleLoader(commandRegistry, restScheduler, logger);
+        commandRegistry.register(new ModulesCommand(moduleLoader, modulesDirectory, restScheduler));
+        int modules = moduleLoader.loadModules(modulesDirectory);
+        logger.info("Discovered {} command modules.", modules);
+
+        if (shardTotal > 0) {
+            shardManagerBuilder.setShardsTotal(shardTotal);
         }
 
-        long logChannelId;
-        try {
-            logChannelId = Long.parseLong(configuration.getProperty("channel_log_id"));
-        } catch (NumberFormatException exception) {
-            logger.error("channel_log_id is not a valid long number.");
-            return;
+        if (shardMin >= 0) {
+            shardManagerBuilder.setShards(shardMin, shardMax);
+            logger.info("Handling shards from {} to {} out of {}.", shardMin, shardMax, shardTotal);
         }
-        logger.info("Using channel with id {} as log channel.", logChannelId);
+
+        logger.info("Using '{}' cache profile.", cacheProfile.getName());
+        cacheProfile.apply(shardManagerBuilder);
+
+        ShardMetrics shardMetrics = new ShardMetrics(logger);
+
+        EventDispatcher eventDispatcher = new EventDispatcher(logger);
 
         logger.info("Registering listeners...");
-        jdaBuilder.addEventListeners(new CommandListener(commandRegistry, testBuild),
-            new LogListener(eventBus, logChannelId)).build();
-        logger.info("Registered all listeners. JDA Built, ready to go.");
+        new CacheProfileReporter(cacheProfile, logger).register(eventDispatcher);
+        new CommandListener(commandRegistry, shardMetrics, testBuild, commandLatency, TimeUnit.SECONDS.toMillis(commandDeadlineSeconds),
+            commandTimeouts, timerScheduler, restScheduler, logger).register(eventDispatcher);
+        logListener.register(eventDispatcher);
+        new AutoSlowmodeListener(autoSlowmodeController).register(eventDispatcher);
+
+        if (activityRewardEnabled) {
+            new ActivityRewardListener(activityRewardTracker, activityRewardMinLength).register(eventDispatcher);
+            logger.info("Enabled activity rewards of {} every {} seconds.", activityReward, activityRewardCooldown);
+        }
+
+        if (usernameSyncInterval > 0) {
+            usernameSynchronizer.register(eventDispatcher);
+        }
+
+        if (memberRegistrationEnabled) {
+            new MemberRegistrar(userService, memberRegistrationChunkSize, logger).register(eventDispatcher);
+        }
+
+        if (antiSpamSettings.isEnabled()) {
+            DuplicateDetector duplicateDetector = null;
+            if (antiSpamSettings.isDuplicateEnabled()) {
+                duplicateDetector = new DuplicateDetector(antiSpamSettings);
+                logger.info("Enabled duplicate spam detection, indexing up to {} messages using {} KiB.",
+                    antiSpamSettings.getDuplicateCapacity(),
+                    ((long) antiSpamSettings.getDuplicateCapacity() * SimHashIndex.getBytesPerEntry() + SimHashIndex.getFixedBytes()) / 1024L);
+            }
+
+            new AntiSpamListener(antiSpamSettings, new FloodDetector(antiSpamSettings), duplicateDetector, raidDetector, logPublisher,
+                restScheduler).register(eventDispatcher);
+            logger.info("Enabled message flood and join raid detection.");
+        }
+
+        shardManagerBuilder.addEventListeners(shardMetrics, eventDispatcher);
+
+        ShardManager shardManager = shardManagerBuilder.build();
+        logger.info("Registered all listeners. Shard manager built, ready to go.");
+
+        if (shardMetricsInterval > 0) {
+            scheduler.scheduleAtFixedRate(() -> {
+                shardMetrics.report(shardManager);
+                eventDispatcher.report();
+                restScheduler.report();
+                autoSlowmodeController.report();
+            }, shardMetricsInterval, shardMetricsInterval, TimeUnit.SECONDS);
+        }
+
+        autoSlowmodeController.start(shardManager, scheduler);
+        replayQueue.start(scheduler, databaseReplayInterval);
+
+        if (logArchive != null) {
+            logArchive.start(scheduler, logArchiveFlushMillis);
+        }
+
+        if (activityRewardEnabled) {
+            activityRewardFlusher.start(scheduler, activityRewardFlushInterval);
+        }
+
+        if (usernameSyncInterval > 0) {
+            usernameSynchronizer.start(scheduler, usernameSyncInterval);
+        }
+
+        ScheduledExecutorService policyScheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+            .setNameFormat("XorBot-EconomyPolicy")
+            .setDaemon(true)
+            .build());
+
+        if (!economyPolicies.isEmpty()) {
+            // Policy runs take long, they get their own thread to not delay flushes and replays.
+            new EconomyPolicyScheduler(economyPolicies, new EconomyRunRepository(dataSource, logger), economyPolicyChunkSize, logger)
+                .start(policyScheduler, TimeUnit.MINUTES.toSeconds(economyPolicyCheckMinutes));
+            logger.info("Scheduled {} economy policies.", economyPolicies.size());
+        }
+
+        if (snapshotInterval > 0) {
+            scheduler.scheduleAtFixedRate(() -> {
+                userService.reconcile();
+                snapshotStore.save(UserSnapshot.of(userService.getCachedUsers(), userService.getWatermark()));
+            }, snapshotInterval, snapshotInterval, TimeUnit.SECONDS);
+        }
+
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            logger.info("Shutting down...");
+            shardManager.shutdown();
+            scheduler.shutdown();
+            timerScheduler.shutdown();
+            policyScheduler.shutdown();
+
+            replayQueue.replay();
+            if (replayQueue.size() > 0) {
+                logger.warn("Database is unavailable, discarding {} queued writes.", replayQueue.size());
+            }
+
+            activityRewardFlusher.flush();
+            usernameSynchronizer.flush();
+
+            if (logArchive != null) {
+                logArchive.flush();
+                logger.info("Archived {} log entries, dropped {}.", logArchive.getArchived(), logArchive.getDropped());
+            }
+
+            if (snapshotStore.save(UserSnapshot.of(userService.getCachedUsers(), userService.getWatermark()))) {
+                logger.info("Saved snapshot of {} users.", userService.getCachedUsers().size());
+            }
+
+            dataSource.close();
+
+            logger.info("Shut down, dropped {} log events.", logAppender.getDropped());
+            logAppender.close();
+        }, "XorBot-Shutdown"));
+    }
+
+    private static int getInt(Properties configuration, String key, int defaultValue) {
+        String value = configuration.getProperty(key);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+
+        return Integer.parseInt(value.trim());
     }
 
 }
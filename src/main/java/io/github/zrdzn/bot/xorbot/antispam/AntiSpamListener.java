@@ -0,0 +1,182 @@
+/*
+ * Copyright (c) 2022 zrdzn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.zrdzn.bot.xorbot.antispam;
+
+import io.github.zrdzn.bot.xorbot.embed.EmbedHelper;
+import io.github.zrdzn.bot.xorbot.gateway.EventDispatcher;
+import io.github.zrdzn.bot.xorbot.log.LogAction;
+import io.github.zrdzn.bot.xorbot.log.LogPublisher;
+import io.github.zrdzn.bot.xorbot.rest.RestPriority;
+import io.github.zrdzn.bot.xorbot.rest.RestScheduler;
+import net.dv8tion.jda.api.Permission;
+import net.dv8tion.jda.api.entities.Guild;
+import net.dv8tion.jda.api.entities.Member;
+import net.dv8tion.jda.api.events.guild.member.GuildMemberJoinEvent;
+import net.dv8tion.jda.api.events.message.MessageReceivedEvent;
+import org.jetbrains.annotations.NotNull;
+
+public class AntiSpamListener {
+
+    private final AntiSpamSettings settings;
+    private final FloodDetector floodDetector;
+    private final DuplicateDetector duplicateDetector;
+    private final RaidDetector raidDetector;
+    private final LogPublisher logPublisher;
+    private final RestScheduler restScheduler;
+
+    /**
+     * @param duplicateDetector detector of near-identical messages, {@code null} if the detection is disabled
+     */
+    public AntiSpamListener(AntiSpamSettings settings, FloodDetector floodDetector, DuplicateDetector duplicateDetector,
+                            RaidDetector raidDetector, LogPublisher logPublisher, RestScheduler restScheduler) {
+        this.settings = settings;
+        this.floodDetector = floodDetector;
+        this.duplicateDetector = duplicateDetector;
+        this.raidDetector = raidDetector;
+        this.logPublisher = logPublisher;
+        this.restScheduler = restScheduler;
+    }
+
+    public void register(EventDispatcher dispatcher) {
+        dispatcher.registerGuildOnly(MessageReceivedEvent.class, "AntiSpamListener#onMessageReceived", this::onMessageReceived);
+        dispatcher.register(GuildMemberJoinEvent.class, "AntiSpamListener#onGuildMemberJoin", this::onGuildMemberJoin);
+    }
+
+    public void onMessageReceived(@NotNull MessageReceivedEvent event) {
+        if (!event.isFromGuild() || event.getAuthor().isBot()) {
+            return;
+        }
+
+        Guild guild = event.getGuild();
+        long now = System.currentTimeMillis();
+
+        int flags = this.floodDetector.check(guild.getIdLong(), event.getChannel().getIdLong(), event.getAuthor().getIdLong(), now);
+
+        int duplicateFlags = 0;
+        if (this.duplicateDetector != null) {
+            duplicateFlags = this.duplicateDetector.check(event.getChannel().getIdLong(), event.getAuthor().getIdLong(),
+                event.getMessage().getContentRaw(), now);
+        }
+
+        if (flags == 0 && duplicateFlags == 0) {
+            return;
+        }
+
+        Member member = event.getMember();
+        if (member != null && member.hasPermission(Permission.MESSAGE_MANAGE)) {
+            return;
+        }
+
+        if ((flags & FloodDetector.USER_FLOOD) != 0 || (duplicateFlags & DuplicateDetector.USER_DUPLICATE) != 0) {
+            this.handleUserSpam(event, member, (flags & FloodDetector.NEW_USER_FLOOD) != 0,
+                (duplicateFlags & DuplicateDetector.NEW_USER_DUPLICATE) != 0);
+        }
+
+        if ((duplicateFlags & DuplicateDetector.NEW_CHANNEL_DUPLICATE) != 0) {
+            this.logPublisher.publish(guild, LogAction.DUPLICATE_SPAM, 0L, 0L,
+                "Channel",
+                event.getTextChannel().getAsMention(),
+                String.valueOf(this.settings.getDuplicateChannelMatches() + 1),
+                "None");
+        }
+
+        if ((flags & FloodDetector.NEW_CHANNEL_FLOOD) != 0) {
+            this.logPublisher.publish(guild, LogAction.MESSAGE_FLOOD, 0L, 0L,
+                "Channel",
+                event.getTextChannel().getAsMention(),
+                "None");
+        }
+
+        if ((flags & FloodDetector.NEW_GUILD_FLOOD) != 0) {
+            this.logPublisher.publish(guild, LogAction.MESSAGE_FLOOD, 0L, 0L,
+                "Guild",
+                guild.getName(),
+                "None");
+        }
+    }
+
+    public void onGuildMemberJoin(@NotNull GuildMemberJoinEvent event) {
+        Guild guild = event.getGuild();
+
+        RaidDetector.RaidState state = this.raidDetector.recordJoin(guild.getIdLong(), event.getUser().getIdLong(),
+            System.currentTimeMillis());
+        if (state == RaidDetector.RaidState.NONE) {
+            return;
+        }
+
+        AntiSpamSettings.RaidAction raidAction = this.settings.getRaidAction();
+
+        if (state == RaidDetector.RaidState.STARTED) {
+            this.logPublisher.publish(guild, LogAction.MEMBER_RAID, 0L, 0L,
+                String.valueOf(this.settings.getRaidJoinLimit() + 1),
+                (this.settings.getRaidWindowMillis() / 1000L) + " seconds",
+                raidAction == AntiSpamSettings.RaidAction.KICK ? "Kicking new members" : "None");
+        }
+
+        if (raidAction == AntiSpamSettings.RaidAction.KICK) {
+            this.restScheduler.queue(RestPriority.MODERATION, guild, guild.kick(event.getMember(), "Join raid protection"));
+        }
+    }
+
+    private void handleUserSpam(MessageReceivedEvent event, Member member, boolean newFlood, boolean newDuplicate) {
+        AntiSpamSettings.SpamAction spamAction = this.settings.getSpamAction();
+        Member selfMember = event.getGuild().getSelfMember();
+
+        // Missing permissions fall back to logging only, the requests would be rejected before they are sent.
+        boolean delete = spamAction != AntiSpamSettings.SpamAction.LOG
+            && selfMember.hasPermission(event.getTextChannel(), Permission.MESSAGE_MANAGE);
+        boolean timeout = spamAction == AntiSpamSettings.SpamAction.TIMEOUT && member != null
+            && selfMember.hasPermission(Permission.MODERATE_MEMBERS) && selfMember.canInteract(member);
+
+        if (newFlood || newDuplicate) {
+            String action = "None";
+            if (timeout) {
+                action = "Timed out for " + this.settings.getTimeoutDuration().toSeconds() + " seconds";
+            } else if (delete) {
+                action = "Deleting messages";
+            } else if (spamAction != AntiSpamSettings.SpamAction.LOG) {
+                action = "None, missing permissions";
+            }
+
+            String user = EmbedHelper.formatUser(event.getAuthor());
+
+            if (newFlood) {
+                this.logPublisher.publish(event.getGuild(), LogAction.MESSAGE_FLOOD, event.getAuthor().getIdLong(), 0L,
+                    "User",
+                    user,
+                    action);
+            }
+
+            if (newDuplicate) {
+                this.logPublisher.publish(event.getGuild(), LogAction.DUPLICATE_SPAM, event.getAuthor().getIdLong(), 0L,
+                    "User",
+                    user,
+                    String.valueOf(this.settings.getDuplicateUserMatches() + 1),
+                    action);
+            }
+        }
+
+        if (delete) {
+            this.restScheduler.queue(RestPriority.MODERATION, event.getChannel(), event.getMessage().delete(), null, failure -> {});
+        }
+
+        if (timeout && (newFlood || newDuplicate)) {
+            this.restScheduler.queue(RestPriority.MODERATION, member.getGuild(), member.timeoutFor(this.settings.getTimeoutDuration()));
+            this.floodDetector.forgetUser(member.getGuild().getIdLong(), member.getIdLong());
+        }
+    }
+
+}
@@ -0,0 +1,223 @@
+/*
+ * Copyright (c) 2022 zrdzn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.zrdzn.bot.xorbot.antispam;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Properties;
+
+public class AntiSpamSettings {
+
+    private boolean enabled;
+    private int userLimit;
+    private long userWindowMillis;
+    private int channelLimit;
+    private long channelWindowMillis;
+    private int guildLimit;
+    private long guildWindowMillis;
+    private SpamAction spamAction;
+    private Duration timeoutDuration;
+    private int raidJoinLimit;
+    private long raidWindowMillis;
+    private RaidAction raidAction;
+    private int trackedUsers;
+    private int trackedChannels;
+    private int trackedGuilds;
+    private int recentJoins;
+    private boolean duplicateEnabled;
+    private long duplicateWindowMillis;
+    private int duplicateCapacity;
+    private int duplicateMaxDistance;
+    private int duplicateUserMatches;
+    private int duplicateChannelMatches;
+    private int duplicateMinimumWords;
+
+    private AntiSpamSettings() {
+    }
+
+    /**
+     * Creates the settings from the bot configuration, missing keys use default values.
+     *
+     * @param configuration the bot configuration
+     *
+     * @return anti-spam settings
+     *
+     * @throws IllegalArgumentException if any of the values is invalid
+     */
+    public static AntiSpamSettings fromConfiguration(Properties configuration) {
+        AntiSpamSettings settings = new AntiSpamSettings();
+
+        settings.enabled = Boolean.parseBoolean(configuration.getProperty("antispam_enabled", "true").trim());
+        settings.userLimit = getInt(configuration, "antispam_user_messages", 8);
+        settings.userWindowMillis = getInt(configuration, "antispam_user_window_seconds", 5) * 1000L;
+        settings.channelLimit = getInt(configuration, "antispam_channel_messages", 40);
+        settings.channelWindowMillis = getInt(configuration, "antispam_channel_window_seconds", 5) * 1000L;
+        settings.guildLimit = getInt(configuration, "antispam_guild_messages", 150);
+        settings.guildWindowMillis = getInt(configuration, "antispam_guild_window_seconds", 5) * 1000L;
+        settings.spamAction = SpamAction.valueOf(configuration.getProperty("antispam_action", "delete").trim().toUpperCase(Locale.ROOT));
+        settings.timeoutDuration = Duration.ofSeconds(getInt(configuration, "antispam_timeout_seconds", 300));
+        settings.raidJoinLimit = getInt(configuration, "raid_joins", 10);
+        settings.raidWindowMillis = getInt(configuration, "raid_window_seconds", 30) * 1000L;
+        settings.raidAction = RaidAction.valueOf(configuration.getProperty("raid_action", "log").trim().toUpperCase(Locale.ROOT));
+        settings.trackedUsers = getInt(configuration, "antispam_tracked_users", 65536);
+        settings.trackedChannels = getInt(configuration, "antispam_tracked_channels", 8192);
+        settings.trackedGuilds = getInt(configuration, "antispam_tracked_guilds", 1024);
+        settings.recentJoins = getInt(configuration, "raid_recent_joins", 1024);
+        settings.duplicateEnabled = Boolean.parseBoolean(configuration.getProperty("duplicate_enabled", "true").trim());
+        settings.duplicateWindowMillis = getInt(configuration, "duplicate_window_seconds", 60) * 1000L;
+        settings.duplicateCapacity = getInt(configuration, "duplicate_capacity", 65536);
+        settings.duplicateMaxDistance = getInt(configuration, "duplicate_max_distance", 3);
+        settings.duplicateUserMatches = getInt(configuration, "duplicate_user_matches", 3);
+        settings.duplicateChannelMatches = getInt(configuration, "duplicate_channel_matches", 5);
+        settings.duplicateMinimumWords = getInt(configuration, "duplicate_min_words", 4);
+
+        if (settings.userWindowMillis <= 0L || settings.channelWindowMillis <= 0L || settings.guildWindowMillis <= 0L
+            || settings.raidWindowMillis <= 0L) {
+            throw new IllegalArgumentException("Anti-spam windows must be above 0 seconds.");
+        }
+
+        if (settings.recentJoins <= 0) {
+            throw new IllegalArgumentException("raid_recent_joins must be above 0.");
+        }
+
+        if (settings.duplicateWindowMillis <= 0L || settings.duplicateCapacity <= 0) {
+            throw new IllegalArgumentException("duplicate_window_seconds and duplicate_capacity must be above 0.");
+        }
+
+        if (settings.duplicateMaxDistance < 0 || settings.duplicateMaxDistance > 3) {
+            throw new IllegalArgumentException("duplicate_max_distance must be between 0 and 3.");
+        }
+
+        return settings;
+    }
+
+    private static int getInt(Properties configuration, String key, int defaultValue) {
+        String value = configuration.getProperty(key);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+
+        return Integer.parseInt(value.trim());
+    }
+
+    public boolean isEnabled() {
+        return this.enabled;
+    }
+
+    public int getUserLimit() {
+        return this.userLimit;
+    }
+
+    public long getUserWindowMillis() {
+        return this.userWindowMillis;
+    }
+
+    public int getChannelLimit() {
+        return this.channelLimit;
+    }
+
+    public long getChannelWindowMillis() {
+        return this.channelWindowMillis;
+    }
+
+    public int getGuildLimit() {
+        return this.guildLimit;
+    }
+
+    public long getGuildWindowMillis() {
+        return this.guildWindowMillis;
+    }
+
+    public SpamAction getSpamAction() {
+        return this.spamAction;
+    }
+
+    public Duration getTimeoutDuration() {
+        return this.timeoutDuration;
+    }
+
+    public int getRaidJoinLimit() {
+        return this.raidJoinLimit;
+    }
+
+    public long getRaidWindowMillis() {
+        return this.raidWindowMillis;
+    }
+
+    public RaidAction getRaidAction() {
+        return this.raidAction;
+    }
+
+    public int getTrackedUsers() {
+        return this.trackedUsers;
+    }
+
+    public int getTrackedChannels() {
+        return this.trackedChannels;
+    }
+
+    public int getTrackedGuilds() {
+        return this.trackedGuilds;
+    }
+
+    public int getRecentJoins() {
+        return this.recentJoins;
+    }
+
+    public boolean isDuplicateEnabled() {
+        return this.duplicateEnabled;
+    }
+
+    public long getDuplicateWindowMillis() {
+        return this.duplicateWindowMillis;
+    }
+
+    public int getDuplicateCapacity() {
+        return this.duplicateCapacity;
+    }
+
+    public int getDuplicateMaxDistance() {
+        return this.duplicateMaxDistance;
+    }
+
+    public int getDuplicateUserMatches() {
+        return this.duplicateUserMatches;
+    }
+
+    public int getDuplicateChannelMatches() {
+        return this.duplicateChannelMatches;
+    }
+
+    public int getDuplicateMinimumWords() {
+        return this.duplicateMinimumWords;
+    }
+
+    public enum SpamAction {
+
+        LOG,
+        DELETE,
+        TIMEOUT
+
+    }
+
+    public enum RaidAction {
+
+        LOG,
+        KICK
+
+    }
+
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2022 zrdzn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.zrdzn.bot.xorbot.antispam;
+
+/**
+ * Detects users and channels posting near-identical messages.
+ * <p>
+ * Works like {@link FloodDetector}, the result of {@link #check(long, long, CharSequence, long)}
+ * is a bit set and the {@code NEW_*} bits are set only for the message that crossed the limit.
+ */
+public class DuplicateDetector {
+
+    public static final int USER_DUPLICATE = 1;
+    public static final int CHANNEL_DUPLICATE = 1 << 1;
+    public static final int NEW_USER_DUPLICATE = 1 << 2;
+    public static final int NEW_CHANNEL_DUPLICATE = 1 << 3;
+
+    private final SimHashIndex index;
+    private final int[] weights = new int[64];
+
+    private final int minimumWords;
+    private final int userLimit;
+    private final int channelLimit;
+
+    public DuplicateDetector(AntiSpamSettings settings) {
+        this.index = new SimHashIndex(settings.getDuplicateCapacity(), settings.getDuplicateWindowMillis(),
+            settings.getDuplicateMaxDistance());
+
+        this.minimumWords = settings.getDuplicateMinimumWords();
+        this.userLimit = settings.getDuplicateUserMatches();
+        this.channelLimit = settings.getDuplicateChannelMatches();
+    }
+
+    /**
+     * Indexes the message and checks how many near-identical messages were recently posted
+     * by the same user and in the same channel.
+     *
+     * @param channelId id of the channel the message was sent in
+     * @param userId id of the author
+     * @param content raw content of the message
+     * @param nowMillis current time in milliseconds
+     *
+     * @return bit set of the duplicate flags, 0 if no limit was reached or the message is too short
+     */
+    public synchronized int check(long channelId, long userId, CharSequence content, long nowMillis) {
+        long fingerprint = SimHash.compute(content, this.weights, this.minimumWords);
+        if (fingerprint == 0L) {
+            return 0;
+        }
+
+        this.index.add(fingerprint, userId, channelId, nowMillis);
+
+        return flag(this.index.getLastUserMatches(), this.userLimit, USER_DUPLICATE, NEW_USER_DUPLICATE)
+            | flag(this.index.getLastChannelMatches(), this.channelLimit, CHANNEL_DUPLICATE, NEW_CHANNEL_DUPLICATE);
+    }
+
+    private static int flag(int matches, int limit, int duplicateFlag, int newDuplicateFlag) {
+        if (limit <= 0 || matches < limit) {
+            return 0;
+        }
+
+        return matches == limit ? duplicateFlag | newDuplicateFlag : duplicateFlag;
+    }
+
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2022 zrdzn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.zrdzn.bot.xorbot.antispam;
+
+/**
+ * Detects message floods per user, per channel and per guild.
+ * <p>
+ * The result of {@link #check(long, long, long, long)} is a bit set, so the
+ * check does not allocate. The {@code NEW_*} bits are set only for the message
+ * that crossed the limit, to trigger one-time actions once per flood.
+ * Users are counted per guild, messages in different guilds do not add up.
+ */
+public class FloodDetector {
+
+    public static final int USER_FLOOD = 1;
+    public static final int CHANNEL_FLOOD = 1 << 1;
+    public static final int GUILD_FLOOD = 1 << 2;
+    public static final int NEW_USER_FLOOD = 1 << 3;
+    public static final int NEW_CHANNEL_FLOOD = 1 << 4;
+    public static final int NEW_GUILD_FLOOD = 1 << 5;
+
+    private static final int BUCKETS = 10;
+
+    private final SlidingWindowCounter users;
+    private final SlidingWindowCounter channels;
+    private final SlidingWindowCounter guilds;
+
+    private final int userLimit;
+    private final int channelLimit;
+    private final int guildLimit;
+
+    public FloodDetector(AntiSpamSettings settings) {
+        this.users = new SlidingWindowCounter(settings.getTrackedUsers(), settings.getUserWindowMillis(), BUCKETS);
+        this.channels = new SlidingWindowCounter(settings.getTrackedChannels(), settings.getChannelWindowMillis(), BUCKETS);
+        this.guilds = new SlidingWindowCounter(settings.getTrackedGuilds(), settings.getGuildWindowMillis(), BUCKETS);
+
+        this.userLimit = settings.getUserLimit();
+        this.channelLimit = settings.getChannelLimit();
+        this.guildLimit = settings.getGuildLimit();
+    }
+
+    /**
+     * Records the message and checks every scope against its limit.
+     *
+     * @param guildId id of the guild the message was sent in
+     * @param channelId id of the channel the message was sent in
+     * @param userId id of the author
+     * @param nowMillis current time in milliseconds
+     *
+     * @return bit set of the flood flags, 0 if no limit was exceeded
+     */
+    public int check(long guildId, long channelId, long userId, long nowMillis) {
+        return flag(this.users.increment(userKey(guildId, userId), nowMillis), this.userLimit, USER_FLOOD, NEW_USER_FLOOD)
+            | flag(this.channels.increment(channelId, nowMillis), this.channelLimit, CHANNEL_FLOOD, NEW_CHANNEL_FLOOD)
+            | flag(this.guilds.increment(guildId, nowMillis), this.guildLimit, GUILD_FLOOD, NEW_GUILD_FLOOD);
+    }
+
+    public void forgetUser(long guildId, long userId) {
+        this.users.reset(userKey(guildId, userId));
+    }
+
+    private static long userKey(long guildId, long userId) {
+        long key = guildId * 0x9E3779B97F4A7C15L ^ userId;
+        // The counter reserves 0 for empty slots.
+        return key == 0L ? 1L : key;
+    }
+
+    private static int flag(int count, int limit, int floodFlag, int newFloodFlag) {
+        if (limit <= 0 || count <= limit) {
+            return 0;
+        }
+
+        return count == limit + 1 ? floodFlag | newFloodFlag : floodFlag;
+    }
+
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2022 zrdzn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.zrdzn.bot.xorbot.antispam;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Detects join raids per guild and remembers recent joins, so the joined
+ * accounts could be handled after the raid was detected.
+ */
+public class RaidDetector {
+
+    private static final int BUCKETS = 10;
+
+    private final SlidingWindowCounter joins;
+    private final int joinLimit;
+    private final long windowMillis;
+
+    private final long[] recentGuildIds;
+    private final long[] recentUserIds;
+    private final long[] recentJoinTimes;
+    private int nextJoin;
+
+    private final SlidingWindowCounter raids;
+    private final Map<Long, Long> raidStarts = new HashMap<>();
+    private final Map<Long, Long> raidLastJoins = new HashMap<>();
+
+    public RaidDetector(AntiSpamSettings settings) {
+        this.joins = new SlidingWindowCounter(settings.getTrackedGuilds(), settings.getRaidWindowMillis(), BUCKETS);
+        this.joinLimit = settings.getRaidJoinLimit();
+        this.windowMillis = settings.getRaidWindowMillis();
+
+        this.recentGuildIds = new long[settings.getRecentJoins()];
+        this.recentUserIds = new long[settings.getRecentJoins()];
+        this.recentJoinTimes = new long[settings.getRecentJoins()];
+
+        this.raids = new SlidingWindowCounter(settings.getTrackedGuilds(), settings.getRaidWindowMillis(), 1);
+    }
+
+    /**
+     * Records the join and checks if the guild is being raided.
+     *
+     * @param guildId id of the guild
+     * @param userId id of the joined user
+     * @param nowMillis current time in milliseconds
+     *
+     * @return state of the raid in the guild
+     */
+    public synchronized RaidState recordJoin(long guildId, long userId, long nowMillis) {
+        this.recentGuildIds[this.nextJoin] = guildId;
+        this.recentUserIds[this.nextJoin] = userId;
+        this.recentJoinTimes[this.nextJoin] = nowMillis;
+        this.nextJoin = (this.nextJoin + 1) % this.recentUserIds.length;
+
+        int count = this.joins.increment(guildId, nowMillis);
+        if (this.joinLimit <= 0 || count <= this.joinLimit) {
+            return RaidState.NONE;
+        }
+
+        // A raid lasting over several windows keeps the start of its first window.
+        Long lastRaidJoin = this.raidLastJoins.put(guildId, nowMillis);
+        if (lastRaidJoin == null || nowMillis - lastRaidJoin > this.windowMillis) {
+            this.raidStarts.put(guildId, nowMillis);
+        }
+
+        // Counts over-limit joins in the same window, the first one starts the raid.
+        return this.raids.increment(guildId, nowMillis) == 1 ? RaidState.STARTED : RaidState.ONGOING;
+    }
+
+    /**
+     * Gets ids of the users that joined the guild since the given time,
+     * limited to the amount of remembered joins.
+     *
+     * @param guildId id of the guild
+     * @param sinceMillis the earliest join time
+     *
+     * @return ids of the joined users, from the oldest
+     */
+    public synchronized long[] getRecentJoins(long guildId, long sinceMillis) {
+        long[] result = new long[this.recentUserIds.length];
+        int size = 0;
+
+        for (int offset = 0; offset < this.recentUserIds.length; offset++) {
+            int index = (this.nextJoin + offset) % this.recentUserIds.length;
+            if (this.recentGuildIds[index] == guildId && this.recentJoinTimes[index] >= sinceMillis) {
+                result[size++] = this.recentUserIds[index];
+            }
+        }
+
+        return Arrays.copyOf(result, size);
+    }
+
+    /**
+     * Gets ids of the users that joined the guild during its last raid, from the window
+     * before the raid started until now, limited to the amount of remembered joins.
+     *
+     * @param guildId id of the guild
+     *
+     * @return ids of the joined users from the oldest, empty if no raid was detected
+     */
+    public synchronized long[] getLastRaidJoins(long guildId) {
+        Long startMillis = this.raidStarts.get(guildId);
+        if (startMillis == null) {
+            return new long[0];
+        }
+
+        return this.getRecentJoins(guildId, startMillis - this.windowMillis);
+    }
+
+    public long getWindowMillis() {
+        return this.windowMillis;
+    }
+
+    public enum RaidState {
+
+        NONE,
+        STARTED,
+        ONGOING
+
+    }
+
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2022 zrdzn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.zrdzn.bot.xorbot.antispam;
+
+/**
+ * Computes 64-bit SimHash fingerprints of messages. Similar messages get
+ * fingerprints that differ only in a few bits.
+ * <p>
+ * Features are lowercase words and pairs of adjacent words, hashed in place
+ * without creating substrings.
+ */
+public final class SimHash {
+
+    private static final long FNV_OFFSET = 0xCBF29CE484222325L;
+    private static final long FNV_PRIME = 0x100000001B3L;
+
+    private SimHash() {
+    }
+
+    /**
+     * Computes the fingerprint of the content.
+     *
+     * @param content the message content
+     * @param weights scratch array of 64 elements, overwritten by this method
+     * @param minimumWords minimum amount of words needed to compute the fingerprint
+     *
+     * @return fingerprint of the content, or 0 if it contains less than the minimum amount of words
+     */
+    public static long compute(CharSequence content, int[] weights, int minimumWords) {
+        for (int bit = 0; bit < 64; bit++) {
+            weights[bit] = 0;
+        }
+
+        int words = 0;
+        long previousWord = 0L;
+        long word = FNV_OFFSET;
+        boolean inWord = false;
+
+        int length = content.length();
+        for (int index = 0; index <= length; index++) {
+            char character = index < length ? content.charAt(index) : ' ';
+
+            if (Character.isLetterOrDigit(character)) {
+                word = (word ^ Character.toLowerCase(character)) * FNV_PRIME;
+                inWord = true;
+                continue;
+            }
+
+            if (!inWord) {
+                continue;
+            }
+
+            long wordHash = mix(word);
+            add(weights, wordHash);
+            if (words > 0) {
+                add(weights, mix(previousWord * 31L + wordHash));
+            }
+
+            words++;
+            previousWord = wordHash;
+            word = FNV_OFFSET;
+            inWord = false;
+        }
+
+        if (words < minimumWords) {
+            return 0L;
+        }
+
+        long fingerprint = 0L;
+        for (int bit = 0; bit < 64; bit++) {
+            if (weights[bit] > 0) {
+                fingerprint |= 1L << bit;
+            }
+        }
+
+        return fingerprint;
+    }
+
+    public static int distance(long first, long second) {
+        return Long.bitCount(first ^ second);
+    }
+
+    private static void add(int[] weights, long hash) {
+        for (int bit = 0; bit < 64; bit++) {
+            weights[bit] += ((hash >>> bit) & 1L) == 0L ? -1 : 1;
+        }
+    }
+
+    private static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        hash *= 0xC4CEB9FE1A85EC53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+}
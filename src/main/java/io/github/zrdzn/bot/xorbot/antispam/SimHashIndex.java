@@ -0,0 +1,179 @@
+/*
+ * Copyright (c) 2022 zrdzn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.zrdzn.bot.xorbot.antispam;
+
+import java.util.Arrays;
+
+/**
+ * Index of recent message fingerprints answering "how many near-identical
+ * messages were posted recently" in time independent of the window size.
+ * <p>
+ * Entries live in a ring of primitive arrays, the oldest entry is overwritten by the
+ * newest one. Every fingerprint is split into four 16-bit bands, and every band has a
+ * hash table of chains linking entries sharing the band value, from the newest one.
+ * Two fingerprints within 3 bits of each other always share at least one band, so only
+ * entries in the four chains of the queried fingerprint have to be compared.
+ */
+public class SimHashIndex {
+
+    private static final int BANDS = 4;
+    private static final int BAND_BITS = 16;
+    private static final int BAND_MASK = (1 << BAND_BITS) - 1;
+    private static final int MAX_CHAIN_STEPS = 512;
+
+    private final int capacity;
+    private final long windowMillis;
+    private final int maxDistance;
+
+    private final long[] fingerprints;
+    private final long[] userIds;
+    private final long[] channelIds;
+    private final long[] times;
+    private final long[] sequences;
+    private final int[][] heads;
+    private final int[][] next;
+    private final int[] visited;
+
+    private long sequence;
+    private int query;
+
+    private int lastUserMatches;
+    private int lastChannelMatches;
+
+    /**
+     * @param capacity maximum amount of indexed messages
+     * @param windowMillis how long messages are considered recent
+     * @param maxDistance maximum amount of different bits of near-identical fingerprints, up to 3
+     */
+    public SimHashIndex(int capacity, long windowMillis, int maxDistance) {
+        if (maxDistance < 0 || maxDistance >= BANDS) {
+            throw new IllegalArgumentException("Maximum distance must be between 0 and " + (BANDS - 1) + ".");
+        }
+
+        this.capacity = capacity;
+        this.windowMillis = windowMillis;
+        this.maxDistance = maxDistance;
+
+        this.fingerprints = new long[capacity];
+        this.userIds = new long[capacity];
+        this.channelIds = new long[capacity];
+        this.times = new long[capacity];
+        this.sequences = new long[capacity];
+        this.heads = new int[BANDS][1 << BAND_BITS];
+        this.next = new int[BANDS][capacity];
+        this.visited = new int[capacity];
+
+        for (int[] bandHeads : this.heads) {
+            Arrays.fill(bandHeads, -1);
+        }
+    }
+
+    /**
+     * Counts recent near-identical messages and indexes the new one. Counts are
+     * available through {@link #getLastUserMatches()} and {@link #getLastChannelMatches()}
+     * until the next call.
+     *
+     * @param fingerprint SimHash of the message
+     * @param userId id of the author
+     * @param channelId id of the channel
+     * @param nowMillis current time in milliseconds
+     */
+    public synchronized void add(long fingerprint, long userId, long channelId, long nowMillis) {
+        this.query++;
+        this.lastUserMatches = 0;
+        this.lastChannelMatches = 0;
+
+        long oldestTime = nowMillis - this.windowMillis;
+
+        for (int band = 0; band < BANDS; band++) {
+            int bandValue = bandValue(fingerprint, band);
+            int slot = this.heads[band][bandValue];
+            long previousSequence = Long.MAX_VALUE;
+
+            for (int step = 0; slot >= 0 && step < MAX_CHAIN_STEPS; step++) {
+                long slotSequence = this.sequences[slot];
+                // Slot was overwritten by a newer entry or is too old, the rest of the chain is older.
+                if (slotSequence >= previousSequence || this.times[slot] < oldestTime
+                    || bandValue(this.fingerprints[slot], band) != bandValue) {
+                    break;
+                }
+
+                if (this.visited[slot] != this.query) {
+                    this.visited[slot] = this.query;
+
+                    if (SimHash.distance(fingerprint, this.fingerprints[slot]) <= this.maxDistance) {
+                        if (this.userIds[slot] == userId) {
+                            this.lastUserMatches++;
+                        }
+
+                        if (this.channelIds[slot] == channelId) {
+                            this.lastChannelMatches++;
+                        }
+                    }
+                }
+
+                previousSequence = slotSequence;
+                slot = this.next[band][slot];
+            }
+        }
+
+        int slot = (int) (this.sequence % this.capacity);
+        this.sequence++;
+
+        this.fingerprints[slot] = fingerprint;
+        this.userIds[slot] = userId;
+        this.channelIds[slot] = channelId;
+        this.times[slot] = nowMillis;
+        this.sequences[slot] = this.sequence;
+
+        for (int band = 0; band < BANDS; band++) {
+            int bandValue = bandValue(fingerprint, band);
+            this.next[band][slot] = this.heads[band][bandValue];
+            this.heads[band][bandValue] = slot;
+        }
+    }
+
+    public synchronized int getLastUserMatches() {
+        return this.lastUserMatches;
+    }
+
+    public synchronized int getLastChannelMatches() {
+        return this.lastChannelMatches;
+    }
+
+    /**
+     * Gets the memory used by a single indexed message, excluding the fixed band tables.
+     *
+     * @return bytes per indexed message
+     */
+    public static int getBytesPerEntry() {
+        return Long.BYTES * 5 + Integer.BYTES * (BANDS + 1);
+    }
+
+    /**
+     * Gets the memory used by the band tables, independent of the capacity.
+     *
+     * @return bytes used by the band tables
+     */
+    public static int getFixedBytes() {
+        return Integer.BYTES * BANDS * (1 << BAND_BITS);
+    }
+
+    private static int bandValue(long fingerprint, int band) {
+        return (int) (fingerprint >>> (band * BAND_BITS)) & BAND_MASK;
+    }
+
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2022 zrdzn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.zrdzn.bot.xorbot.antispam;
+
+/**
+ * Counts events per key in a sliding time window, without allocating after construction.
+ * <p>
+ * Keys are kept in a fixed-size open addressing table. Every slot owns a ring of
+ * buckets, each covering {@code windowMillis / buckets} milliseconds. When the
+ * table is full, the least recently used slot among the probed ones is reused.
+ */
+public class SlidingWindowCounter {
+
+    private static final int MAX_PROBES = 8;
+
+    private final int capacityMask;
+    private final int buckets;
+    private final long bucketMillis;
+
+    private final long[] keys;
+    private final long[] lastBuckets;
+    private final long[] bucketEpochs;
+    private final int[] counts;
+
+    /**
+     * @param capacity maximum amount of tracked keys, rounded up to the power of two
+     * @param windowMillis length of the window
+     * @param buckets amount of buckets the window is divided into
+     */
+    public SlidingWindowCounter(int capacity, long windowMillis, int buckets) {
+        if (capacity <= 0 || windowMillis <= 0L || buckets <= 0) {
+            throw new IllegalArgumentException("Capacity, window and buckets must be above 0.");
+        }
+
+        int tableSize = Integer.highestOneBit(Math.max(capacity, MAX_PROBES) - 1) << 1;
+
+        this.capacityMask = tableSize - 1;
+        this.buckets = buckets;
+        this.bucketMillis = Math.max(1L, windowMillis / buckets);
+
+        this.keys = new long[tableSize];
+        this.lastBuckets = new long[tableSize];
+        this.bucketEpochs = new long[tableSize * buckets];
+        this.counts = new int[tableSize * buckets];
+    }
+
+    /**
+     * Records an event for the key and returns the amount of events in the current window.
+     *
+     * @param key the non-zero key
+     * @param nowMillis current time in milliseconds
+     *
+     * @return amount of events of the key in the window, including this one
+     */
+    public synchronized int increment(long key, long nowMillis) {
+        long bucket = nowMillis / this.bucketMillis;
+        int slot = this.findSlot(key, bucket);
+
+        int base = slot * this.buckets;
+        int position = base + (int) (bucket % this.buckets);
+        if (this.bucketEpochs[position] != bucket) {
+            this.bucketEpochs[position] = bucket;
+            this.counts[position] = 0;
+        }
+
+        this.counts[position]++;
+        this.lastBuckets[slot] = bucket;
+
+        int total = 0;
+        long oldestBucket = bucket - this.buckets;
+        for (int index = base; index < base + this.buckets; index++) {
+            if (this.bucketEpochs[index] > oldestBucket) {
+                total += this.counts[index];
+            }
+        }
+
+        return total;
+    }
+
+    /**
+     * Forgets all events of the key.
+     *
+     * @param key the key to reset
+     */
+    public synchronized void reset(long key) {
+        int start = mix(key) & this.capacityMask;
+        for (int probe = 0; probe < MAX_PROBES; probe++) {
+            int slot = (start + probe) & this.capacityMask;
+            if (this.keys[slot] == key) {
+                this.clearSlot(slot, 0L);
+                return;
+            }
+        }
+    }
+
+    private int findSlot(long key, long bucket) {
+        int start = mix(key) & this.capacityMask;
+
+        int victim = -1;
+        long victimBucket = Long.MAX_VALUE;
+        for (int probe = 0; probe < MAX_PROBES; probe++) {
+            int slot = (start + probe) & this.capacityMask;
+            if (this.keys[slot] == key) {
+                return slot;
+            }
+
+            long slotBucket = this.keys[slot] == 0L ? Long.MIN_VALUE : this.lastBuckets[slot];
+            if (slotBucket < victimBucket) {
+                victim = slot;
+                victimBucket = slotBucket;
+            }
+        }
+
+        this.clearSlot(victim, key);
+        this.lastBuckets[victim] = bucket;
+
+        return victim;
+    }
+
+    private void clearSlot(int slot, long key) {
+        this.keys[slot] = key;
+        this.lastBuckets[slot] = 0L;
+
+        int base = slot * this.buckets;
+        for (int index = base; index < base + this.buckets; index++) {
+            this.bucketEpochs[index] = 0L;
+            this.counts[index] = 0;
+        }
+    }
+
+    private static int mix(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32));
+    }
+
+}
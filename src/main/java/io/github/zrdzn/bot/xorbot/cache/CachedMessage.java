@@ -0,0 +1,187 @@
+/*
+ * Copyright (c) 2022 zrdzn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.zrdzn.bot.xorbot.cache;
+
+import net.dv8tion.jda.api.entities.Message;
+import net.dv8tion.jda.api.entities.User;
+import net.dv8tion.jda.api.utils.TimeUtil;
+
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Cached message with a bounded chain of its versions.
+ * <p>
+ * Only the oldest kept version is stored in full, every later version is stored as
+ * a delta against the previous one: the length of the common prefix and suffix, and
+ * the text in between. Typical edits fix a few characters, so a long message edited
+ * many times costs little more than a single copy. The latest version is kept in full
+ * as well, to compute the next delta without replaying the chain.
+ * <p>
+ * When the chain is full, the oldest delta is folded into the base version.
+ */
+public class CachedMessage {
+
+    private final long id;
+    private final long channelId;
+    private final User author;
+    private final int maxVersions;
+
+    private final List<Delta> deltas = new ArrayList<>();
+
+    private String base;
+    private String content;
+    private int droppedVersions;
+
+    private CachedMessage(long id, long channelId, User author, String content, int maxVersions) {
+        this.id = id;
+        this.channelId = channelId;
+        this.author = author;
+        this.maxVersions = maxVersions;
+        this.base = content;
+        this.content = content;
+    }
+
+    /**
+     * Creates the cached copy of the message.
+     *
+     * @param message the message to copy
+     * @param maxVersions maximum amount of kept versions, at least 1
+     *
+     * @return cached message
+     */
+    public static CachedMessage of(Message message, int maxVersions) {
+        return new CachedMessage(message.getIdLong(), message.getChannel().getIdLong(), message.getAuthor(),
+            message.getContentRaw(), Math.max(1, maxVersions));
+    }
+
+    /**
+     * Records a new version of the message content.
+     *
+     * @param newContent the edited content
+     *
+     * @return content before the edit
+     */
+    public synchronized String edit(String newContent) {
+        String previousContent = this.content;
+        if (previousContent.equals(newContent)) {
+            return previousContent;
+        }
+
+        this.deltas.add(Delta.between(previousContent, newContent));
+        this.content = newContent;
+
+        if (this.deltas.size() >= this.maxVersions) {
+            this.base = this.deltas.remove(0).apply(this.base);
+            this.droppedVersions++;
+        }
+
+        return previousContent;
+    }
+
+    /**
+     * Rebuilds every kept version of the message.
+     *
+     * @return versions from the oldest to the latest one
+     */
+    public synchronized List<String> getVersions() {
+        List<String> versions = new ArrayList<>(this.deltas.size() + 1);
+
+        String version = this.base;
+        versions.add(version);
+        for (Delta delta : this.deltas) {
+            version = delta.apply(version);
+            versions.add(version);
+        }
+
+        return versions;
+    }
+
+    public long getIdLong() {
+        return this.id;
+    }
+
+    public String getId() {
+        return Long.toUnsignedString(this.id);
+    }
+
+    public long getChannelIdLong() {
+        return this.channelId;
+    }
+
+    public User getAuthor() {
+        return this.author;
+    }
+
+    public OffsetDateTime getTimeCreated() {
+        return TimeUtil.getTimeCreated(this.id);
+    }
+
+    public synchronized String getContent() {
+        return this.content;
+    }
+
+    public synchronized int getEditCount() {
+        return this.droppedVersions + this.deltas.size();
+    }
+
+    /**
+     * Gets the amount of the oldest versions that no longer fit in the chain.
+     *
+     * @return amount of dropped versions
+     */
+    public synchronized int getDroppedVersions() {
+        return this.droppedVersions;
+    }
+
+    private static class Delta {
+
+        private final int prefixLength;
+        private final int suffixLength;
+        private final String replacement;
+
+        private Delta(int prefixLength, int suffixLength, String replacement) {
+            this.prefixLength = prefixLength;
+            this.suffixLength = suffixLength;
+            this.replacement = replacement;
+        }
+
+        private static Delta between(String previous, String next) {
+            int maxLength = Math.min(previous.length(), next.length());
+
+            int prefixLength = 0;
+            while (prefixLength < maxLength && previous.charAt(prefixLength) == next.charAt(prefixLength)) {
+                prefixLength++;
+            }
+
+            int suffixLength = 0;
+            while (suffixLength < maxLength - prefixLength
+                && previous.charAt(previous.length() - 1 - suffixLength) == next.charAt(next.length() - 1 - suffixLength)) {
+                suffixLength++;
+            }
+
+            return new Delta(prefixLength, suffixLength, next.substring(prefixLength, next.length() - suffixLength));
+        }
+
+        private String apply(String previous) {
+            return previous.substring(0, this.prefixLength) + this.replacement
+                + previous.substring(previous.length() - this.suffixLength);
+        }
+
+    }
+
+}
@@ -15,6 +15,7 @@
  */
 package io.github.zrdzn.bot.xorbot.cache;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.function.Predicate;
@@ -79,10 +80,36 @@ class CircularQueue<T> {
         return null;
     }
 
+    /**
+     * Finds every element matching the filter in a single pass, from the oldest to the newest one.
+     *
+     * @param filter the filter elements have to match
+     *
+     * @return list of matching elements
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized List<T> findElements(Predicate<T> filter) {
+        List<T> result = new ArrayList<>();
+
+        int start = this.isFull() ? this.current + 1 : 0;
+        for (int index = 0; index < this.size; index++) {
+            T element = (T) this.bufferArray[(start + index) % this.bufferArray.length];
+            if (filter.test(element)) {
+                result.add(element);
+            }
+        }
+
+        return result;
+    }
+
     public synchronized int getSize() {
         return this.size;
     }
 
+    public int getCapacity() {
+        return this.bufferArray.length;
+    }
+
     public synchronized boolean isFull() {
         return this.bufferArray[Math.min(this.current + 1, this.bufferArray.length - 1)] != null;
     }
@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2022 zrdzn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.zrdzn.bot.xorbot.cache;
+
+import net.dv8tion.jda.api.entities.User;
+import net.dv8tion.jda.api.utils.TimeUtil;
+
+/**
+ * Tombstone of a deleted message, keeping its last content.
+ */
+public class DeletedMessage {
+
+    private final long id;
+    private final long guildId;
+    private final long channelId;
+    private final User author;
+    private final String content;
+    private final int editCount;
+    private final long deletedAt;
+
+    public DeletedMessage(long guildId, CachedMessage message, long deletedAt) {
+        this.id = message.getIdLong();
+        this.guildId = guildId;
+        this.channelId = message.getChannelIdLong();
+        this.author = message.getAuthor();
+        this.content = message.getContent();
+        this.editCount = message.getEditCount();
+        this.deletedAt = deletedAt;
+    }
+
+    public long getIdLong() {
+        return this.id;
+    }
+
+    public long getGuildIdLong() {
+        return this.guildId;
+    }
+
+    public long getChannelIdLong() {
+        return this.channelId;
+    }
+
+    public User getAuthor() {
+        return this.author;
+    }
+
+    public String getContent() {
+        return this.content;
+    }
+
+    public int getEditCount() {
+        return this.editCount;
+    }
+
+    /**
+     * Gets the time the message was sent, taken from the timestamp bits of its id.
+     *
+     * @return creation time in milliseconds
+     */
+    public long getCreatedAt() {
+        return (this.id >>> TimeUtil.TIMESTAMP_OFFSET) + TimeUtil.DISCORD_EPOCH;
+    }
+
+    public long getDeletedAt() {
+        return this.deletedAt;
+    }
+
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright (c) 2022 zrdzn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.zrdzn.bot.xorbot.cache;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Index of deleted messages by the time they were sent, taken from the timestamp
+ * bits of their ids.
+ * <p>
+ * Tombstones are grouped in buckets spanning a fixed amount of time, kept in a sorted
+ * map by the start of their span. A range query seeks the first bucket of the range and
+ * walks only the buckets inside it, and eviction drops whole buckets from the head of
+ * the map, both in O(log n) plus the size of the visited buckets. Messages sent before
+ * the retention window are not indexed.
+ * <p>
+ * The latest deletion of every channel is also kept by the time it was deleted,
+ * regardless of when the message was sent, so an old message deleted just now can
+ * still be looked up in constant time.
+ */
+public class DeletionIndex {
+
+    private static final long BUCKET_MILLIS = 60_000L;
+
+    private final long retentionMillis;
+    private final int capacity;
+    private final NavigableMap<Long, List<DeletedMessage>> buckets = new ConcurrentSkipListMap<>();
+    private final Map<Long, DeletedMessage> latestDeletions = new ConcurrentHashMap<>();
+
+    private int size;
+    private long latestPrunedAt;
+
+    /**
+     * @param retentionMillis how long deletions are kept, counted from the time the message was sent,
+     *                        or from the time it was deleted for the latest deletion of a channel
+     * @param capacity maximum amount of kept deletions, the oldest bucket is dropped when it is exceeded
+     */
+    public DeletionIndex(long retentionMillis, int capacity) {
+        this.retentionMillis = retentionMillis;
+        this.capacity = capacity;
+    }
+
+    public synchronized void record(DeletedMessage message, long nowMillis) {
+        this.evict(nowMillis);
+
+        DeletedMessage latest = this.latestDeletions.get(message.getChannelIdLong());
+        if (latest == null || latest.getDeletedAt() <= message.getDeletedAt()) {
+            this.latestDeletions.put(message.getChannelIdLong(), message);
+        }
+
+        if (message.getCreatedAt() < nowMillis - this.retentionMillis) {
+            return;
+        }
+
+        List<DeletedMessage> bucket = this.buckets.computeIfAbsent(bucketOf(message.getCreatedAt()), start -> new ArrayList<>());
+        synchronized (bucket) {
+            bucket.add(message);
+        }
+
+        this.size++;
+
+        while (this.size > this.capacity && !this.buckets.isEmpty()) {
+            this.dropOldestBucket();
+        }
+    }
+
+    /**
+     * Finds deleted messages of the channel sent since the given time, from the newest one.
+     *
+     * @param guildId id of the guild
+     * @param channelId id of the channel
+     * @param sinceMillis oldest creation time of returned messages
+     * @param limit maximum amount of returned messages
+     *
+     * @return deleted messages from the newest one
+     */
+    public List<DeletedMessage> find(long guildId, long channelId, long sinceMillis, int limit) {
+        List<DeletedMessage> result = new ArrayList<>();
+
+        // The bucket holding the start of the range may contain older messages, they are filtered below.
+        for (List<DeletedMessage> bucket : this.buckets.tailMap(bucketOf(sinceMillis), true).descendingMap().values()) {
+            List<DeletedMessage> matching = new ArrayList<>();
+            synchronized (bucket) {
+                for (DeletedMessage message : bucket) {
+                    if (message.getGuildIdLong() == guildId && message.getChannelIdLong() == channelId
+                        && message.getCreatedAt() >= sinceMillis) {
+                        matching.add(message);
+                    }
+                }
+            }
+
+            matching.sort(Comparator.comparingLong(DeletedMessage::getIdLong).reversed());
+
+            for (DeletedMessage message : matching) {
+                result.add(message);
+                if (result.size() >= limit) {
+                    return result;
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Finds the most recently deleted message of the channel, no matter when it was sent.
+     *
+     * @param guildId id of the guild
+     * @param channelId id of the channel
+     * @param nowMillis current time
+     *
+     * @return the most recently deleted message, if it was deleted within the retention window
+     */
+    public Optional<DeletedMessage> findLatest(long guildId, long channelId, long nowMillis) {
+        return Optional.ofNullable(this.latestDeletions.get(channelId))
+            .filter(message -> message.getGuildIdLong() == guildId)
+            .filter(message -> message.getDeletedAt() >= nowMillis - this.retentionMillis);
+    }
+
+    public synchronized int size() {
+        return this.size;
+    }
+
+    private void evict(long nowMillis) {
+        long oldestDeletion = nowMillis - this.retentionMillis;
+
+        // Latest deletions are kept per channel, pruning them once per bucket span is enough to bound the map.
+        if (nowMillis - this.latestPrunedAt >= BUCKET_MILLIS) {
+            this.latestDeletions.values().removeIf(message -> message.getDeletedAt() < oldestDeletion);
+            this.latestPrunedAt = nowMillis;
+        }
+
+        long oldestBucket = bucketOf(oldestDeletion);
+
+        Map.Entry<Long, List<DeletedMessage>> entry = this.buckets.firstEntry();
+        while (entry != null && entry.getKey() < oldestBucket) {
+            this.dropOldestBucket();
+            entry = this.buckets.firstEntry();
+        }
+    }
+
+    private void dropOldestBucket() {
+        Map.Entry<Long, List<DeletedMessage>> entry = this.buckets.pollFirstEntry();
+        synchronized (entry.getValue()) {
+            this.size -= entry.getValue().size();
+        }
+    }
+
+    private static long bucketOf(long timeMillis) {
+        return Math.floorDiv(timeMillis, BUCKET_MILLIS) * BUCKET_MILLIS;
+    }
+
+}
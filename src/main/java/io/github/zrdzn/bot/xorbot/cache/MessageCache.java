@@ -17,32 +17,85 @@ package io.github.zrdzn.bot.xorbot.cache;
 
 import net.dv8tion.jda.api.entities.Message;
 
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
-import java.util.function.Predicate;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
 
 public class MessageCache {
 
-    private final CircularQueue<Message> messages;
+    private final CircularQueue<CachedMessage> messages;
+    private final int maxVersions;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
 
-    public MessageCache(int capacity) {
+    /**
+     * @param capacity maximum amount of cached messages
+     * @param maxVersions maximum amount of kept versions of every message
+     */
+    public MessageCache(int capacity, int maxVersions) {
         this.messages = new CircularQueue<>(capacity);
+        this.maxVersions = maxVersions;
     }
 
-    public void store(Message message) {
-        this.messages.addElement(message);
+    public CachedMessage store(Message message) {
+        CachedMessage cachedMessage = CachedMessage.of(message, this.maxVersions);
+        this.messages.addElement(cachedMessage);
+        return cachedMessage;
     }
 
-    public boolean contains(Message message) {
-        return this.find(storedMessage -> storedMessage.getId().equals(message.getId())).isPresent();
+    public boolean contains(long messageId) {
+        return this.find(messageId).isPresent();
     }
 
-    public Optional<Message> find(Predicate<Message> filter) {
-        return Optional.ofNullable(this.messages.findElement(filter));
+    public Optional<CachedMessage> find(long messageId) {
+        CachedMessage message = this.messages.findElement(storedMessage -> storedMessage.getIdLong() == messageId);
+        (message == null ? this.misses : this.hits).increment();
+        return Optional.ofNullable(message);
     }
 
-    public List<? extends Message> getMessages() {
+    /**
+     * Finds every cached message with one of the ids, locking the cache only once.
+     *
+     * @param messageIds ids of the messages
+     *
+     * @return cached messages from the oldest to the newest one
+     */
+    public List<CachedMessage> findAll(Collection<String> messageIds) {
+        Set<String> ids = new HashSet<>(messageIds);
+        List<CachedMessage> messages = this.messages.findElements(storedMessage -> ids.contains(storedMessage.getId()));
+
+        this.hits.add(messages.size());
+        this.misses.add(ids.size() - messages.size());
+
+        return messages;
+    }
+
+    public List<? extends CachedMessage> getMessages() {
         return this.messages.getElements();
     }
 
+    public int getSize() {
+        return this.messages.getSize();
+    }
+
+    public int getCapacity() {
+        return this.messages.getCapacity();
+    }
+
+    /**
+     * Gets the amount of looked up messages that were cached.
+     *
+     * @return amount of cache hits
+     */
+    public long getHits() {
+        return this.hits.sum();
+    }
+
+    public long getMisses() {
+        return this.misses.sum();
+    }
+
 }
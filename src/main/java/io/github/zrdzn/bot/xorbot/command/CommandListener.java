@@ -15,27 +15,62 @@
  */
 package io.github.zrdzn.bot.xorbot.command;
 
+import io.github.zrdzn.bot.xorbot.database.Deadline;
+import io.github.zrdzn.bot.xorbot.diagnostics.RollingHistogram;
+import io.github.zrdzn.bot.xorbot.gateway.EventDispatcher;
+import io.github.zrdzn.bot.xorbot.logging.LogContext;
+import io.github.zrdzn.bot.xorbot.rest.RestPriority;
+import io.github.zrdzn.bot.xorbot.rest.RestScheduler;
+import io.github.zrdzn.bot.xorbot.shard.ShardMetrics;
 import net.dv8tion.jda.api.events.message.MessageReceivedEvent;
-import net.dv8tion.jda.api.hooks.ListenerAdapter;
 import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
 
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
-public class CommandListener extends ListenerAdapter {
+public class CommandListener {
 
     private final CommandRegistry commandRegistry;
+    private final ShardMetrics shardMetrics;
     private final boolean testBuild;
-
-    public CommandListener(CommandRegistry commandRegistry, boolean testBuild) {
+    private final RollingHistogram commandLatency;
+    private final long deadlineMillis;
+    private final LongAdder commandTimeouts;
+    private final ScheduledExecutorService scheduler;
+    private final RestScheduler restScheduler;
+    private final Logger logger;
+
+    /**
+     * @param commandLatency histogram the latency of every command is recorded to, in microseconds
+     * @param deadlineMillis time budget of every command, 0 runs commands without a deadline
+     * @param commandTimeouts counter of commands that overran their deadline
+     * @param scheduler scheduler of the deadline checks
+     */
+    public CommandListener(CommandRegistry commandRegistry, ShardMetrics shardMetrics, boolean testBuild,
+                           RollingHistogram commandLatency, long deadlineMillis, LongAdder commandTimeouts,
+                           ScheduledExecutorService scheduler, RestScheduler restScheduler, Logger logger) {
         this.commandRegistry = commandRegistry;
+        this.shardMetrics = shardMetrics;
         this.testBuild = testBuild;
+        this.commandLatency = commandLatency;
+        this.deadlineMillis = deadlineMillis;
+        this.commandTimeouts = commandTimeouts;
+        this.scheduler = scheduler;
+        this.restScheduler = restScheduler;
+        this.logger = logger;
+    }
+
+    public void register(EventDispatcher dispatcher) {
+        dispatcher.registerGuildOnly(MessageReceivedEvent.class, "CommandListener#onMessageReceived", this::onMessageReceived);
     }
 
-    @Override
     public void onMessageReceived(@NotNull MessageReceivedEvent event) {
         // If test build is true and channel does not equal test channel id, cancel
         if (event.getChannel().getId().equalsIgnoreCase("872881918616686696")) {
@@ -71,13 +106,76 @@ public class CommandListener extends ListenerAdapter {
 
         Map<String, Command> commandMap = this.commandRegistry.getCommands();
         if (!commandMap.containsKey(commandName)) {
-            event.getChannel().sendMessage("Provided command does not exist in the command registry. Check !help for the command list.").queue();
+            this.restScheduler.queue(RestPriority.COMMAND, event.getChannel(),
+                event.getChannel().sendMessage("Provided command does not exist in the command registry. Check !help for the command list."));
             return;
         }
 
         optionList.remove(0);
 
-        CompletableFuture.runAsync(() -> commandMap.get(commandName).execute(event, optionList));
+        this.shardMetrics.recordCommand(event.getJDA());
+
+        Command command = commandMap.get(commandName);
+        long guildId = event.getGuild().getIdLong();
+
+        long start = System.nanoTime();
+
+        // Commands return as soon as their database and REST work is queued, the latency is measured
+        // until every future they started under the deadline finished.
+        Deadline deadline = new Deadline(this.deadlineMillis);
+        deadline.whenSettled().thenRun(() -> this.recordLatency(commandName, guildId, start));
+
+        // The command is registered before it starts, so its first futures cannot settle the deadline early.
+        CompletableFuture<Void> trigger = new CompletableFuture<>();
+        deadline.register(trigger.thenRunAsync(() -> {
+            try (Deadline.Scope scope = deadline.enter()) {
+                this.execute(command, commandName, guildId, event, optionList);
+            }
+        }));
+        trigger.complete(null);
+
+        if (this.deadlineMillis <= 0L) {
+            return;
+        }
+
+        // Futures the command started under the deadline and did not finish in time are cancelled,
+        // their queries are bounded by the query timeout and give their connections back. Work that
+        // already started is not interrupted, so a write may still be committed after the deadline.
+        this.scheduler.schedule(() -> {
+            int cancelled = deadline.expire();
+            if (cancelled == 0) {
+                return;
+            }
+
+            this.commandTimeouts.increment();
+            try (LogContext context = LogContext.open().with("guild", guildId).with("command", commandName)) {
+                this.logger.warn("Command overran its deadline of {} ms, stopped waiting for {} pending tasks.", this.deadlineMillis, cancelled);
+            }
+
+            this.restScheduler.queue(RestPriority.COMMAND, event.getChannel(),
+                event.getChannel().sendMessage("Command took too long, its result is unknown. Check the result before trying again."));
+        }, this.deadlineMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void execute(Command command, String commandName, long guildId, MessageReceivedEvent event, List<String> optionList) {
+        try (LogContext context = LogContext.open().with("guild", guildId).with("command", commandName)) {
+            try {
+                command.execute(event, optionList);
+            } catch (RuntimeException exception) {
+                this.logger.error("Command failed.", exception);
+            }
+        }
+    }
+
+    private void recordLatency(String commandName, long guildId, long start) {
+        long latency = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start);
+        this.commandLatency.record(latency, System.currentTimeMillis());
+
+        if (this.logger.isDebugEnabled()) {
+            try (LogContext context = LogContext.open().with("guild", guildId).with("command", commandName).with("latency", latency + "us")) {
+                this.logger.debug("Command executed.");
+            }
+        }
     }
 
 }
@@ -19,16 +19,79 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
+/**
+ * Registry of the commands. Every change publishes a new immutable snapshot,
+ * so readers on the JDA threads never lock and always see a consistent map.
+ */
 public class CommandRegistry {
 
-    private final Map<String, Command> commands = new HashMap<>();
+    private volatile Snapshot snapshot = new Snapshot(Collections.emptyMap(), 0L);
+
+    public synchronized void register(Command command) {
+        Map<String, Command> commands = new HashMap<>(this.snapshot.commands);
+        commands.put(command.getName(), command);
+
+        this.publish(commands);
+    }
+
+    /**
+     * Registers the command only if no command with the same name is registered.
+     *
+     * @param command the command to register
+     *
+     * @return true if the command was registered
+     */
+    public synchronized boolean registerIfAbsent(Command command) {
+        if (this.snapshot.commands.containsKey(command.getName())) {
+            return false;
+        }
+
+        this.register(command);
+
+        return true;
+    }
+
+    public synchronized boolean unregister(String name) {
+        if (!this.snapshot.commands.containsKey(name)) {
+            return false;
+        }
+
+        Map<String, Command> commands = new HashMap<>(this.snapshot.commands);
+        commands.remove(name);
 
-    public void register(Command command) {
-        this.commands.put(command.getName(), command);
+        this.publish(commands);
+
+        return true;
+    }
+
+    /**
+     * Gets the version of the registry, incremented on every change.
+     * Could be used to invalidate values derived from the registered commands.
+     *
+     * @return current version of the registry
+     */
+    public long getVersion() {
+        return this.snapshot.version;
     }
 
     public Map<String, Command> getCommands() {
-        return Collections.unmodifiableMap(this.commands);
+        return this.snapshot.commands;
+    }
+
+    private void publish(Map<String, Command> commands) {
+        this.snapshot = new Snapshot(Collections.unmodifiableMap(commands), this.snapshot.version + 1L);
+    }
+
+    private static class Snapshot {
+
+        private final Map<String, Command> commands;
+        private final long version;
+
+        private Snapshot(Map<String, Command> commands, long version) {
+            this.commands = commands;
+            this.version = version;
+        }
+
     }
 
-}
\ No newline at end of file
+}
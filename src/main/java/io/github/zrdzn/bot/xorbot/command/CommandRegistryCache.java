@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) 2022 zrdzn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.zrdzn.bot.xorbot.command;
+
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Caches a value derived from the registered commands until the registry changes.
+ *
+ * @param <T> type of the cached value
+ */
+public class CommandRegistryCache<T> {
+
+    private final CommandRegistry commandRegistry;
+    private final Function<Map<String, Command>, T> factory;
+
+    private volatile Entry<T> entry;
+
+    public CommandRegistryCache(CommandRegistry commandRegistry, Function<Map<String, Command>, T> factory) {
+        this.commandRegistry = commandRegistry;
+        this.factory = factory;
+    }
+
+    public T get() {
+        long version = this.commandRegistry.getVersion();
+
+        Entry<T> currentEntry = this.entry;
+        if (currentEntry == null || currentEntry.version != version) {
+            currentEntry = new Entry<>(version, this.factory.apply(this.commandRegistry.getCommands()));
+            this.entry = currentEntry;
+        }
+
+        return currentEntry.value;
+    }
+
+    private static class Entry<T> {
+
+        private final long version;
+        private final T value;
+
+        private Entry(long version, T value) {
+            this.version = version;
+            this.value = value;
+        }
+
+    }
+
+}
@@ -17,8 +17,14 @@ package io.github.zrdzn.bot.xorbot.command.commands;
 
 import io.github.zrdzn.bot.xorbot.command.Command;
 import io.github.zrdzn.bot.xorbot.command.CommandRegistry;
+import io.github.zrdzn.bot.xorbot.command.CommandRegistryCache;
+import io.github.zrdzn.bot.xorbot.diagnostics.RuntimeDiagnostics;
 import io.github.zrdzn.bot.xorbot.embed.EmbedHelper;
+import io.github.zrdzn.bot.xorbot.rest.RestPriority;
+import io.github.zrdzn.bot.xorbot.rest.RestScheduler;
 import net.dv8tion.jda.api.EmbedBuilder;
+import net.dv8tion.jda.api.Permission;
+import net.dv8tion.jda.api.entities.MessageEmbed;
 import net.dv8tion.jda.api.events.message.MessageReceivedEvent;
 
 import java.util.List;
@@ -26,10 +32,15 @@ import java.util.Optional;
 
 public class BotInformationCommand implements Command {
 
-    private final CommandRegistry commandRegistry;
+    private final CommandRegistryCache<MessageEmbed.Field> commandsAmountField;
+    private final RuntimeDiagnostics diagnostics;
+    private final RestScheduler restScheduler;
 
-    public BotInformationCommand(CommandRegistry commandRegistry) {
-        this.commandRegistry = commandRegistry;
+    public BotInformationCommand(CommandRegistry commandRegistry, RuntimeDiagnostics diagnostics, RestScheduler restScheduler) {
+        this.commandsAmountField = new CommandRegistryCache<>(commandRegistry, commands ->
+            new MessageEmbed.Field("Commands amount", String.valueOf(commands.size()), false));
+        this.diagnostics = diagnostics;
+        this.restScheduler = restScheduler;
     }
 
     @Override
@@ -39,7 +50,7 @@ public class BotInformationCommand implements Command {
 
     @Override
     public Optional<String> getDescription() {
-        return Optional.of("Shows information about bot.");
+        return Optional.of("Shows information about bot and its live runtime diagnostics.");
     }
 
     @Override
@@ -49,11 +60,24 @@ public class BotInformationCommand implements Command {
 
     @Override
     public void execute(MessageReceivedEvent event, List<String> optionList) {
+        if (!event.getMember().hasPermission(Permission.ADMINISTRATOR)) {
+            this.restScheduler.queue(RestPriority.COMMAND, event.getChannel(),
+                event.getChannel().sendMessageEmbeds(EmbedHelper.NO_PERMISSIONS_EMBED));
+            return;
+        }
+
         EmbedBuilder embedBuilder = EmbedHelper.info(event.getAuthor());
 
-        embedBuilder.addField("Commands amount", String.valueOf(this.commandRegistry.getCommands().size()), false);
+        embedBuilder.addField(this.commandsAmountField.get());
+        embedBuilder.addField("Heap", this.diagnostics.formatMemory(), false);
+        embedBuilder.addField("Garbage collection", this.diagnostics.formatGarbageCollection(), false);
+        embedBuilder.addField("Threads", this.diagnostics.formatThreads(), false);
+        embedBuilder.addField("Gateway ping", this.diagnostics.formatGateway(event.getJDA()), false);
+        embedBuilder.addField("Database pool", this.diagnostics.formatDatabase(), false);
+        embedBuilder.addField("Message cache", this.diagnostics.formatMessageCache(), false);
+        embedBuilder.addField("Command latency", this.diagnostics.formatCommandLatency(), false);
 
-        event.getChannel().sendMessageEmbeds(embedBuilder.build()).queue();
+        this.restScheduler.queue(RestPriority.COMMAND, event.getChannel(), event.getChannel().sendMessageEmbeds(embedBuilder.build()));
     }
 
 }
\ No newline at end of file
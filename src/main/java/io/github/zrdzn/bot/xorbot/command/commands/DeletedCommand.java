@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2022 zrdzn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.zrdzn.bot.xorbot.command.commands;
+
+import io.github.zrdzn.bot.xorbot.cache.DeletedMessage;
+import io.github.zrdzn.bot.xorbot.cache.DeletionIndex;
+import io.github.zrdzn.bot.xorbot.command.Command;
+import io.github.zrdzn.bot.xorbot.embed.EmbedHelper;
+import io.github.zrdzn.bot.xorbot.rest.RestPriority;
+import io.github.zrdzn.bot.xorbot.rest.RestScheduler;
+import net.dv8tion.jda.api.EmbedBuilder;
+import net.dv8tion.jda.api.Permission;
+import net.dv8tion.jda.api.entities.TextChannel;
+import net.dv8tion.jda.api.events.message.MessageReceivedEvent;
+import net.dv8tion.jda.api.utils.TimeFormat;
+
+import java.util.List;
+import java.util.Optional;
+
+public class DeletedCommand implements Command {
+
+    private static final String USAGE = "!deleted [<channel>] [<minutes>]";
+    private static final int PAGE_SIZE = 15;
+    private static final int MAX_CONTENT_LENGTH = 200;
+    private static final long DEFAULT_MINUTES = 10L;
+
+    private final DeletionIndex deletionIndex;
+    private final long retentionMinutes;
+    private final RestScheduler restScheduler;
+
+    public DeletedCommand(DeletionIndex deletionIndex, long retentionMinutes, RestScheduler restScheduler) {
+        this.deletionIndex = deletionIndex;
+        this.retentionMinutes = retentionMinutes;
+        this.restScheduler = restScheduler;
+    }
+
+    @Override
+    public String getName() {
+        return "deleted";
+    }
+
+    @Override
+    public Optional<String> getDescription() {
+        return Optional.of("Show deleted messages of a channel that were sent in the last minutes.");
+    }
+
+    @Override
+    public Optional<String> getUsage() {
+        return Optional.of(USAGE);
+    }
+
+    @Override
+    public void execute(MessageReceivedEvent event, List<String> optionList) {
+        TextChannel channel = event.getTextChannel();
+        TextChannel target = channel;
+        long minutes = DEFAULT_MINUTES;
+
+        for (String option : optionList) {
+            if (option.startsWith("<#") && option.endsWith(">") || option.length() >= 17) {
+                target = findChannel(event, option);
+                if (target == null) {
+                    this.restScheduler.queue(RestPriority.COMMAND, channel, channel.sendMessage("This channel does not exist on this server."));
+                    return;
+                }
+
+                continue;
+            }
+
+            try {
+                minutes = Long.parseLong(option);
+            } catch (NumberFormatException exception) {
+                this.restScheduler.queue(RestPriority.COMMAND, channel, channel.sendMessage("Usage: " + USAGE));
+                return;
+            }
+        }
+
+        if (!event.getMember().hasPermission(target, Permission.MESSAGE_MANAGE)) {
+            this.restScheduler.queue(RestPriority.COMMAND, channel, channel.sendMessageEmbeds(EmbedHelper.NO_PERMISSIONS_EMBED));
+            return;
+        }
+
+        minutes = Math.max(1L, Math.min(minutes, this.retentionMinutes));
+
+        List<DeletedMessage> messages = this.deletionIndex.find(event.getGuild().getIdLong(), target.getIdLong(),
+            System.currentTimeMillis() - minutes * 60_000L, PAGE_SIZE);
+
+        if (messages.isEmpty()) {
+            this.restScheduler.queue(RestPriority.COMMAND, channel,
+                channel.sendMessage(String.format("No deleted messages sent in %s in the last %d minutes.", target.getAsMention(), minutes)));
+            return;
+        }
+
+        StringBuilder description = new StringBuilder();
+        for (DeletedMessage message : messages) {
+            description.append(TimeFormat.TIME_SHORT.format(message.getCreatedAt())).append(' ')
+                .append("**").append(message.getAuthor().getAsTag()).append("** ")
+                .append(formatContent(message))
+                .append('\n');
+        }
+
+        EmbedBuilder embed = EmbedHelper.info(event.getAuthor())
+            .setTitle(String.format("Deleted messages in #%s from the last %d minutes", target.getName(), minutes))
+            .setDescription(description.toString());
+
+        if (messages.size() == PAGE_SIZE) {
+            embed.setFooter("Only the newest " + PAGE_SIZE + " messages are shown.");
+        }
+
+        this.restScheduler.queue(RestPriority.COMMAND, channel, channel.sendMessageEmbeds(embed.build()));
+    }
+
+    private static String formatContent(DeletedMessage message) {
+        String content = message.getContent().replace('\n', ' ');
+        if (content.isBlank()) {
+            return "*<no text>*";
+        }
+
+        if (content.length() > MAX_CONTENT_LENGTH) {
+            content = content.substring(0, MAX_CONTENT_LENGTH - 3) + "...";
+        }
+
+        return content;
+    }
+
+    static TextChannel findChannel(MessageReceivedEvent event, String option) {
+        String id = option;
+        if (id.startsWith("<#") && id.endsWith(">")) {
+            id = id.substring(2, id.length() - 1);
+        }
+
+        try {
+            return event.getGuild().getTextChannelById(Long.parseUnsignedLong(id));
+        } catch (NumberFormatException exception) {
+            return null;
+        }
+    }
+
+}
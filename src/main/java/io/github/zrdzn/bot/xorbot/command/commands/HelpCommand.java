@@ -17,19 +17,28 @@ package io.github.zrdzn.bot.xorbot.command.commands;
 
 import io.github.zrdzn.bot.xorbot.command.Command;
 import io.github.zrdzn.bot.xorbot.command.CommandRegistry;
+import io.github.zrdzn.bot.xorbot.command.CommandRegistryCache;
 import io.github.zrdzn.bot.xorbot.embed.EmbedHelper;
+import io.github.zrdzn.bot.xorbot.rest.RestPriority;
+import io.github.zrdzn.bot.xorbot.rest.RestScheduler;
 import net.dv8tion.jda.api.EmbedBuilder;
+import net.dv8tion.jda.api.entities.MessageEmbed;
 import net.dv8tion.jda.api.events.message.MessageReceivedEvent;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 public class HelpCommand implements Command {
 
-    private final CommandRegistry commandRegistry;
+    private final CommandRegistryCache<List<MessageEmbed.Field>> commandFields;
+    private final RestScheduler restScheduler;
 
-    public HelpCommand(CommandRegistry commandRegistry) {
-        this.commandRegistry = commandRegistry;
+    public HelpCommand(CommandRegistry commandRegistry, RestScheduler restScheduler) {
+        this.commandFields = new CommandRegistryCache<>(commandRegistry, commands -> commands.values().stream()
+            .map(command -> new MessageEmbed.Field(command.getName(), command.getDescription().orElse("<None>"), false))
+            .collect(Collectors.toUnmodifiableList()));
+        this.restScheduler = restScheduler;
     }
 
     @Override
@@ -51,10 +60,9 @@ public class HelpCommand implements Command {
     public void execute(MessageReceivedEvent event, List<String> optionList) {
         EmbedBuilder embedBuilder = EmbedHelper.info(event.getAuthor());
 
-        this.commandRegistry.getCommands().values()
-                .forEach(command -> embedBuilder.addField(command.getName(), command.getDescription().orElse("<None>"), false));
+        this.commandFields.get().forEach(embedBuilder::addField);
 
-        event.getChannel().sendMessageEmbeds(embedBuilder.build()).queue();
+        this.restScheduler.queue(RestPriority.COMMAND, event.getChannel(), event.getChannel().sendMessageEmbeds(embedBuilder.build()));
     }
 
 }
\ No newline at end of file
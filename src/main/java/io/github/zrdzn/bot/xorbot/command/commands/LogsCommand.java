@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) 2022 zrdzn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.zrdzn.bot.xorbot.command.commands;
+
+import io.github.zrdzn.bot.xorbot.command.Command;
+import io.github.zrdzn.bot.xorbot.database.Deadline;
+import io.github.zrdzn.bot.xorbot.embed.EmbedHelper;
+import io.github.zrdzn.bot.xorbot.log.LogAction;
+import io.github.zrdzn.bot.xorbot.log.LogEntry;
+import io.github.zrdzn.bot.xorbot.log.LogRepository;
+import io.github.zrdzn.bot.xorbot.rest.RestPriority;
+import io.github.zrdzn.bot.xorbot.rest.RestScheduler;
+import net.dv8tion.jda.api.EmbedBuilder;
+import net.dv8tion.jda.api.Permission;
+import net.dv8tion.jda.api.entities.MessageEmbed;
+import net.dv8tion.jda.api.entities.TextChannel;
+import net.dv8tion.jda.api.events.message.MessageReceivedEvent;
+import net.dv8tion.jda.api.utils.TimeFormat;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+
+public class LogsCommand implements Command {
+
+    private static final String USAGE = "!logs [<mention>/<user id>] [<action>] [<hours>h] [before:<entry id>]";
+    private static final int PAGE_SIZE = 10;
+    private static final int MAX_DETAILS_LENGTH = 200;
+
+    private final LogRepository logRepository;
+    private final RestScheduler restScheduler;
+
+    public LogsCommand(LogRepository logRepository, RestScheduler restScheduler) {
+        this.logRepository = logRepository;
+        this.restScheduler = restScheduler;
+    }
+
+    @Override
+    public String getName() {
+        return "logs";
+    }
+
+    @Override
+    public Optional<String> getDescription() {
+        return Optional.of("Search the log archive of this server by user, action and time.");
+    }
+
+    @Override
+    public Optional<String> getUsage() {
+        return Optional.of(USAGE);
+    }
+
+    @Override
+    public void execute(MessageReceivedEvent event, List<String> optionList) {
+        TextChannel channel = event.getTextChannel();
+
+        if (!event.getMember().hasPermission(Permission.VIEW_AUDIT_LOGS)) {
+            this.restScheduler.queue(RestPriority.COMMAND, channel, channel.sendMessageEmbeds(EmbedHelper.NO_PERMISSIONS_EMBED));
+            return;
+        }
+
+        long targetId = 0L;
+        LogAction action = null;
+        long sinceMillis = 0L;
+        long beforeId = 0L;
+
+        try {
+            for (String option : optionList) {
+                String lowerOption = option.toLowerCase(Locale.ROOT);
+                if (lowerOption.startsWith("before:")) {
+                    beforeId = Long.parseLong(option.substring("before:".length()));
+                } else if (lowerOption.startsWith("<@")) {
+                    targetId = Long.parseLong(option.replaceAll("[^0-9]", ""));
+                } else if (lowerOption.endsWith("h") && lowerOption.length() > 1) {
+                    sinceMillis = System.currentTimeMillis() - Long.parseLong(option.substring(0, option.length() - 1)) * 3_600_000L;
+                } else if (lowerOption.chars().allMatch(Character::isDigit)) {
+                    targetId = Long.parseLong(option);
+                } else {
+                    action = LogAction.valueOf(option.toUpperCase(Locale.ROOT));
+                }
+            }
+        } catch (IllegalArgumentException exception) {
+            this.restScheduler.queue(RestPriority.COMMAND, channel, channel.sendMessage(USAGE));
+            return;
+        }
+
+        long guildId = event.getGuild().getIdLong();
+        long finalTargetId = targetId;
+        LogAction finalAction = action;
+        long finalSinceMillis = sinceMillis;
+        long finalBeforeId = beforeId;
+
+        Deadline.track(CompletableFuture.supplyAsync(Deadline.propagate(() -> this.logRepository.search(guildId, finalTargetId,
+                finalAction, finalSinceMillis, finalBeforeId, PAGE_SIZE))))
+            .whenComplete((entriesMaybe, throwable) -> {
+                // Cancelled by the command deadline, the timeout reply is sent by the command listener.
+                if (throwable instanceof CancellationException) {
+                    return;
+                }
+
+                if (throwable != null || entriesMaybe.isEmpty()) {
+                    this.restScheduler.queue(RestPriority.COMMAND, channel,
+                        channel.sendMessage("Could not search the log archive, try again later."));
+                    return;
+                }
+
+                List<LogEntry> entries = entriesMaybe.get();
+                if (entries.isEmpty()) {
+                    this.restScheduler.queue(RestPriority.COMMAND, channel, channel.sendMessage("No log entries found."));
+                    return;
+                }
+
+                this.restScheduler.queue(RestPriority.COMMAND, channel,
+                    channel.sendMessageEmbeds(this.formatPage(event, entries, optionList)));
+            });
+    }
+
+    private MessageEmbed formatPage(MessageReceivedEvent event, List<LogEntry> entries, List<String> optionList) {
+        StringBuilder description = new StringBuilder();
+        for (LogEntry entry : entries) {
+            String details = entry.getDetails().replace('\n', ' ');
+            if (details.length() > MAX_DETAILS_LENGTH) {
+                details = details.substring(0, MAX_DETAILS_LENGTH - 3) + "...";
+            }
+
+            description.append('`').append(entry.getId()).append("` ")
+                .append(TimeFormat.DATE_TIME_SHORT.format(entry.getCreatedAt())).append(' ')
+                .append("**").append(entry.getAction().getDescription()).append("** ")
+                .append(details)
+                .append('\n');
+        }
+
+        EmbedBuilder embed = EmbedHelper.info(event.getAuthor())
+            .setTitle("Log entries")
+            .setDescription(description.toString());
+
+        if (entries.size() == PAGE_SIZE) {
+            StringBuilder nextPage = new StringBuilder("Next page: !logs");
+            for (String option : optionList) {
+                if (!option.toLowerCase(Locale.ROOT).startsWith("before:")) {
+                    nextPage.append(' ').append(option);
+                }
+            }
+            nextPage.append(" before:").append(entries.get(entries.size() - 1).getId());
+
+            embed.setFooter(nextPage.toString());
+        }
+
+        return embed.build();
+    }
+
+}
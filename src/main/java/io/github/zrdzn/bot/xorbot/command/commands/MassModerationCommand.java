@@ -0,0 +1,274 @@
+/*
+ * Copyright (c) 2022 zrdzn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.zrdzn.bot.xorbot.command.commands;
+
+import io.github.zrdzn.bot.xorbot.antispam.RaidDetector;
+import io.github.zrdzn.bot.xorbot.command.Command;
+import io.github.zrdzn.bot.xorbot.embed.EmbedHelper;
+import io.github.zrdzn.bot.xorbot.moderation.MassAction;
+import io.github.zrdzn.bot.xorbot.moderation.MassModerator;
+import io.github.zrdzn.bot.xorbot.rest.RestPriority;
+import io.github.zrdzn.bot.xorbot.rest.RestScheduler;
+import net.dv8tion.jda.api.entities.Guild;
+import net.dv8tion.jda.api.entities.Member;
+import net.dv8tion.jda.api.entities.Message;
+import net.dv8tion.jda.api.entities.TextChannel;
+import net.dv8tion.jda.api.entities.User;
+import net.dv8tion.jda.api.events.message.MessageReceivedEvent;
+
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntConsumer;
+import java.util.stream.LongStream;
+
+public class MassModerationCommand implements Command {
+
+    private static final long PROGRESS_INTERVAL_MILLIS = 1000L;
+
+    private final MassAction action;
+    private final MassModerator massModerator;
+    private final RaidDetector raidDetector;
+    private final int maxTargets;
+    private final RestScheduler restScheduler;
+
+    public MassModerationCommand(MassAction action, MassModerator massModerator, RaidDetector raidDetector, int maxTargets,
+                                 RestScheduler restScheduler) {
+        this.action = action;
+        this.massModerator = massModerator;
+        this.raidDetector = raidDetector;
+        this.maxTargets = maxTargets;
+        this.restScheduler = restScheduler;
+    }
+
+    @Override
+    public String getName() {
+        return "mass" + this.action.getName();
+    }
+
+    @Override
+    public Optional<String> getDescription() {
+        return Optional.of(String.format("Mass %s members by ids, by join time or the members that joined during the last raid.",
+            this.action.getName()));
+    }
+
+    @Override
+    public Optional<String> getUsage() {
+        return Optional.of(String.format("!%s [<ids>/joined:<minutes>/raid] [<reason>]", this.getName()));
+    }
+
+    @Override
+    public void execute(MessageReceivedEvent event, List<String> optionList) {
+        TextChannel channel = event.getTextChannel();
+        Guild guild = event.getGuild();
+
+        if (!event.getMember().hasPermission(this.action.getPermission())) {
+            this.restScheduler.queue(RestPriority.COMMAND, channel, channel.sendMessageEmbeds(EmbedHelper.NO_PERMISSIONS_EMBED));
+            return;
+        }
+
+        if (!guild.getSelfMember().hasPermission(this.action.getPermission())) {
+            this.restScheduler.queue(RestPriority.COMMAND, channel,
+                channel.sendMessage(String.format("I do not have the permission to %s members.", this.action.getName())));
+            return;
+        }
+
+        if (optionList.isEmpty()) {
+            this.restScheduler.queue(RestPriority.COMMAND, channel, channel.sendMessage(this.getUsage().get()));
+            return;
+        }
+
+        String selector = optionList.get(0).toLowerCase(Locale.ROOT);
+
+        if (selector.equals("raid")) {
+            long[] userIds = this.raidDetector.getLastRaidJoins(guild.getIdLong());
+            if (userIds.length == 0) {
+                this.restScheduler.queue(RestPriority.COMMAND, channel, channel.sendMessage("No raid was detected recently."));
+                return;
+            }
+
+            this.start(event, userIds, "the last raid", formatReason(event, optionList, 1));
+            return;
+        }
+
+        if (selector.startsWith("joined:")) {
+            long minutes;
+            try {
+                minutes = Long.parseLong(selector.substring("joined:".length()));
+            } catch (NumberFormatException exception) {
+                minutes = 0L;
+            }
+
+            if (minutes <= 0L) {
+                this.restScheduler.queue(RestPriority.COMMAND, channel, channel.sendMessage("You need to provide valid amount of minutes."));
+                return;
+            }
+
+            this.startJoinedSince(event, minutes, formatReason(event, optionList, 1));
+            return;
+        }
+
+        LongStream.Builder userIds = LongStream.builder();
+        int index = 0;
+        for (; index < optionList.size(); index++) {
+            long userId = parseUserId(optionList.get(index));
+            if (userId == 0L) {
+                break;
+            }
+
+            userIds.add(userId);
+        }
+
+        if (index == 0) {
+            this.restScheduler.queue(RestPriority.COMMAND, channel, channel.sendMessage(this.getUsage().get()));
+            return;
+        }
+
+        this.start(event, userIds.build().toArray(), "an id list", formatReason(event, optionList, index));
+    }
+
+    private void startJoinedSince(MessageReceivedEvent event, long minutes, String reason) {
+        TextChannel channel = event.getTextChannel();
+        Instant since = Instant.now().minusMillis(TimeUnit.MINUTES.toMillis(minutes));
+
+        // Members are streamed, only the matching ids are kept.
+        LongStream.Builder userIds = LongStream.builder();
+        event.getGuild().loadMembers(member -> {
+                if (!member.getUser().isBot() && member.getTimeJoined().toInstant().isAfter(since)) {
+                    synchronized (userIds) {
+                        userIds.add(member.getIdLong());
+                    }
+                }
+            })
+            .onSuccess(ignored -> {
+                long[] result;
+                synchronized (userIds) {
+                    result = userIds.build().toArray();
+                }
+
+                this.start(event, result, "joining in the last " + minutes + " minutes", reason);
+            })
+            .onError(exception -> this.restScheduler.queue(RestPriority.COMMAND, channel, channel.sendMessage("Could not resolve members.")));
+    }
+
+    private void start(MessageReceivedEvent event, long[] candidates, String source, String reason) {
+        TextChannel channel = event.getTextChannel();
+        Guild guild = event.getGuild();
+
+        // Moderators cannot hit themselves, the bot or the owner by a wide selection.
+        long[] userIds = LongStream.of(candidates)
+            .filter(userId -> userId != event.getAuthor().getIdLong()
+                && userId != guild.getSelfMember().getIdLong()
+                && userId != guild.getOwnerIdLong())
+            .distinct()
+            .toArray();
+
+        if (userIds.length == 0) {
+            this.restScheduler.queue(RestPriority.COMMAND, channel, channel.sendMessage("No members matched."));
+            return;
+        }
+
+        if (userIds.length > this.maxTargets) {
+            this.restScheduler.queue(RestPriority.COMMAND, channel, channel.sendMessage(String.format(
+                "Selection contains %d members, at most %d can be handled at once.", userIds.length, this.maxTargets)));
+            return;
+        }
+
+        // Targets ranked at or above the moderator or the bot are skipped, the bot must not bypass the role hierarchy.
+        // Ids that are not members of the guild are kept, they have no roles to compare.
+        guild.retrieveMembersByIds(userIds)
+            .onSuccess(members -> {
+                Set<Long> protectedIds = new HashSet<>();
+                for (Member member : members) {
+                    if (!event.getMember().canInteract(member) || !guild.getSelfMember().canInteract(member)) {
+                        protectedIds.add(member.getIdLong());
+                    }
+                }
+
+                long[] allowedIds = LongStream.of(userIds).filter(userId -> !protectedIds.contains(userId)).toArray();
+                if (allowedIds.length == 0) {
+                    this.restScheduler.queue(RestPriority.COMMAND, channel,
+                        channel.sendMessage("No members matched that you and the bot are allowed to moderate."));
+                    return;
+                }
+
+                this.run(event, allowedIds, protectedIds.size(), source, reason);
+            })
+            .onError(exception -> this.restScheduler.queue(RestPriority.COMMAND, channel, channel.sendMessage("Could not resolve members.")));
+    }
+
+    private void run(MessageReceivedEvent event, long[] userIds, int skipped, String source, String reason) {
+        TextChannel channel = event.getTextChannel();
+        Guild guild = event.getGuild();
+        int total = userIds.length;
+
+        String skippedNote = skipped == 0 ? "" : String.format(" Skipped %d members ranked above you or the bot.", skipped);
+
+        this.restScheduler.queue(RestPriority.COMMAND, channel,
+            channel.sendMessage(String.format("%s %d members selected by %s...%s", this.action.getProgressive(), total, source,
+                skippedNote)), reply -> {
+                // Edits are throttled, every action would otherwise hit the rate limit of the reply.
+                AtomicLong lastProgress = new AtomicLong(System.currentTimeMillis());
+                IntConsumer progressConsumer = processed -> {
+                    long now = System.currentTimeMillis();
+                    long last = lastProgress.get();
+                    if (processed < total && now - last >= PROGRESS_INTERVAL_MILLIS && lastProgress.compareAndSet(last, now)) {
+                        this.editReply(reply, String.format("Processed %d of %d members...", processed, total));
+                    }
+                };
+
+                this.massModerator.apply(guild, this.action, userIds, source, reason, event.getAuthor(), progressConsumer)
+                    .thenAccept(failed -> this.editReply(reply, String.format("Done, %s %d of %d members, %d failed.%s",
+                        this.action.getPastTense(), total - failed, total, failed, skippedNote)));
+            });
+    }
+
+    private void editReply(Message reply, String content) {
+        this.restScheduler.queue(RestPriority.COMMAND, reply.getChannel(), reply.editMessage(content));
+    }
+
+    private static String formatReason(MessageReceivedEvent event, List<String> optionList, int start) {
+        User author = event.getAuthor();
+        if (start >= optionList.size()) {
+            return "Mass moderation by " + author.getAsTag();
+        }
+
+        return String.join(" ", optionList.subList(start, optionList.size())) + " (by " + author.getAsTag() + ")";
+    }
+
+    private static long parseUserId(String option) {
+        String id = option;
+        if (id.startsWith("<@") && id.endsWith(">")) {
+            id = id.substring(id.startsWith("<@!") ? 3 : 2, id.length() - 1);
+        }
+
+        if (id.length() < 17 || id.length() > 20) {
+            return 0L;
+        }
+
+        try {
+            return Long.parseUnsignedLong(id);
+        } catch (NumberFormatException exception) {
+            return 0L;
+        }
+    }
+
+}
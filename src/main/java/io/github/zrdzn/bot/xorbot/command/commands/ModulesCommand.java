@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2022 zrdzn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.zrdzn.bot.xorbot.command.commands;
+
+import io.github.zrdzn.bot.xorbot.command.Command;
+import io.github.zrdzn.bot.xorbot.command.module.CommandModule;
+import io.github.zrdzn.bot.xorbot.command.module.CommandModuleLoader;
+import io.github.zrdzn.bot.xorbot.command.module.LazyCommand;
+import io.github.zrdzn.bot.xorbot.embed.EmbedHelper;
+import io.github.zrdzn.bot.xorbot.rest.RestPriority;
+import io.github.zrdzn.bot.xorbot.rest.RestScheduler;
+import net.dv8tion.jda.api.Permission;
+import net.dv8tion.jda.api.entities.TextChannel;
+import net.dv8tion.jda.api.events.message.MessageReceivedEvent;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+public class ModulesCommand implements Command {
+
+    private static final String USAGE = "!modules [load/unload <name>]";
+
+    private final CommandModuleLoader moduleLoader;
+    private final Path modulesDirectory;
+    private final RestScheduler restScheduler;
+
+    public ModulesCommand(CommandModuleLoader moduleLoader, Path modulesDirectory, RestScheduler restScheduler) {
+        this.moduleLoader = moduleLoader;
+        this.modulesDirectory = modulesDirectory;
+        this.restScheduler = restScheduler;
+    }
+
+    @Override
+    public String getName() {
+        return "modules";
+    }
+
+    @Override
+    public Optional<String> getDescription() {
+        return Optional.of("List command modules, load new module jars or unload a module at runtime.");
+    }
+
+    @Override
+    public Optional<String> getUsage() {
+        return Optional.of(USAGE);
+    }
+
+    @Override
+    public void execute(MessageReceivedEvent event, List<String> optionList) {
+        TextChannel channel = event.getTextChannel();
+
+        if (!event.getMember().hasPermission(Permission.ADMINISTRATOR)) {
+            this.restScheduler.queue(RestPriority.COMMAND, channel, channel.sendMessageEmbeds(EmbedHelper.NO_PERMISSIONS_EMBED));
+            return;
+        }
+
+        if (optionList.isEmpty()) {
+            this.listModules(event);
+            return;
+        }
+
+        switch (optionList.get(0).toLowerCase(Locale.ROOT)) {
+            case "load" -> {
+                int loaded = this.moduleLoader.loadModules(this.modulesDirectory);
+                this.restScheduler.queue(RestPriority.COMMAND, channel, channel.sendMessage(String.format("Loaded %d new modules.", loaded)));
+            }
+            case "unload" -> {
+                if (optionList.size() < 2) {
+                    this.restScheduler.queue(RestPriority.COMMAND, channel, channel.sendMessage("Usage: " + USAGE));
+                    return;
+                }
+
+                String name = optionList.get(1);
+                this.restScheduler.queue(RestPriority.COMMAND, channel, channel.sendMessage(this.moduleLoader.unloadModule(name)
+                    ? "Module '" + name + "' has been unloaded."
+                    : "Module '" + name + "' is not loaded."));
+            }
+            default -> this.restScheduler.queue(RestPriority.COMMAND, channel, channel.sendMessage("Usage: " + USAGE));
+        }
+    }
+
+    private void listModules(MessageReceivedEvent event) {
+        TextChannel channel = event.getTextChannel();
+
+        if (this.moduleLoader.getModules().isEmpty()) {
+            this.restScheduler.queue(RestPriority.COMMAND, channel, channel.sendMessage("No command modules are loaded."));
+            return;
+        }
+
+        StringBuilder description = new StringBuilder();
+        for (CommandModule module : this.moduleLoader.getModules().values()) {
+            description.append("**").append(module.getName()).append("** ")
+                .append(module.isLoaded() ? "(classes loaded)" : "(not used yet)").append(": ")
+                .append(module.getCommands().stream().map(LazyCommand::getName).collect(Collectors.joining(", ")))
+                .append('\n');
+        }
+
+        this.restScheduler.queue(RestPriority.COMMAND, channel, channel.sendMessageEmbeds(EmbedHelper.info(event.getAuthor())
+            .setTitle("Command modules")
+            .setDescription(description.toString())
+            .build()));
+    }
+
+}
@@ -16,26 +16,47 @@
 package io.github.zrdzn.bot.xorbot.command.commands;
 
 import io.github.zrdzn.bot.xorbot.command.Command;
+import io.github.zrdzn.bot.xorbot.database.DatabaseUnavailableException;
 import io.github.zrdzn.bot.xorbot.economy.EconomyService;
 import io.github.zrdzn.bot.xorbot.embed.EmbedHelper;
+import io.github.zrdzn.bot.xorbot.rest.RestPriority;
+import io.github.zrdzn.bot.xorbot.rest.RestScheduler;
 import io.github.zrdzn.bot.xorbot.user.UserService;
+import net.dv8tion.jda.api.EmbedBuilder;
+import net.dv8tion.jda.api.Permission;
+import net.dv8tion.jda.api.entities.Guild;
 import net.dv8tion.jda.api.entities.Member;
+import net.dv8tion.jda.api.entities.Message;
+import net.dv8tion.jda.api.entities.Role;
 import net.dv8tion.jda.api.entities.TextChannel;
 import net.dv8tion.jda.api.events.message.MessageReceivedEvent;
+import net.dv8tion.jda.api.utils.concurrent.Task;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntConsumer;
 
 public class MoneyCommand implements Command {
 
+    private static final String USAGE = "!money [get/set/add/subtract] [<amount>] [<mention>/<role mention>/everyone]";
+    private static final long PROGRESS_INTERVAL_MILLIS = 1000L;
+
     private final UserService userService;
     private final EconomyService economyService;
+    private final RestScheduler restScheduler;
 
-    public MoneyCommand(UserService userService, EconomyService economyService) {
+    public MoneyCommand(UserService userService, EconomyService economyService, RestScheduler restScheduler) {
         this.userService = userService;
         this.economyService = economyService;
+        this.restScheduler = restScheduler;
     }
 
     @Override
@@ -50,7 +71,7 @@ public class MoneyCommand implements Command {
 
     @Override
     public Optional<String> getUsage() {
-        return Optional.of(String.format("!%s [get/set/add/subtract] [<amount>] [<mention>]", this.getName()));
+        return Optional.of(USAGE);
     }
 
     @Override
@@ -59,43 +80,47 @@ public class MoneyCommand implements Command {
 
         Member member = event.getMember();
         if (optionList.isEmpty()) {
-            this.economyService.getMoney(member.getIdLong()).thenAcceptAsync(money ->
-                channel.sendMessageEmbeds(EmbedHelper.info(event.getAuthor())
-                    .addField("Account balance", String.valueOf(money), false)
-                    .build()).queue());
-
+            this.replyBalance(event, this.economyService.getMoney(member.getIdLong()));
             return;
         }
 
-        String usage = this.getUsage().orElse("No usage specified");
-
         if (optionList.size() == 1) {
-            channel.sendMessage(usage).queue();
+            this.restScheduler.queue(RestPriority.COMMAND, channel, channel.sendMessage(USAGE));
             return;
         }
 
         long amount = 0L;
         if (!optionList.get(0).equalsIgnoreCase("get")) {
             if (optionList.size() == 2) {
-                channel.sendMessageEmbeds(EmbedHelper.NO_MENTIONED_USER).queue();
+                this.restScheduler.queue(RestPriority.COMMAND, channel, channel.sendMessageEmbeds(EmbedHelper.NO_MENTIONED_USER));
                 return;
             }
 
             try {
                 amount = Long.parseLong(optionList.get(1));
                 if (amount < 0) {
-                    channel.sendMessage("Amount must be above 0.").queue();
+                    this.restScheduler.queue(RestPriority.COMMAND, channel, channel.sendMessage("Amount must be above 0."));
                     return;
                 }
             } catch (NumberFormatException exception) {
-                channel.sendMessage("You need to provide valid amount.").queue();
+                this.restScheduler.queue(RestPriority.COMMAND, channel, channel.sendMessage("You need to provide valid amount."));
+                return;
+            }
+        }
+
+        String operation = optionList.get(0).toLowerCase(Locale.ROOT);
+        if (!operation.equals("get")) {
+            List<Role> roles = event.getMessage().getMentionedRoles();
+            boolean everyone = event.getMessage().mentionsEveryone() || optionList.get(2).equalsIgnoreCase("everyone");
+            if (everyone || !roles.isEmpty()) {
+                this.executeBulk(event, operation, amount, everyone ? null : roles.get(0));
                 return;
             }
         }
 
         member = event.getMessage().getMentionedMembers().get(0);
         if (member == null) {
-            channel.sendMessageEmbeds(EmbedHelper.NO_MENTIONED_USER).queue();
+            this.restScheduler.queue(RestPriority.COMMAND, channel, channel.sendMessageEmbeds(EmbedHelper.NO_MENTIONED_USER));
             return;
         }
 
@@ -103,7 +128,7 @@ public class MoneyCommand implements Command {
 
         this.userService.createUser(userId, member.getUser().getName(), 0L);
 
-        CompletableFuture<Long> updatedAccountBalance = switch (optionList.get(0).toLowerCase(Locale.ROOT)) {
+        CompletableFuture<Long> updatedAccountBalance = switch (operation) {
             case "get" -> this.economyService.getMoney(userId);
             case "set" -> this.economyService.setMoney(userId, amount);
             case "add" -> this.economyService.addMoney(userId, amount);
@@ -111,10 +136,113 @@ public class MoneyCommand implements Command {
             default -> this.economyService.getMoney(event.getAuthor().getIdLong());
         };
 
-        updatedAccountBalance.thenAccept(money ->
-            channel.sendMessageEmbeds(EmbedHelper.info(event.getAuthor())
-                .addField("Account balance", String.valueOf(money < 0 ? 0L : money), false)
-                .build()).queue());
+        this.replyBalance(event, updatedAccountBalance);
+    }
+
+    private void replyBalance(MessageReceivedEvent event, CompletableFuture<Long> balanceFuture) {
+        TextChannel channel = event.getTextChannel();
+
+        balanceFuture.whenComplete((money, throwable) -> {
+            // Cancelled by the command deadline, the timeout reply is sent by the command listener.
+            if (throwable instanceof CancellationException) {
+                return;
+            }
+
+            if (throwable != null) {
+                this.restScheduler.queue(RestPriority.COMMAND, channel, channel.sendMessage(describeFailure(throwable)));
+                return;
+            }
+
+            EmbedBuilder embed = EmbedHelper.info(event.getAuthor())
+                .addField("Account balance", String.valueOf(money), false);
+            if (this.economyService.isDegraded()) {
+                embed.setFooter("Database is unavailable, the balance may be outdated.");
+            }
+
+            this.restScheduler.queue(RestPriority.COMMAND, channel, channel.sendMessageEmbeds(embed.build()));
+        });
+    }
+
+    private void executeBulk(MessageReceivedEvent event, String operation, long amount, Role role) {
+        TextChannel channel = event.getTextChannel();
+
+        if (!event.getMember().hasPermission(Permission.MANAGE_SERVER)) {
+            this.restScheduler.queue(RestPriority.COMMAND, channel, channel.sendMessageEmbeds(EmbedHelper.NO_PERMISSIONS_EMBED));
+            return;
+        }
+
+        if (!operation.equals("set") && !operation.equals("add") && !operation.equals("subtract")) {
+            this.restScheduler.queue(RestPriority.COMMAND, channel, channel.sendMessage(USAGE));
+            return;
+        }
+
+        Guild guild = event.getGuild();
+
+        this.restScheduler.queue(RestPriority.COMMAND, channel, channel.sendMessage("Resolving members..."), reply -> {
+            Task<List<Member>> membersTask = role == null ? guild.loadMembers() : guild.findMembersWithRoles(role);
+            membersTask
+                .onSuccess(members -> this.applyBulk(reply, members, operation, amount))
+                .onError(exception -> this.editReply(reply, "Could not resolve members."));
+        });
+    }
+
+    private void applyBulk(Message reply, List<Member> members, String operation, long amount) {
+        Map<Long, String> usernames = new HashMap<>();
+        for (Member member : members) {
+            if (!member.getUser().isBot()) {
+                usernames.put(member.getIdLong(), member.getUser().getName());
+            }
+        }
+
+        if (usernames.isEmpty()) {
+            this.editReply(reply, "No members found.");
+            return;
+        }
+
+        List<Long> discordIds = new ArrayList<>(usernames.keySet());
+        int total = discordIds.size();
+
+        this.editReply(reply, String.format("Registering %d members...", total));
+
+        // Edits are throttled, every chunk would otherwise hit the rate limit of the reply.
+        AtomicLong lastProgress = new AtomicLong(System.currentTimeMillis());
+        IntConsumer progressConsumer = processed -> {
+            long now = System.currentTimeMillis();
+            long last = lastProgress.get();
+            if (processed < total && now - last >= PROGRESS_INTERVAL_MILLIS && lastProgress.compareAndSet(last, now)) {
+                this.editReply(reply, String.format("Prepared %d of %d members...", processed, total));
+            }
+        };
+
+        this.userService.createUsers(usernames)
+            .thenCompose(created -> switch (operation) {
+                case "set" -> this.economyService.setMoneyForAll(discordIds, amount, progressConsumer);
+                case "add" -> this.economyService.addMoneyForAll(discordIds, amount, progressConsumer);
+                default -> this.economyService.subtractMoneyForAll(discordIds, amount, progressConsumer);
+            })
+            .whenComplete((updated, throwable) -> {
+                if (throwable != null) {
+                    this.editReply(reply, describeFailure(throwable));
+                    return;
+                }
+
+                this.editReply(reply, updated < 0
+                    ? "Something went wrong while updating the balances, none of them were changed."
+                    : String.format("Updated balance of %d members.", updated));
+            });
+    }
+
+    private static String describeFailure(Throwable throwable) {
+        Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null ? throwable.getCause() : throwable;
+        if (cause instanceof DatabaseUnavailableException) {
+            return cause.getMessage();
+        }
+
+        return "Something went wrong while querying the database.";
+    }
+
+    private void editReply(Message reply, String content) {
+        this.restScheduler.queue(RestPriority.COMMAND, reply.getChannel(), reply.editMessage(content));
     }
 
 }
@@ -17,6 +17,9 @@ package io.github.zrdzn.bot.xorbot.command.commands;
 
 import io.github.zrdzn.bot.xorbot.command.Command;
 import io.github.zrdzn.bot.xorbot.embed.EmbedHelper;
+import io.github.zrdzn.bot.xorbot.rest.RestPriority;
+import io.github.zrdzn.bot.xorbot.rest.RestScheduler;
+import io.github.zrdzn.bot.xorbot.slowmode.AutoSlowmodeController;
 import net.dv8tion.jda.api.Permission;
 import net.dv8tion.jda.api.entities.TextChannel;
 import net.dv8tion.jda.api.events.message.MessageReceivedEvent;
@@ -26,6 +29,16 @@ import java.util.Optional;
 
 public class SlowmodeCommand implements Command {
 
+    private static final String USAGE = "!slowmode [time/auto] [on/off]";
+
+    private final AutoSlowmodeController autoSlowmodeController;
+    private final RestScheduler restScheduler;
+
+    public SlowmodeCommand(AutoSlowmodeController autoSlowmodeController, RestScheduler restScheduler) {
+        this.autoSlowmodeController = autoSlowmodeController;
+        this.restScheduler = restScheduler;
+    }
+
     @Override
     public String getName() {
         return "slowmode";
@@ -33,12 +46,13 @@ public class SlowmodeCommand implements Command {
 
     @Override
     public Optional<String> getDescription() {
-        return Optional.of("Set custom slow mode on current channel. If no argument specified it will disable slow mode completely.");
+        return Optional.of("Set custom slow mode on current channel. If no argument specified it will disable slow mode completely. " +
+            "Auto adjusts slow mode to the channel activity.");
     }
 
     @Override
     public Optional<String> getUsage() {
-        return Optional.of(String.format("!%s [time]", this.getName()));
+        return Optional.of(USAGE);
     }
 
     @Override
@@ -46,10 +60,20 @@ public class SlowmodeCommand implements Command {
         TextChannel channel = event.getTextChannel();
 
         if (!event.getMember().hasPermission(Permission.MANAGE_CHANNEL)) {
-            channel.sendMessageEmbeds(EmbedHelper.NO_PERMISSIONS_EMBED).queue();
+            this.restScheduler.queue(RestPriority.COMMAND, channel, channel.sendMessageEmbeds(EmbedHelper.NO_PERMISSIONS_EMBED));
             return;
         }
 
+        if (!optionList.isEmpty() && optionList.get(0).equalsIgnoreCase("auto")) {
+            this.toggleAutoSlowMode(channel, optionList);
+            return;
+        }
+
+        // Manual slow mode overrides the automatic one.
+        if (this.autoSlowmodeController.disable(channel.getIdLong())) {
+            this.restScheduler.queue(RestPriority.COMMAND, channel, channel.sendMessage("Automatic slow mode has been disabled."));
+        }
+
         if (optionList.isEmpty()) {
             this.disableSlowMode(channel);
             return;
@@ -59,7 +83,7 @@ public class SlowmodeCommand implements Command {
         try {
             time = Integer.parseInt(optionList.get(0));
         } catch (NumberFormatException exception) {
-            channel.sendMessage("You need to provide valid number in seconds.").queue();
+            this.restScheduler.queue(RestPriority.COMMAND, channel, channel.sendMessage("You need to provide valid number in seconds."));
             return;
         }
 
@@ -72,14 +96,28 @@ public class SlowmodeCommand implements Command {
             time = TextChannel.MAX_SLOWMODE;
         }
 
-        channel.getManager().setSlowmode(time)
-            .and(channel.sendMessage(String.format("Slow mode has been set to %d seconds.", time)))
-            .queue();
+        this.restScheduler.queue(RestPriority.COMMAND, channel, channel.getManager().setSlowmode(time)
+            .and(channel.sendMessage(String.format("Slow mode has been set to %d seconds.", time))));
+    }
+
+    private void toggleAutoSlowMode(TextChannel channel, List<String> optionList) {
+        boolean enable = optionList.size() < 2
+            ? !this.autoSlowmodeController.isEnabled(channel.getIdLong())
+            : optionList.get(1).equalsIgnoreCase("on");
+
+        if (enable) {
+            this.autoSlowmodeController.enable(channel);
+            this.restScheduler.queue(RestPriority.COMMAND, channel, channel.sendMessage("Automatic slow mode has been enabled."));
+            return;
+        }
+
+        this.autoSlowmodeController.disable(channel.getIdLong());
+        this.restScheduler.queue(RestPriority.COMMAND, channel, channel.sendMessage("Automatic slow mode has been disabled."));
     }
 
     private void disableSlowMode(TextChannel channel) {
-        channel.getManager().setSlowmode(0).queue();
-        channel.sendMessage("Slow mode has been disabled.").queue();
+        this.restScheduler.queue(RestPriority.COMMAND, channel, channel.getManager().setSlowmode(0));
+        this.restScheduler.queue(RestPriority.COMMAND, channel, channel.sendMessage("Slow mode has been disabled."));
     }
 
 }
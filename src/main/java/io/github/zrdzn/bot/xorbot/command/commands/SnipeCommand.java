@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2022 zrdzn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.zrdzn.bot.xorbot.command.commands;
+
+import io.github.zrdzn.bot.xorbot.cache.DeletedMessage;
+import io.github.zrdzn.bot.xorbot.cache.DeletionIndex;
+import io.github.zrdzn.bot.xorbot.command.Command;
+import io.github.zrdzn.bot.xorbot.embed.EmbedHelper;
+import io.github.zrdzn.bot.xorbot.rest.RestPriority;
+import io.github.zrdzn.bot.xorbot.rest.RestScheduler;
+import net.dv8tion.jda.api.EmbedBuilder;
+import net.dv8tion.jda.api.Permission;
+import net.dv8tion.jda.api.entities.TextChannel;
+import net.dv8tion.jda.api.events.message.MessageReceivedEvent;
+import net.dv8tion.jda.api.utils.TimeFormat;
+
+import java.util.List;
+import java.util.Optional;
+
+public class SnipeCommand implements Command {
+
+    private static final String USAGE = "!snipe [<channel>]";
+
+    private final DeletionIndex deletionIndex;
+    private final RestScheduler restScheduler;
+
+    public SnipeCommand(DeletionIndex deletionIndex, RestScheduler restScheduler) {
+        this.deletionIndex = deletionIndex;
+        this.restScheduler = restScheduler;
+    }
+
+    @Override
+    public String getName() {
+        return "snipe";
+    }
+
+    @Override
+    public Optional<String> getDescription() {
+        return Optional.of("Show the most recently deleted message of a channel.");
+    }
+
+    @Override
+    public Optional<String> getUsage() {
+        return Optional.of(USAGE);
+    }
+
+    @Override
+    public void execute(MessageReceivedEvent event, List<String> optionList) {
+        TextChannel channel = event.getTextChannel();
+        TextChannel target = channel;
+
+        if (!optionList.isEmpty()) {
+            target = DeletedCommand.findChannel(event, optionList.get(0));
+            if (target == null) {
+                this.restScheduler.queue(RestPriority.COMMAND, channel, channel.sendMessage("This channel does not exist on this server."));
+                return;
+            }
+        }
+
+        if (!event.getMember().hasPermission(target, Permission.MESSAGE_MANAGE)) {
+            this.restScheduler.queue(RestPriority.COMMAND, channel, channel.sendMessageEmbeds(EmbedHelper.NO_PERMISSIONS_EMBED));
+            return;
+        }
+
+        Optional<DeletedMessage> messageMaybe = this.deletionIndex.findLatest(event.getGuild().getIdLong(), target.getIdLong(),
+            System.currentTimeMillis());
+        if (messageMaybe.isEmpty()) {
+            this.restScheduler.queue(RestPriority.COMMAND, channel,
+                channel.sendMessage("There are no recently deleted messages in " + target.getAsMention() + "."));
+            return;
+        }
+
+        DeletedMessage message = messageMaybe.get();
+
+        EmbedBuilder embed = EmbedHelper.info(event.getAuthor())
+            .setTitle("Deleted message in #" + target.getName())
+            .addField("Author", EmbedHelper.formatUser(message.getAuthor()), false)
+            .addField("Content", EmbedHelper.fieldValue(message.getContent()), false)
+            .addField("Sent", TimeFormat.DATE_TIME_SHORT.format(message.getCreatedAt()), true)
+            .addField("Deleted", TimeFormat.RELATIVE.format(message.getDeletedAt()), true)
+            .addField("Edits", String.valueOf(message.getEditCount()), true);
+
+        this.restScheduler.queue(RestPriority.COMMAND, channel, channel.sendMessageEmbeds(embed.build()));
+    }
+
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2022 zrdzn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.zrdzn.bot.xorbot.command.module;
+
+import io.github.zrdzn.bot.xorbot.command.Command;
+
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Jar with additional commands. Its classes are loaded by a dedicated class
+ * loader, which is created only when one of the commands is invoked.
+ */
+public class CommandModule implements AutoCloseable {
+
+    private final Path jarFile;
+    private final String name;
+    private final List<LazyCommand> commands;
+
+    private URLClassLoader classLoader;
+    private boolean closed;
+
+    CommandModule(Path jarFile, String name, List<LazyCommand> commands) {
+        this.jarFile = jarFile;
+        this.name = name;
+        this.commands = commands;
+    }
+
+    synchronized Command instantiate(String className) throws ReflectiveOperationException, MalformedURLException {
+        // A command held by an invocation started before the unload must not bring the class loader back.
+        if (this.closed) {
+            throw new IllegalStateException("Module '" + this.name + "' has been unloaded.");
+        }
+
+        if (this.classLoader == null) {
+            URL jarUrl = this.jarFile.toUri().toURL();
+            this.classLoader = new URLClassLoader("XorBot-Module-" + this.name, new URL[] { jarUrl }, Command.class.getClassLoader());
+        }
+
+        Class<? extends Command> commandClass = Class.forName(className, true, this.classLoader).asSubclass(Command.class);
+
+        return commandClass.getDeclaredConstructor().newInstance();
+    }
+
+    public synchronized boolean isLoaded() {
+        return this.classLoader != null;
+    }
+
+    public Path getJarFile() {
+        return this.jarFile;
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    public List<LazyCommand> getCommands() {
+        return this.commands;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        this.closed = true;
+        this.commands.forEach(LazyCommand::unload);
+
+        if (this.classLoader != null) {
+            this.classLoader.close();
+            this.classLoader = null;
+        }
+    }
+
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright (c) 2022 zrdzn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.zrdzn.bot.xorbot.command.module;
+
+import io.github.zrdzn.bot.xorbot.command.CommandRegistry;
+import io.github.zrdzn.bot.xorbot.rest.RestScheduler;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+/**
+ * Discovers command modules in a directory. Only the module descriptor is read,
+ * classes of the module are not touched until one of its commands is invoked.
+ * <p>
+ * Every module jar has to contain {@code xorbot-module.properties} in its root:
+ * <pre>
+ * name=economy-extras
+ * commands=pay,top
+ * command.pay.class=com.example.PayCommand
+ * command.pay.description=Transfers money to another user.
+ * command.pay.usage=!pay &lt;amount&gt; &lt;mention&gt;
+ * </pre>
+ * Command classes need a public no-args constructor.
+ */
+public class CommandModuleLoader {
+
+    public static final String DESCRIPTOR_NAME = "xorbot-module.properties";
+
+    private final CommandRegistry commandRegistry;
+    private final RestScheduler restScheduler;
+    private final Logger logger;
+    private final Map<String, CommandModule> modules = new ConcurrentHashMap<>();
+
+    public CommandModuleLoader(CommandRegistry commandRegistry, RestScheduler restScheduler, Logger logger) {
+        this.commandRegistry = commandRegistry;
+        this.restScheduler = restScheduler;
+        this.logger = logger;
+    }
+
+    public int loadModules(Path directory) {
+        if (Files.notExists(directory)) {
+            return 0;
+        }
+
+        int loaded = 0;
+        try (DirectoryStream<Path> jarFiles = Files.newDirectoryStream(directory, "*.jar")) {
+            for (Path jarFile : jarFiles) {
+                if (this.isLoaded(jarFile)) {
+                    continue;
+                }
+
+                if (this.loadModule(jarFile).isPresent()) {
+                    loaded++;
+                }
+            }
+        } catch (IOException exception) {
+            this.logger.error("Could not list command modules in {}.", directory, exception);
+        }
+
+        return loaded;
+    }
+
+    public Optional<CommandModule> loadModule(Path jarFile) {
+        Properties descriptor = new Properties();
+        try (JarFile jar = new JarFile(jarFile.toFile())) {
+            JarEntry entry = jar.getJarEntry(DESCRIPTOR_NAME);
+            if (entry == null) {
+                this.logger.warn("Jar {} does not contain {}, skipping.", jarFile, DESCRIPTOR_NAME);
+                return Optional.empty();
+            }
+
+            try (InputStream inputStream = jar.getInputStream(entry)) {
+                descriptor.load(inputStream);
+            }
+        } catch (IOException exception) {
+            this.logger.error("Could not read command module {}.", jarFile, exception);
+            return Optional.empty();
+        }
+
+        String name = descriptor.getProperty("name", jarFile.getFileName().toString());
+        if (this.modules.containsKey(name)) {
+            this.logger.warn("Command module '{}' is already loaded, skipping {}.", name, jarFile);
+            return Optional.empty();
+        }
+
+        List<LazyCommand> commands = new ArrayList<>();
+        CommandModule module = new CommandModule(jarFile, name, Collections.unmodifiableList(commands));
+
+        for (String commandName : descriptor.getProperty("commands", "").split(",")) {
+            commandName = commandName.trim();
+            if (commandName.isEmpty()) {
+                continue;
+            }
+
+            String className = descriptor.getProperty("command." + commandName + ".class");
+            if (className == null) {
+                this.logger.warn("Command '{}' in module '{}' has no class specified, skipping.", commandName, name);
+                continue;
+            }
+
+            LazyCommand command = new LazyCommand(module, commandName, className,
+                descriptor.getProperty("command." + commandName + ".description"),
+                descriptor.getProperty("command." + commandName + ".usage"),
+                this.restScheduler,
+                this.logger);
+
+            // Modules cannot replace built-in commands or commands of other modules.
+            if (!this.commandRegistry.registerIfAbsent(command)) {
+                this.logger.warn("Command '{}' in module '{}' is already registered, skipping.", commandName, name);
+                continue;
+            }
+
+            commands.add(command);
+        }
+
+        this.modules.put(name, module);
+
+        this.logger.info("Registered {} commands from module '{}'.", commands.size(), name);
+
+        return Optional.of(module);
+    }
+
+    public boolean unloadModule(String name) {
+        CommandModule module = this.modules.remove(name);
+        if (module == null) {
+            return false;
+        }
+
+        module.getCommands().forEach(command -> this.commandRegistry.unregister(command.getName()));
+
+        try {
+            module.close();
+        } catch (IOException exception) {
+            this.logger.error("Could not close class loader of module '{}'.", name, exception);
+        }
+
+        return true;
+    }
+
+    public Map<String, CommandModule> getModules() {
+        return Collections.unmodifiableMap(this.modules);
+    }
+
+    private boolean isLoaded(Path jarFile) {
+        return this.modules.values().stream().anyMatch(module -> module.getJarFile().equals(jarFile));
+    }
+
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2022 zrdzn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.zrdzn.bot.xorbot.command.module;
+
+import io.github.zrdzn.bot.xorbot.command.Command;
+import io.github.zrdzn.bot.xorbot.embed.EmbedHelper;
+import io.github.zrdzn.bot.xorbot.rest.RestPriority;
+import io.github.zrdzn.bot.xorbot.rest.RestScheduler;
+import net.dv8tion.jda.api.entities.MessageChannel;
+import net.dv8tion.jda.api.events.message.MessageReceivedEvent;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Command declared by a module descriptor. Name, description and usage are
+ * known up front, the real command is instantiated on the first invocation.
+ */
+public class LazyCommand implements Command {
+
+    private final CommandModule module;
+    private final String name;
+    private final String className;
+    private final String description;
+    private final String usage;
+    private final RestScheduler restScheduler;
+    private final Logger logger;
+
+    private volatile Command command;
+    private volatile boolean unloaded;
+
+    LazyCommand(CommandModule module, String name, String className, String description, String usage,
+                RestScheduler restScheduler, Logger logger) {
+        this.module = module;
+        this.name = name;
+        this.className = className;
+        this.description = description;
+        this.usage = usage;
+        this.restScheduler = restScheduler;
+        this.logger = logger;
+    }
+
+    @Override
+    public String getName() {
+        return this.name;
+    }
+
+    @Override
+    public Optional<String> getDescription() {
+        return Optional.ofNullable(this.description);
+    }
+
+    @Override
+    public Optional<String> getUsage() {
+        return Optional.ofNullable(this.usage);
+    }
+
+    @Override
+    public void execute(MessageReceivedEvent event, List<String> optionList) {
+        if (this.unloaded) {
+            this.replyUnavailable(event.getChannel());
+            return;
+        }
+
+        Command loadedCommand = this.command;
+        if (loadedCommand == null) {
+            synchronized (this) {
+                loadedCommand = this.command;
+                if (loadedCommand == null) {
+                    try {
+                        loadedCommand = this.module.instantiate(this.className);
+                    } catch (IllegalStateException exception) {
+                        this.replyUnavailable(event.getChannel());
+                        return;
+                    } catch (ReflectiveOperationException | ClassCastException | LinkageError | IOException exception) {
+                        this.logger.error("Could not load command '{}' from module '{}'.", this.name, this.module.getName(), exception);
+                        this.replyUnavailable(event.getChannel());
+                        return;
+                    }
+
+                    this.logger.info("Loaded command '{}' from module '{}'.", this.name, this.module.getName());
+                    this.command = loadedCommand;
+                }
+            }
+        }
+
+        loadedCommand.execute(event, optionList);
+    }
+
+    void unload() {
+        this.unloaded = true;
+        this.command = null;
+    }
+
+    private void replyUnavailable(MessageChannel channel) {
+        this.restScheduler.queue(RestPriority.COMMAND, channel, channel.sendMessageEmbeds(EmbedHelper.error()
+            .setDescription("This command is currently unavailable.")
+            .build()));
+    }
+
+}
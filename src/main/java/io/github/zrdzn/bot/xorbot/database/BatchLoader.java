@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2022 zrdzn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.zrdzn.bot.xorbot.database;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Coalesces single-key lookups into batched ones.
+ * <p>
+ * Keys requested within the batch window are loaded by one call of the batch function,
+ * which usually runs a single {@code WHERE key IN (...)} query on one pooled connection.
+ * Requests of a key that is already being loaded share the pending future instead of
+ * loading it again.
+ *
+ * @param <K> type of the keys
+ * @param <V> type of the values
+ */
+public class BatchLoader<K, V> {
+
+    private final Function<Collection<K>, Map<K, V>> batchFunction;
+    private final long windowMillis;
+    private final int maxBatchSize;
+    private final ScheduledExecutorService scheduler;
+
+    private final Map<K, CompletableFuture<V>> inFlight = new HashMap<>();
+
+    private List<K> pending = new ArrayList<>();
+
+    /**
+     * @param batchFunction loads the values of the keys, keys missing in the result are completed with null
+     * @param windowMillis how long requests are collected before the batch is loaded
+     * @param maxBatchSize maximum amount of keys loaded at once, a full batch is loaded immediately
+     * @param scheduler scheduler of the batch windows
+     */
+    public BatchLoader(Function<Collection<K>, Map<K, V>> batchFunction, long windowMillis, int maxBatchSize,
+                       ScheduledExecutorService scheduler) {
+        this.batchFunction = batchFunction;
+        this.windowMillis = windowMillis;
+        this.maxBatchSize = maxBatchSize;
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Loads the value of the key with the next batch.
+     *
+     * @param key the key to load
+     *
+     * @return future completed with the value, or null if there is none
+     */
+    public CompletableFuture<V> load(K key) {
+        List<K> fullBatch = null;
+        CompletableFuture<V> future;
+
+        synchronized (this) {
+            future = this.inFlight.get(key);
+            if (future != null) {
+                return future;
+            }
+
+            future = new CompletableFuture<>();
+            this.inFlight.put(key, future);
+            this.pending.add(key);
+
+            if (this.pending.size() >= this.maxBatchSize) {
+                fullBatch = this.takePending();
+            } else if (this.pending.size() == 1) {
+                this.scheduler.schedule(this::dispatchPending, this.windowMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        if (fullBatch != null) {
+            this.dispatch(fullBatch);
+        }
+
+        return future;
+    }
+
+    private void dispatchPending() {
+        List<K> batch;
+        synchronized (this) {
+            if (this.pending.isEmpty()) {
+                return;
+            }
+
+            batch = this.takePending();
+        }
+
+        this.dispatch(batch);
+    }
+
+    private List<K> takePending() {
+        List<K> batch = this.pending;
+        this.pending = new ArrayList<>();
+        return batch;
+    }
+
+    private void dispatch(List<K> batch) {
+        CompletableFuture.supplyAsync(() -> this.batchFunction.apply(batch))
+            .whenComplete((values, exception) -> {
+                List<CompletableFuture<V>> futures = new ArrayList<>(batch.size());
+                synchronized (this) {
+                    batch.forEach(key -> futures.add(this.inFlight.remove(key)));
+                }
+
+                for (int index = 0; index < batch.size(); index++) {
+                    if (exception != null) {
+                        futures.get(index).completeExceptionally(exception);
+                    } else {
+                        futures.get(index).complete(values.get(batch.get(index)));
+                    }
+                }
+            });
+    }
+
+}
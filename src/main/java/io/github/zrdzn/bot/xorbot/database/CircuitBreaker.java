@@ -0,0 +1,205 @@
+/*
+ * Copyright (c) 2022 zrdzn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.zrdzn.bot.xorbot.database;
+
+import org.slf4j.Logger;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Stops calls to the database while it keeps failing or responding slowly.
+ * <p>
+ * Outcomes of the last calls are kept in a ring, a call slower than the slow call
+ * threshold counts as a failure. When the failure rate of the ring reaches the
+ * threshold the breaker opens and calls are rejected without touching the pool.
+ * After the open duration a single probe call is let through, its outcome either
+ * closes the breaker or opens it again.
+ */
+public class CircuitBreaker {
+
+    private static final int MINIMUM_CALLS = 5;
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private final boolean[] outcomes;
+    private final int failureRatePercent;
+    private final long slowCallNanos;
+    private final long openNanos;
+    private final Logger logger;
+
+    private final LongAdder rejected = new LongAdder();
+
+    private volatile State state = State.CLOSED;
+    private int index;
+    private int calls;
+    private int failures;
+    private long openedAt;
+    private long probeStartedAt;
+    private boolean probing;
+    private long openings;
+
+    /**
+     * @param windowSize amount of last calls the failure rate is computed from
+     * @param failureRatePercent failure rate in percent that opens the breaker
+     * @param slowCallMillis duration in milliseconds after which a successful call counts as a failure
+     * @param openMillis how long the breaker stays open before a probe call is let through
+     * @param logger the logger
+     */
+    public CircuitBreaker(int windowSize, int failureRatePercent, long slowCallMillis, long openMillis, Logger logger) {
+        if (windowSize < 1 || failureRatePercent < 1 || failureRatePercent > 100) {
+            throw new IllegalArgumentException("Window size must be above 0 and failure rate between 1 and 100.");
+        }
+
+        this.outcomes = new boolean[windowSize];
+        this.failureRatePercent = failureRatePercent;
+        this.slowCallNanos = slowCallMillis * 1_000_000L;
+        this.openNanos = openMillis * 1_000_000L;
+        this.logger = logger;
+    }
+
+    /**
+     * Checks if a call may be made. Every permitted call must be followed by
+     * {@link #recordSuccess(long)} or {@link #recordFailure()}.
+     *
+     * @return true if the call may be made, false if it should fail fast
+     */
+    public synchronized boolean tryAcquire() {
+        long now = System.nanoTime();
+
+        switch (this.state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (now - this.openedAt < this.openNanos) {
+                    this.rejected.increment();
+                    return false;
+                }
+
+                this.state = State.HALF_OPEN;
+                this.logger.info("Database circuit breaker is half-open, probing the database.");
+                break;
+            default:
+                // A probe whose outcome was never recorded would keep the breaker half-open forever.
+                if (this.probing && now - this.probeStartedAt < this.openNanos) {
+                    this.rejected.increment();
+                    return false;
+                }
+        }
+
+        this.probing = true;
+        this.probeStartedAt = now;
+        return true;
+    }
+
+    /**
+     * Records a successful call.
+     *
+     * @param latencyNanos duration of the call in nanoseconds
+     */
+    public synchronized void recordSuccess(long latencyNanos) {
+        if (latencyNanos > this.slowCallNanos) {
+            this.recordFailure();
+            return;
+        }
+
+        if (this.state == State.HALF_OPEN) {
+            this.close();
+            return;
+        }
+
+        this.record(false);
+    }
+
+    public synchronized void recordFailure() {
+        if (this.state == State.HALF_OPEN) {
+            this.open();
+            return;
+        }
+
+        this.record(true);
+
+        if (this.state == State.CLOSED && this.calls >= Math.min(MINIMUM_CALLS, this.outcomes.length)
+            && this.failures * 100 >= this.failureRatePercent * this.calls) {
+            this.open();
+        }
+    }
+
+    /**
+     * Checks if calls go through without restrictions. Callers that cannot record
+     * the outcome of their calls should only make them while the breaker is closed.
+     *
+     * @return true if the breaker is closed
+     */
+    public boolean isClosed() {
+        return this.state == State.CLOSED;
+    }
+
+    public State getState() {
+        return this.state;
+    }
+
+    public long getRejected() {
+        return this.rejected.sum();
+    }
+
+    public synchronized long getOpenings() {
+        return this.openings;
+    }
+
+    private void record(boolean failure) {
+        if (this.calls == this.outcomes.length) {
+            if (this.outcomes[this.index]) {
+                this.failures--;
+            }
+        } else {
+            this.calls++;
+        }
+
+        this.outcomes[this.index] = failure;
+        if (failure) {
+            this.failures++;
+        }
+
+        this.index = (this.index + 1) % this.outcomes.length;
+    }
+
+    private void open() {
+        if (this.state == State.CLOSED) {
+            this.logger.warn("Database circuit breaker opened, {} of the last {} calls failed or were slow.", this.failures, this.calls);
+        } else {
+            this.logger.warn("Database probe failed, circuit breaker opened again.");
+        }
+
+        this.state = State.OPEN;
+        this.openedAt = System.nanoTime();
+        this.probing = false;
+        this.openings++;
+    }
+
+    private void close() {
+        this.state = State.CLOSED;
+        this.probing = false;
+        this.index = 0;
+        this.calls = 0;
+        this.failures = 0;
+        this.logger.info("Database circuit breaker closed, the database is available again.");
+    }
+
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright (c) 2022 zrdzn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.zrdzn.bot.xorbot.database;
+
+public class DatabaseUnavailableException extends RuntimeException {
+
+    private final boolean queued;
+
+    public DatabaseUnavailableException(boolean queued) {
+        super(queued
+            ? "Database is unavailable, the change was queued and will be applied when it recovers."
+            : "Database is unavailable, try again later.");
+        this.queued = queued;
+    }
+
+    /**
+     * Checks if the rejected write was queued for replay.
+     *
+     * @return true if the write will be applied when the database recovers
+     */
+    public boolean isQueued() {
+        return this.queued;
+    }
+
+}
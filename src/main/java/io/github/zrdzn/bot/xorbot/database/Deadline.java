@@ -0,0 +1,244 @@
+/*
+ * Copyright (c) 2022 zrdzn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.zrdzn.bot.xorbot.database;
+
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Time budget of a unit of work, usually a command.
+ * <p>
+ * The deadline entered by the current thread bounds the query timeout of the statements
+ * it runs and collects the futures it starts, which are cancelled when the deadline expires.
+ * Work handed to another thread keeps the deadline only if it is wrapped with
+ * {@link #propagate(Supplier)}. Callbacks attached to futures returned by {@link #track(CompletableFuture)}
+ * run under the deadline as well, so work chained on tracked futures is tracked too.
+ * <p>
+ * The deadline is settled once every tracked future finished, which marks the end of the
+ * asynchronous work of the command.
+ */
+public class Deadline {
+
+    private static final ThreadLocal<Deadline> CURRENT = new ThreadLocal<>();
+
+    private final boolean bounded;
+    private final long expiresAt;
+    private final List<CompletableFuture<?>> futures = new ArrayList<>();
+    private final CompletableFuture<Void> settled = new CompletableFuture<>();
+
+    private boolean expired;
+    private int outstanding;
+
+    /**
+     * @param budgetMillis how long the work may take from now on, 0 only tracks the work without a time limit
+     */
+    public Deadline(long budgetMillis) {
+        this.bounded = budgetMillis > 0L;
+        this.expiresAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(budgetMillis);
+    }
+
+    /**
+     * Makes this deadline the deadline of the current thread until the scope is closed.
+     *
+     * @return scope restoring the previous deadline of the thread when closed
+     */
+    public Scope enter() {
+        Deadline previous = CURRENT.get();
+        CURRENT.set(this);
+        return new Scope(previous);
+    }
+
+    public long getRemainingMillis() {
+        if (!this.bounded) {
+            return Long.MAX_VALUE;
+        }
+
+        return TimeUnit.NANOSECONDS.toMillis(this.expiresAt - System.nanoTime());
+    }
+
+    public synchronized boolean isExpired() {
+        return this.expired || this.bounded && this.expiresAt - System.nanoTime() <= 0L;
+    }
+
+    /**
+     * Gets the future completed when every tracked future finished or the deadline expired.
+     *
+     * @return future of the end of the tracked work
+     */
+    public CompletableFuture<Void> whenSettled() {
+        return this.settled;
+    }
+
+    /**
+     * Marks the deadline as expired and cancels every tracked future that is not done yet.
+     *
+     * @return amount of cancelled futures
+     */
+    public synchronized int expire() {
+        this.expired = true;
+        this.settled.complete(null);
+
+        int cancelled = 0;
+        for (CompletableFuture<?> future : this.futures) {
+            if (future.cancel(false)) {
+                cancelled++;
+            }
+        }
+
+        this.futures.clear();
+        return cancelled;
+    }
+
+    /**
+     * Tracks the future by this deadline, it is cancelled right away if the deadline already expired.
+     *
+     * @param future the future to cancel when the deadline expires
+     */
+    public void register(CompletableFuture<?> future) {
+        if (this.add(future)) {
+            future.whenComplete((result, exception) -> this.settle());
+        }
+    }
+
+    /**
+     * Tracks the future by the deadline of the current thread, if there is one.
+     *
+     * @param future the future to cancel when the deadline expires
+     * @param <T> type of the result
+     *
+     * @return future completed with the result of the given one, its callbacks run under the deadline
+     */
+    public static <T> CompletableFuture<T> track(CompletableFuture<T> future) {
+        Deadline deadline = CURRENT.get();
+        if (deadline == null || !deadline.add(future)) {
+            return future;
+        }
+
+        CompletableFuture<T> scoped = new CompletableFuture<>();
+        future.whenComplete((result, exception) -> {
+            // Callbacks run by completing the scoped future are tracked before this future counts as finished.
+            try (Scope scope = deadline.enter()) {
+                if (exception != null) {
+                    scoped.completeExceptionally(exception);
+                } else {
+                    scoped.complete(result);
+                }
+            } finally {
+                deadline.settle();
+            }
+        });
+
+        return scoped;
+    }
+
+    private synchronized boolean add(CompletableFuture<?> future) {
+        if (this.expired) {
+            future.cancel(false);
+            return false;
+        }
+
+        this.futures.removeIf(CompletableFuture::isDone);
+        this.futures.add(future);
+        this.outstanding++;
+        return true;
+    }
+
+    private synchronized void settle() {
+        this.outstanding--;
+        if (this.outstanding == 0) {
+            this.settled.complete(null);
+        }
+    }
+
+    /**
+     * Wraps the supplier to run under the deadline of the current thread, if there is one.
+     * The supplier is not run at all if the deadline expires before it starts.
+     *
+     * @param supplier the supplier to wrap
+     * @param <T> type of the result
+     *
+     * @return supplier running under the captured deadline
+     */
+    public static <T> Supplier<T> propagate(Supplier<T> supplier) {
+        Deadline deadline = CURRENT.get();
+        if (deadline == null) {
+            return supplier;
+        }
+
+        return () -> {
+            if (deadline.isExpired()) {
+                throw new CancellationException("Deadline expired before the work started.");
+            }
+
+            try (Scope scope = deadline.enter()) {
+                return supplier.get();
+            }
+        };
+    }
+
+    /**
+     * Limits the query timeout of the statement to the remaining time of the
+     * deadline of the current thread, if there is one.
+     *
+     * @param statement the statement to limit
+     *
+     * @throws SQLTimeoutException if the deadline already expired
+     */
+    public static void applyQueryTimeout(Statement statement) throws SQLException {
+        Deadline deadline = CURRENT.get();
+        if (deadline == null) {
+            return;
+        }
+
+        if (!deadline.bounded) {
+            return;
+        }
+
+        long remainingMillis = deadline.getRemainingMillis();
+        if (remainingMillis <= 0L) {
+            throw new SQLTimeoutException("Deadline expired before the query was executed.");
+        }
+
+        statement.setQueryTimeout((int) Math.max(1L, TimeUnit.MILLISECONDS.toSeconds(remainingMillis + 999L)));
+    }
+
+    public static class Scope implements AutoCloseable {
+
+        private final Deadline previous;
+
+        private Scope(Deadline previous) {
+            this.previous = previous;
+        }
+
+        @Override
+        public void close() {
+            if (this.previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(this.previous);
+            }
+        }
+
+    }
+
+}
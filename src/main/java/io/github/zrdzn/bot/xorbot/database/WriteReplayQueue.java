@@ -0,0 +1,179 @@
+/*
+ * Copyright (c) 2022 zrdzn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.zrdzn.bot.xorbot.database;
+
+import org.slf4j.Logger;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Holds writes rejected by the circuit breaker and replays them in order once
+ * the breaker lets calls through again.
+ * <p>
+ * Writes are replayed one by one, the first failing write stops the replay and
+ * stays at the head of the queue. A write that failed the maximum amount of attempts
+ * is dropped, so a write that can never succeed does not block the ones behind it.
+ * New writes must be queued as long as the queue is not empty, otherwise they would
+ * be applied before older ones.
+ */
+public class WriteReplayQueue {
+
+    private final Deque<QueuedWrite> writes = new ArrayDeque<>();
+    private final int capacity;
+    private final int maxAttempts;
+    private final CircuitBreaker circuitBreaker;
+    private final Logger logger;
+
+    private long replayed;
+    private long rejected;
+    private long dropped;
+
+    /**
+     * @param capacity maximum amount of queued writes
+     * @param maxAttempts amount of failed replays after which a write is dropped
+     * @param circuitBreaker the circuit breaker replays are made through
+     * @param logger the logger
+     */
+    public WriteReplayQueue(int capacity, int maxAttempts, CircuitBreaker circuitBreaker, Logger logger) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("Maximum attempts must be above 0.");
+        }
+
+        this.capacity = capacity;
+        this.maxAttempts = maxAttempts;
+        this.circuitBreaker = circuitBreaker;
+        this.logger = logger;
+    }
+
+    public void start(ScheduledExecutorService scheduler, long intervalSeconds) {
+        scheduler.scheduleWithFixedDelay(this::replay, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Queues the write.
+     *
+     * @param write the write, returns false if it failed
+     *
+     * @return true if the write was queued, false if the queue is full
+     */
+    public synchronized boolean offer(BooleanSupplier write) {
+        if (this.writes.size() >= this.capacity) {
+            this.rejected++;
+            return false;
+        }
+
+        this.writes.addLast(new QueuedWrite(write));
+        return true;
+    }
+
+    public synchronized boolean isEmpty() {
+        return this.writes.isEmpty();
+    }
+
+    /**
+     * Replays the queued writes while the circuit breaker permits them.
+     *
+     * @return amount of replayed writes
+     */
+    public int replay() {
+        int count = 0;
+
+        while (true) {
+            QueuedWrite write;
+            synchronized (this) {
+                write = this.writes.peekFirst();
+            }
+
+            if (write == null || !this.circuitBreaker.tryAcquire()) {
+                break;
+            }
+
+            long start = System.nanoTime();
+            boolean applied;
+            try {
+                applied = write.write.getAsBoolean();
+            } catch (RuntimeException exception) {
+                this.logger.error("Could not replay a queued database write.", exception);
+                applied = false;
+            }
+
+            if (!applied) {
+                this.circuitBreaker.recordFailure();
+
+                write.attempts++;
+                if (write.attempts < this.maxAttempts) {
+                    break;
+                }
+
+                synchronized (this) {
+                    this.writes.pollFirst();
+                    this.dropped++;
+                }
+
+                this.logger.warn("Dropped a queued database write after {} failed attempts.", write.attempts);
+                continue;
+            }
+
+            this.circuitBreaker.recordSuccess(System.nanoTime() - start);
+
+            // The head is only removed after it was applied, so new writes keep being queued behind it.
+            synchronized (this) {
+                this.writes.pollFirst();
+                this.replayed++;
+            }
+
+            count++;
+        }
+
+        if (count > 0) {
+            this.logger.info("Replayed {} queued database writes, {} left.", count, this.size());
+        }
+
+        return count;
+    }
+
+    public synchronized int size() {
+        return this.writes.size();
+    }
+
+    public synchronized long getReplayed() {
+        return this.replayed;
+    }
+
+    public synchronized long getRejected() {
+        return this.rejected;
+    }
+
+    public synchronized long getDropped() {
+        return this.dropped;
+    }
+
+    private static final class QueuedWrite {
+
+        private final BooleanSupplier write;
+        private int attempts;
+
+        private QueuedWrite(BooleanSupplier write) {
+            this.write = write;
+        }
+
+    }
+
+}
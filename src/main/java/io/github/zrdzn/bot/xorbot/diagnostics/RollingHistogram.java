@@ -0,0 +1,166 @@
+/*
+ * Copyright (c) 2022 zrdzn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.zrdzn.bot.xorbot.diagnostics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of values recorded during the last few time slots, using a fixed amount
+ * of memory regardless of how many values are recorded.
+ * <p>
+ * Values are counted in log-linear buckets, 8 per power of two, so every reported
+ * percentile is within 12.5% of the real one. The window is split into slots and the
+ * oldest slot is cleared when it is reused, recording is a couple of atomic increments.
+ * Values recorded while a slot is being cleared may be lost, which is fine for diagnostics.
+ */
+public class RollingHistogram {
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_EXPONENT = 40;
+    private static final int BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + SUB_BUCKETS;
+    private static final long MAX_VALUE = (1L << (MAX_EXPONENT + 1)) - 1L;
+
+    private final int slots;
+    private final long slotMillis;
+    private final AtomicLongArray epochs;
+    private final AtomicLongArray counts;
+
+    /**
+     * @param slots amount of slots in the window
+     * @param slotMillis length of a single slot
+     */
+    public RollingHistogram(int slots, long slotMillis) {
+        this.slots = slots;
+        this.slotMillis = slotMillis;
+        this.epochs = new AtomicLongArray(slots);
+        this.counts = new AtomicLongArray(slots * BUCKETS);
+
+        for (int slot = 0; slot < slots; slot++) {
+            this.epochs.set(slot, -1L);
+        }
+    }
+
+    public void record(long value, long nowMillis) {
+        long epoch = nowMillis / this.slotMillis;
+        int slot = (int) (epoch % this.slots);
+
+        long slotEpoch = this.epochs.get(slot);
+        if (slotEpoch != epoch && this.epochs.compareAndSet(slot, slotEpoch, epoch)) {
+            int offset = slot * BUCKETS;
+            for (int bucket = 0; bucket < BUCKETS; bucket++) {
+                this.counts.set(offset + bucket, 0L);
+            }
+        }
+
+        this.counts.incrementAndGet(slot * BUCKETS + bucketOf(value));
+    }
+
+    /**
+     * Takes a snapshot of every slot still in the window.
+     *
+     * @param nowMillis current time in milliseconds
+     *
+     * @return snapshot of the window
+     */
+    public Snapshot snapshot(long nowMillis) {
+        long currentEpoch = nowMillis / this.slotMillis;
+        long[] buckets = new long[BUCKETS];
+        long total = 0L;
+
+        for (int slot = 0; slot < this.slots; slot++) {
+            long slotEpoch = this.epochs.get(slot);
+            if (slotEpoch < 0L || currentEpoch - slotEpoch >= this.slots) {
+                continue;
+            }
+
+            int offset = slot * BUCKETS;
+            for (int bucket = 0; bucket < BUCKETS; bucket++) {
+                long count = this.counts.get(offset + bucket);
+                buckets[bucket] += count;
+                total += count;
+            }
+        }
+
+        return new Snapshot(buckets, total);
+    }
+
+    public long getWindowMillis() {
+        return this.slots * this.slotMillis;
+    }
+
+    static int bucketOf(long value) {
+        long clamped = Math.max(0L, Math.min(value, MAX_VALUE));
+        if (clamped < SUB_BUCKETS) {
+            return (int) clamped;
+        }
+
+        int exponent = 63 - Long.numberOfLeadingZeros(clamped);
+        int subBucket = (int) (clamped >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    static long upperBoundOf(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+
+        int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long lowerBound = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << (exponent - SUB_BUCKET_BITS);
+        return lowerBound + (1L << (exponent - SUB_BUCKET_BITS)) - 1L;
+    }
+
+    public static class Snapshot {
+
+        private final long[] buckets;
+        private final long count;
+
+        private Snapshot(long[] buckets, long count) {
+            this.buckets = buckets;
+            this.count = count;
+        }
+
+        public long getCount() {
+            return this.count;
+        }
+
+        /**
+         * Gets the value below which the given fraction of recorded values are.
+         *
+         * @param fraction fraction of values, from 0 to 1
+         *
+         * @return upper bound of the bucket containing the percentile, 0 if nothing was recorded
+         */
+        public long getPercentile(double fraction) {
+            if (this.count == 0L) {
+                return 0L;
+            }
+
+            long rank = Math.max(1L, (long) Math.ceil(fraction * this.count));
+            long seen = 0L;
+            for (int bucket = 0; bucket < this.buckets.length; bucket++) {
+                seen += this.buckets[bucket];
+                if (seen >= rank) {
+                    return upperBoundOf(bucket);
+                }
+            }
+
+            return upperBoundOf(this.buckets.length - 1);
+        }
+
+    }
+
+}
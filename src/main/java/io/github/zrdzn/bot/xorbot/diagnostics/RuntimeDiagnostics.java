@@ -0,0 +1,173 @@
+/*
+ * Copyright (c) 2022 zrdzn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.zrdzn.bot.xorbot.diagnostics;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import io.github.zrdzn.bot.xorbot.cache.MessageCache;
+import net.dv8tion.jda.api.JDA;
+import net.dv8tion.jda.api.sharding.ShardManager;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Reads live operating data of the bot. Counters are maintained by the measured
+ * components themselves, this class only reads them when asked, so nothing here
+ * costs anything until the diagnostics are requested.
+ */
+public class RuntimeDiagnostics {
+
+    private static final Pattern THREAD_NUMBER = Pattern.compile("[-_#\\s]*\\d+$");
+    private static final int THREAD_GROUPS = 8;
+
+    private final HikariDataSource dataSource;
+    private final Supplier<Collection<MessageCache>> messageCaches;
+    private final RollingHistogram commandLatency;
+    private final LongAdder commandTimeouts;
+
+    /**
+     * @param dataSource the database connection pool
+     * @param messageCaches supplier of the message caches of every shard
+     * @param commandLatency histogram of command latencies in microseconds
+     * @param commandTimeouts counter of commands that overran their deadline
+     */
+    public RuntimeDiagnostics(HikariDataSource dataSource, Supplier<Collection<MessageCache>> messageCaches,
+                              RollingHistogram commandLatency, LongAdder commandTimeouts) {
+        this.dataSource = dataSource;
+        this.messageCaches = messageCaches;
+        this.commandLatency = commandLatency;
+        this.commandTimeouts = commandTimeouts;
+    }
+
+    public String formatMemory() {
+        MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        return String.format("%d MiB used, %d MiB committed, %d MiB max", toMebibytes(heap.getUsed()),
+            toMebibytes(heap.getCommitted()), toMebibytes(heap.getMax()));
+    }
+
+    public String formatGarbageCollection() {
+        StringBuilder result = new StringBuilder();
+
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            long collections = Math.max(collector.getCollectionCount(), 0L);
+            long time = Math.max(collector.getCollectionTime(), 0L);
+
+            result.append(String.format("%s: %d collections, %d ms total, %d ms average%n", collector.getName(), collections, time,
+                collections == 0L ? 0L : time / collections));
+        }
+
+        return result.toString();
+    }
+
+    /**
+     * Counts live threads grouped by their name without the trailing number,
+     * which is how executors name their threads.
+     *
+     * @return formatted thread counts
+     */
+    public String formatThreads() {
+        ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+
+        Map<String, Long> groups = new TreeMap<>();
+        for (ThreadInfo threadInfo : threadBean.getThreadInfo(threadBean.getAllThreadIds(), 0)) {
+            if (threadInfo != null) {
+                groups.merge(THREAD_NUMBER.matcher(threadInfo.getThreadName()).replaceFirst(""), 1L, Long::sum);
+            }
+        }
+
+        String largestGroups = groups.entrySet().stream()
+            .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+            .limit(THREAD_GROUPS)
+            .map(entry -> entry.getKey() + ": " + entry.getValue())
+            .collect(Collectors.joining("\n"));
+
+        return String.format("%d live, %d daemon, %d peak%n%s", threadBean.getThreadCount(), threadBean.getDaemonThreadCount(),
+            threadBean.getPeakThreadCount(), largestGroups);
+    }
+
+    public String formatGateway(JDA jda) {
+        ShardManager shardManager = jda.getShardManager();
+        if (shardManager == null) {
+            return String.format("%d ms", jda.getGatewayPing());
+        }
+
+        return String.format("%d ms on this shard, %.0f ms average of %d shards", jda.getGatewayPing(),
+            shardManager.getAverageGatewayPing(), shardManager.getShardsRunning());
+    }
+
+    public String formatDatabase() {
+        HikariPoolMXBean pool = this.dataSource.getHikariPoolMXBean();
+        if (pool == null) {
+            return "Pool is not running";
+        }
+
+        return String.format("%d active, %d idle, %d waiting, %d total", pool.getActiveConnections(), pool.getIdleConnections(),
+            pool.getThreadsAwaitingConnection(), pool.getTotalConnections());
+    }
+
+    public String formatMessageCache() {
+        long size = 0L;
+        long capacity = 0L;
+        long hits = 0L;
+        long misses = 0L;
+
+        for (MessageCache messageCache : this.messageCaches.get()) {
+            size += messageCache.getSize();
+            capacity += messageCache.getCapacity();
+            hits += messageCache.getHits();
+            misses += messageCache.getMisses();
+        }
+
+        return String.format("%d of %d messages (%s), %s hit rate over %d lookups", size, capacity, formatPercent(size, capacity),
+            formatPercent(hits, hits + misses), hits + misses);
+    }
+
+    public String formatCommandLatency() {
+        RollingHistogram.Snapshot snapshot = this.commandLatency.snapshot(System.currentTimeMillis());
+
+        return String.format("p50 %s, p99 %s over %d commands in the last %d seconds, %d timed out since start",
+            formatMicros(snapshot.getPercentile(0.5D)),
+            formatMicros(snapshot.getPercentile(0.99D)),
+            snapshot.getCount(),
+            TimeUnit.MILLISECONDS.toSeconds(this.commandLatency.getWindowMillis()),
+            this.commandTimeouts.sum());
+    }
+
+    private static long toMebibytes(long bytes) {
+        return bytes < 0L ? -1L : bytes / (1024L * 1024L);
+    }
+
+    private static String formatPercent(long part, long total) {
+        return total == 0L ? "n/a" : String.format("%.1f%%", part * 100.0D / total);
+    }
+
+    private static String formatMicros(long micros) {
+        return micros < 1000L ? micros + " us" : String.format("%.1f ms", micros / 1000.0D);
+    }
+
+}
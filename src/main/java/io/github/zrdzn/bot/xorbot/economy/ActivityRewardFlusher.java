@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2022 zrdzn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.zrdzn.bot.xorbot.economy;
+
+import io.github.zrdzn.bot.xorbot.database.CircuitBreaker;
+import org.slf4j.Logger;
+
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodically moves the rewards counted by the tracker into the database,
+ * in chunks of one statement each. Rewards stay in the tracker while the database is unavailable.
+ */
+public class ActivityRewardFlusher {
+
+    private static final int CHUNK_SIZE = 500;
+
+    private final ActivityRewardTracker tracker;
+    private final EconomyRepository economyRepository;
+    private final CircuitBreaker circuitBreaker;
+    private final Logger logger;
+
+    public ActivityRewardFlusher(ActivityRewardTracker tracker, EconomyRepository economyRepository, CircuitBreaker circuitBreaker,
+                                 Logger logger) {
+        this.tracker = tracker;
+        this.economyRepository = economyRepository;
+        this.circuitBreaker = circuitBreaker;
+        this.logger = logger;
+    }
+
+    public void start(ScheduledExecutorService scheduler, long intervalSeconds) {
+        scheduler.scheduleWithFixedDelay(this::flush, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    public synchronized void flush() {
+        List<ActivityRewardTracker.Reward> rewards = this.tracker.drain(System.currentTimeMillis());
+        if (rewards.isEmpty()) {
+            return;
+        }
+
+        int flushed = 0;
+        for (int start = 0; start < rewards.size(); start += CHUNK_SIZE) {
+            if (!this.circuitBreaker.tryAcquire()) {
+                this.tracker.restore(rewards.subList(start, rewards.size()));
+                this.logger.debug("Database is unavailable, keeping activity rewards of {} users.", rewards.size() - start);
+                break;
+            }
+
+            List<ActivityRewardTracker.Reward> chunk = rewards.subList(start, Math.min(start + CHUNK_SIZE, rewards.size()));
+            long chunkStart = System.nanoTime();
+            if (!this.economyRepository.addMoneyBatch(chunk)) {
+                this.circuitBreaker.recordFailure();
+                this.tracker.restore(rewards.subList(start, rewards.size()));
+                this.logger.warn("Could not flush activity rewards of {} users, retrying with the next flush.", rewards.size() - start);
+                break;
+            }
+
+            this.circuitBreaker.recordSuccess(System.nanoTime() - chunkStart);
+            flushed += chunk.size();
+        }
+
+        this.logger.debug("Flushed activity rewards of {} users.", flushed);
+    }
+
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) 2022 zrdzn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.zrdzn.bot.xorbot.economy;
+
+import io.github.zrdzn.bot.xorbot.gateway.EventDispatcher;
+import net.dv8tion.jda.api.events.message.MessageReceivedEvent;
+import org.jetbrains.annotations.NotNull;
+
+public class ActivityRewardListener {
+
+    private final ActivityRewardTracker tracker;
+    private final int minimumLength;
+
+    public ActivityRewardListener(ActivityRewardTracker tracker, int minimumLength) {
+        this.tracker = tracker;
+        this.minimumLength = minimumLength;
+    }
+
+    public void register(EventDispatcher dispatcher) {
+        dispatcher.registerGuildOnly(MessageReceivedEvent.class, "ActivityRewardListener#onMessageReceived", this::onMessageReceived);
+    }
+
+    public void onMessageReceived(@NotNull MessageReceivedEvent event) {
+        if (!event.isFromGuild() || event.getAuthor().isBot()) {
+            return;
+        }
+
+        // Commands are not chatting.
+        String content = event.getMessage().getContentRaw();
+        if (content.length() < this.minimumLength || content.startsWith("!")) {
+            return;
+        }
+
+        this.tracker.record(event.getAuthor().getIdLong(), event.getAuthor().getName(), System.currentTimeMillis());
+    }
+
+}
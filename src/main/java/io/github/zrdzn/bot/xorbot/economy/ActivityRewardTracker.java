@@ -0,0 +1,168 @@
+/*
+ * Copyright (c) 2022 zrdzn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.zrdzn.bot.xorbot.economy;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Counts activity rewards of users in memory until they are flushed to the database.
+ * <p>
+ * Users are spread over independently locked stripes, so messages of different users
+ * rarely contend on the same lock. Every user is rewarded at most once per cooldown.
+ */
+public class ActivityRewardTracker {
+
+    private static final int STRIPES = 64;
+
+    private final Stripe[] stripes = new Stripe[STRIPES];
+    private final long reward;
+    private final long cooldownMillis;
+
+    public ActivityRewardTracker(long reward, long cooldownMillis) {
+        this.reward = reward;
+        this.cooldownMillis = cooldownMillis;
+
+        for (int index = 0; index < STRIPES; index++) {
+            this.stripes[index] = new Stripe();
+        }
+    }
+
+    /**
+     * Rewards the user for the message, unless the user was rewarded during the cooldown.
+     *
+     * @param userId id of the user
+     * @param username current name of the user
+     * @param nowMillis current time in milliseconds
+     *
+     * @return true if the user was rewarded
+     */
+    public boolean record(long userId, String username, long nowMillis) {
+        Stripe stripe = this.getStripe(userId);
+        synchronized (stripe) {
+            Activity activity = stripe.activities.get(userId);
+            if (activity == null) {
+                activity = new Activity(username);
+                stripe.activities.put(userId, activity);
+            } else if (nowMillis - activity.lastRewardMillis < this.cooldownMillis) {
+                return false;
+            }
+
+            activity.username = username;
+            activity.pendingReward += this.reward;
+            activity.lastRewardMillis = nowMillis;
+            return true;
+        }
+    }
+
+    /**
+     * Takes every pending reward out of the tracker and forgets users whose cooldown has passed.
+     *
+     * @param nowMillis current time in milliseconds
+     *
+     * @return pending rewards
+     */
+    public List<Reward> drain(long nowMillis) {
+        List<Reward> rewards = new ArrayList<>();
+
+        for (Stripe stripe : this.stripes) {
+            synchronized (stripe) {
+                Iterator<Map.Entry<Long, Activity>> iterator = stripe.activities.entrySet().iterator();
+                while (iterator.hasNext()) {
+                    Map.Entry<Long, Activity> entry = iterator.next();
+                    Activity activity = entry.getValue();
+
+                    if (activity.pendingReward > 0L) {
+                        rewards.add(new Reward(entry.getKey(), activity.username, activity.pendingReward));
+                        activity.pendingReward = 0L;
+                    } else if (nowMillis - activity.lastRewardMillis >= this.cooldownMillis) {
+                        iterator.remove();
+                    }
+                }
+            }
+        }
+
+        return rewards;
+    }
+
+    /**
+     * Puts back rewards that could not be flushed, so they are retried with the next flush.
+     *
+     * @param rewards rewards taken by {@link #drain(long)}
+     */
+    public void restore(List<Reward> rewards) {
+        for (Reward reward : rewards) {
+            Stripe stripe = this.getStripe(reward.getUserId());
+            synchronized (stripe) {
+                stripe.activities.computeIfAbsent(reward.getUserId(), userId -> new Activity(reward.getUsername()))
+                    .pendingReward += reward.getAmount();
+            }
+        }
+    }
+
+    private Stripe getStripe(long userId) {
+        long hash = userId * 0x9E3779B97F4A7C15L;
+        return this.stripes[(int) (hash >>> 58) & (STRIPES - 1)];
+    }
+
+    private static class Stripe {
+
+        private final Map<Long, Activity> activities = new HashMap<>();
+
+    }
+
+    private static class Activity {
+
+        private String username;
+        private long pendingReward;
+        private long lastRewardMillis;
+
+        private Activity(String username) {
+            this.username = username;
+        }
+
+    }
+
+    public static class Reward {
+
+        private final long userId;
+        private final String username;
+        private final long amount;
+
+        public Reward(long userId, String username, long amount) {
+            this.userId = userId;
+            this.username = username;
+            this.amount = amount;
+        }
+
+        public long getUserId() {
+            return this.userId;
+        }
+
+        public String getUsername() {
+            return this.username;
+        }
+
+        public long getAmount() {
+            return this.amount;
+        }
+
+    }
+
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2022 zrdzn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.zrdzn.bot.xorbot.economy;
+
+/**
+ * Periodic change applied to every balance.
+ */
+public class EconomyPolicy {
+
+    private final String name;
+    private final String updateExpression;
+    private final long[] parameters;
+    private final long intervalMillis;
+
+    private EconomyPolicy(String name, String updateExpression, long intervalMillis, long... parameters) {
+        this.name = name;
+        this.updateExpression = updateExpression;
+        this.parameters = parameters;
+        this.intervalMillis = intervalMillis;
+    }
+
+    /**
+     * Creates the interest policy, adding a percentage of every balance.
+     *
+     * @param basisPoints interest in hundredths of a percent
+     * @param intervalMillis time between runs in milliseconds
+     *
+     * @return interest policy
+     */
+    public static EconomyPolicy interest(long basisPoints, long intervalMillis) {
+        return new EconomyPolicy("interest", "balance + FLOOR(balance * ? / 10000)", intervalMillis, basisPoints);
+    }
+
+    /**
+     * Creates the wealth tax policy, subtracting a percentage of the part of every balance above the threshold.
+     *
+     * @param basisPoints tax in hundredths of a percent
+     * @param threshold balance that is not taxed
+     * @param intervalMillis time between runs in milliseconds
+     *
+     * @return wealth tax policy
+     */
+    public static EconomyPolicy tax(long basisPoints, long threshold, long intervalMillis) {
+        return new EconomyPolicy("tax", "balance - FLOOR(GREATEST(CAST(balance AS SIGNED) - ?, 0) * ? / 10000)", intervalMillis,
+            threshold, basisPoints);
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * Gets the SQL expression of the new balance, its parameters are given by {@link #getParameters()}.
+     *
+     * @return expression of the new balance
+     */
+    public String getUpdateExpression() {
+        return this.updateExpression;
+    }
+
+    public long[] getParameters() {
+        return this.parameters.clone();
+    }
+
+    public long getIntervalMillis() {
+        return this.intervalMillis;
+    }
+
+}
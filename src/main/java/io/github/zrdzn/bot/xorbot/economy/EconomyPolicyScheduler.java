@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2022 zrdzn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.zrdzn.bot.xorbot.economy;
+
+import org.slf4j.Logger;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs economy policies when they are due.
+ * <p>
+ * A run walks the users table in primary key ranges, every chunk is a single set-based
+ * update committed together with the checkpoint of the run. Chunks are short, so they
+ * never hold row locks long enough to stall money commands, and a run interrupted by
+ * a crash continues from its checkpoint on the next start.
+ */
+public class EconomyPolicyScheduler {
+
+    private final List<EconomyPolicy> policies;
+    private final EconomyRunRepository runRepository;
+    private final int chunkSize;
+    private final Logger logger;
+
+    public EconomyPolicyScheduler(List<EconomyPolicy> policies, EconomyRunRepository runRepository, int chunkSize, Logger logger) {
+        this.policies = policies;
+        this.runRepository = runRepository;
+        this.chunkSize = chunkSize;
+        this.logger = logger;
+    }
+
+    public void start(ScheduledExecutorService scheduler, long checkIntervalSeconds) {
+        scheduler.scheduleWithFixedDelay(this::runDuePolicies, 0L, checkIntervalSeconds, TimeUnit.SECONDS);
+    }
+
+    void runDuePolicies() {
+        for (EconomyPolicy policy : this.policies) {
+            Optional<EconomyRun> unfinishedRun = this.runRepository.findUnfinished(policy.getName());
+            if (unfinishedRun.isPresent()) {
+                this.logger.info("Resuming economy policy '{}' from user id {}.", policy.getName(), unfinishedRun.get().getCheckpoint());
+                this.run(policy, unfinishedRun.get());
+                continue;
+            }
+
+            long now = System.currentTimeMillis();
+
+            OptionalLong lastStart = this.runRepository.findLastStart(policy.getName());
+            if (lastStart.isPresent() && now - lastStart.getAsLong() < policy.getIntervalMillis()) {
+                continue;
+            }
+
+            this.runRepository.start(policy.getName(), now).ifPresent(run -> this.run(policy, run));
+        }
+    }
+
+    private void run(EconomyPolicy policy, EconomyRun run) {
+        long start = System.nanoTime();
+        int chunks = 0;
+
+        while (run.getCheckpoint() < run.getMaxUserId()) {
+            long toUserId = Math.min(run.getCheckpoint() + this.chunkSize, run.getMaxUserId());
+            if (this.runRepository.applyChunk(run, policy, toUserId) < 0) {
+                this.logger.warn("Economy policy '{}' stopped at user id {}, it will be resumed with the next check.",
+                    policy.getName(), run.getCheckpoint());
+                return;
+            }
+
+            chunks++;
+        }
+
+        this.runRepository.finish(run, System.currentTimeMillis());
+
+        this.logger.info("Applied economy policy '{}' to {} balances in {} chunks, took {} ms.", policy.getName(),
+            run.getUpdatedRows(), chunks, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+}
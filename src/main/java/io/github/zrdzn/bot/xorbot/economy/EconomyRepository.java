@@ -16,15 +16,23 @@
 package io.github.zrdzn.bot.xorbot.economy;
 
 import com.zaxxer.hikari.HikariDataSource;
+import io.github.zrdzn.bot.xorbot.database.Deadline;
 import org.slf4j.Logger;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntConsumer;
 
 public class EconomyRepository {
 
+    private static final int BULK_CHUNK_SIZE = 1000;
+
     private final HikariDataSource dataSource;
     private final Logger logger;
 
@@ -36,6 +44,8 @@ public class EconomyRepository {
     public long getMoneyByDiscordId(long discordId) {
         try (Connection connection = this.dataSource.getConnection();
              PreparedStatement statement = connection.prepareStatement("SELECT balance FROM users WHERE discord_id = ?;")) {
+            Deadline.applyQueryTimeout(statement);
+
             statement.setLong(1, discordId);
 
             ResultSet result = statement.executeQuery();
@@ -50,6 +60,44 @@ public class EconomyRepository {
         }
     }
 
+    /**
+     * Selects balances of every user with a single query.
+     *
+     * @param discordIds discord ids of the users
+     *
+     * @return balances by discord ids, users that do not exist are missing, all are -1 if the query failed
+     */
+    public Map<Long, Long> getMoneyByDiscordIds(Collection<Long> discordIds) {
+        Map<Long, Long> balances = new HashMap<>();
+
+        StringBuilder query = new StringBuilder("SELECT discord_id, balance FROM users WHERE discord_id IN (");
+        for (int index = 0; index < discordIds.size(); index++) {
+            query.append(index == 0 ? "?" : ", ?");
+        }
+        query.append(");");
+
+        try (Connection connection = this.dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(query.toString())) {
+            Deadline.applyQueryTimeout(statement);
+
+            int parameter = 1;
+            for (long discordId : discordIds) {
+                statement.setString(parameter++, String.valueOf(discordId));
+            }
+
+            ResultSet result = statement.executeQuery();
+            while (result.next()) {
+                balances.put(result.getLong("discord_id"), result.getLong("balance"));
+            }
+
+            return balances;
+        } catch (SQLException exception) {
+            this.logger.error("Could not select users' balances from database.", exception);
+            discordIds.forEach(discordId -> balances.put(discordId, -1L));
+            return balances;
+        }
+    }
+
     public long setMoneyByDiscordId(long discordId, long amount, MoneyOperation operation) {
         if (amount < 0) {
             return -1L;
@@ -59,7 +107,7 @@ public class EconomyRepository {
         switch (operation) {
             case SET -> updateQuery = "UPDATE users SET balance = ? WHERE discord_id = ?;";
             case ADD -> updateQuery = "UPDATE users SET balance = balance + ? WHERE discord_id = ?;";
-            case SUBTRACT -> updateQuery = "UPDATE users SET balance = balance - ? WHERE discord_id = ?;";
+            case SUBTRACT -> updateQuery = "UPDATE users SET balance = balance - LEAST(balance, ?) WHERE discord_id = ?;";
             default -> updateQuery = null;
         }
 
@@ -70,6 +118,9 @@ public class EconomyRepository {
         try (Connection connection = this.dataSource.getConnection();
              PreparedStatement updateStatement = connection.prepareStatement(updateQuery);
              PreparedStatement resultStatement = connection.prepareStatement("SELECT balance FROM users WHERE discord_id = ?;")) {
+            Deadline.applyQueryTimeout(updateStatement);
+            Deadline.applyQueryTimeout(resultStatement);
+
             connection.setAutoCommit(false);
 
             updateStatement.setLong(1, amount);
@@ -92,6 +143,131 @@ public class EconomyRepository {
         }
     }
 
+    /**
+     * Updates balances of every user with a single set-based statement. Ids are staged in a
+     * temporary table in chunks first, so the update either changes every balance or none
+     * and a failed run can be repeated safely. Subtraction stops at 0 instead of failing on
+     * the unsigned balance.
+     *
+     * @param discordIds discord ids of the users
+     * @param amount an amount of money used by the operation
+     * @param operation the operation applied to every balance
+     * @param progressConsumer consumer of the amount of staged users, called after every chunk
+     *
+     * @return amount of updated users, if -1 it means something went wrong and no balance was changed
+     */
+    public int setMoneyByDiscordIds(List<Long> discordIds, long amount, MoneyOperation operation, IntConsumer progressConsumer) {
+        if (amount < 0) {
+            return -1;
+        }
+
+        String updateExpression;
+        switch (operation) {
+            case SET -> updateExpression = "?";
+            case ADD -> updateExpression = "users.balance + ?";
+            case SUBTRACT -> updateExpression = "users.balance - LEAST(users.balance, ?)";
+            default -> updateExpression = null;
+        }
+
+        if (updateExpression == null) {
+            throw new IllegalArgumentException("Money operation cannot be null.");
+        }
+
+        try (Connection connection = this.dataSource.getConnection()) {
+            // Temporary tables live as long as the pooled connection, a leftover of a failed run is dropped first.
+            try (PreparedStatement statement = connection.prepareStatement("DROP TEMPORARY TABLE IF EXISTS bulk_targets;")) {
+                statement.executeUpdate();
+            }
+
+            try (PreparedStatement statement = connection.prepareStatement(
+                "CREATE TEMPORARY TABLE bulk_targets (discord_id VARCHAR(20) NOT NULL PRIMARY KEY) ENGINE = MEMORY;")) {
+                statement.executeUpdate();
+            }
+
+            try {
+                for (int start = 0; start < discordIds.size(); start += BULK_CHUNK_SIZE) {
+                    List<Long> chunk = discordIds.subList(start, Math.min(start + BULK_CHUNK_SIZE, discordIds.size()));
+
+                    StringBuilder query = new StringBuilder(48 + chunk.size() * 5).append("INSERT IGNORE INTO bulk_targets VALUES ");
+                    for (int index = 0; index < chunk.size(); index++) {
+                        query.append(index == 0 ? "(?)" : ", (?)");
+                    }
+                    query.append(';');
+
+                    try (PreparedStatement statement = connection.prepareStatement(query.toString())) {
+                        Deadline.applyQueryTimeout(statement);
+
+                        int parameter = 1;
+                        for (long discordId : chunk) {
+                            statement.setString(parameter++, String.valueOf(discordId));
+                        }
+
+                        statement.executeUpdate();
+                    }
+
+                    progressConsumer.accept(start + chunk.size());
+                }
+
+                try (PreparedStatement statement = connection.prepareStatement("UPDATE users JOIN bulk_targets " +
+                    "ON users.discord_id = bulk_targets.discord_id SET users.balance = " + updateExpression + ";")) {
+                    Deadline.applyQueryTimeout(statement);
+
+                    statement.setLong(1, amount);
+                    return statement.executeUpdate();
+                }
+            } finally {
+                // The update may have succeeded already, a failed cleanup must not report it as failed.
+                try (PreparedStatement statement = connection.prepareStatement("DROP TEMPORARY TABLE IF EXISTS bulk_targets;")) {
+                    statement.executeUpdate();
+                } catch (SQLException exception) {
+                    this.logger.warn("Could not drop temporary table 'bulk_targets'.", exception);
+                }
+            }
+        } catch (SQLException exception) {
+            this.logger.error("Could not update users in database, no balance was changed.", exception);
+            return -1;
+        }
+    }
+
+    /**
+     * Adds every reward to the balance of its user with a single multi-row statement.
+     * Users that are not registered yet are created.
+     *
+     * @param rewards rewards to add, at most one per user
+     *
+     * @return true if the rewards were added
+     */
+    public boolean addMoneyBatch(List<ActivityRewardTracker.Reward> rewards) {
+        if (rewards.isEmpty()) {
+            return true;
+        }
+
+        StringBuilder query = new StringBuilder(128 + rewards.size() * 12)
+            .append("INSERT INTO users (discord_id, username, balance) VALUES ");
+        for (int index = 0; index < rewards.size(); index++) {
+            query.append(index == 0 ? "(?, ?, ?)" : ", (?, ?, ?)");
+        }
+        query.append(" ON DUPLICATE KEY UPDATE balance = balance + VALUES(balance);");
+
+        try (Connection connection = this.dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(query.toString())) {
+            Deadline.applyQueryTimeout(statement);
+
+            int parameter = 1;
+            for (ActivityRewardTracker.Reward reward : rewards) {
+                statement.setLong(parameter++, reward.getUserId());
+                statement.setString(parameter++, reward.getUsername());
+                statement.setLong(parameter++, reward.getAmount());
+            }
+
+            statement.executeUpdate();
+            return true;
+        } catch (SQLException exception) {
+            this.logger.error("Could not add activity rewards in database.", exception);
+            return false;
+        }
+    }
+
     enum MoneyOperation {
 
         SET,
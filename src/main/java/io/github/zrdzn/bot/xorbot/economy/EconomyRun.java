@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2022 zrdzn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.zrdzn.bot.xorbot.economy;
+
+/**
+ * Single run of an economy policy, stored in the economy_runs table.
+ */
+public class EconomyRun {
+
+    private final long id;
+    private final String policy;
+    private final long startedAt;
+    private final long maxUserId;
+
+    private long checkpoint;
+    private long updatedRows;
+
+    /**
+     * @param id id of the run
+     * @param policy name of the applied policy
+     * @param startedAt start time in epoch milliseconds
+     * @param maxUserId the highest user id when the run started, newer users are not affected
+     * @param checkpoint the highest user id already processed
+     * @param updatedRows amount of updated balances
+     */
+    public EconomyRun(long id, String policy, long startedAt, long maxUserId, long checkpoint, long updatedRows) {
+        this.id = id;
+        this.policy = policy;
+        this.startedAt = startedAt;
+        this.maxUserId = maxUserId;
+        this.checkpoint = checkpoint;
+        this.updatedRows = updatedRows;
+    }
+
+    public long getId() {
+        return this.id;
+    }
+
+    public String getPolicy() {
+        return this.policy;
+    }
+
+    public long getStartedAt() {
+        return this.startedAt;
+    }
+
+    public long getMaxUserId() {
+        return this.maxUserId;
+    }
+
+    public long getCheckpoint() {
+        return this.checkpoint;
+    }
+
+    public long getUpdatedRows() {
+        return this.updatedRows;
+    }
+
+    void advance(long checkpoint, long updatedRows) {
+        this.checkpoint = checkpoint;
+        this.updatedRows += updatedRows;
+    }
+
+}
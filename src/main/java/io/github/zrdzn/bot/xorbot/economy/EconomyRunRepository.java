@@ -0,0 +1,191 @@
+/*
+ * Copyright (c) 2022 zrdzn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.zrdzn.bot.xorbot.economy;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.slf4j.Logger;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Optional;
+import java.util.OptionalLong;
+
+public class EconomyRunRepository {
+
+    private final HikariDataSource dataSource;
+    private final Logger logger;
+
+    public EconomyRunRepository(HikariDataSource dataSource, Logger logger) {
+        this.dataSource = dataSource;
+        this.logger = logger;
+    }
+
+    /**
+     * Finds the run of the policy that was interrupted before it finished.
+     *
+     * @param policy name of the policy
+     *
+     * @return unfinished run
+     */
+    public Optional<EconomyRun> findUnfinished(String policy) {
+        try (Connection connection = this.dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(
+                 "SELECT * FROM economy_runs WHERE policy = ? AND finished_at IS NULL ORDER BY started_at DESC LIMIT 1;")) {
+            statement.setString(1, policy);
+
+            ResultSet result = statement.executeQuery();
+            if (!result.next()) {
+                return Optional.empty();
+            }
+
+            return Optional.of(new EconomyRun(
+                result.getLong("id"),
+                policy,
+                result.getLong("started_at"),
+                result.getLong("max_user_id"),
+                result.getLong("checkpoint"),
+                result.getLong("updated_rows")));
+        } catch (SQLException exception) {
+            this.logger.error("Could not select economy run from database.", exception);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Finds the start time of the latest run of the policy.
+     *
+     * @param policy name of the policy
+     *
+     * @return start time in epoch milliseconds, empty if the policy never ran, {@link Long#MAX_VALUE} if the query failed
+     */
+    public OptionalLong findLastStart(String policy) {
+        try (Connection connection = this.dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(
+                 "SELECT MAX(started_at) AS started_at FROM economy_runs WHERE policy = ?;")) {
+            statement.setString(1, policy);
+
+            ResultSet result = statement.executeQuery();
+            if (!result.next()) {
+                return OptionalLong.empty();
+            }
+
+            long startedAt = result.getLong("started_at");
+            return result.wasNull() ? OptionalLong.empty() : OptionalLong.of(startedAt);
+        } catch (SQLException exception) {
+            this.logger.error("Could not select economy run from database.", exception);
+            return OptionalLong.of(Long.MAX_VALUE);
+        }
+    }
+
+    /**
+     * Starts a new run over every user existing at the moment.
+     *
+     * @param policy name of the policy
+     * @param startedAt start time in epoch milliseconds
+     *
+     * @return started run
+     */
+    public Optional<EconomyRun> start(String policy, long startedAt) {
+        try (Connection connection = this.dataSource.getConnection();
+             PreparedStatement maxStatement = connection.prepareStatement("SELECT COALESCE(MAX(id), 0) AS max_id FROM users;");
+             PreparedStatement statement = connection.prepareStatement(
+                 "INSERT INTO economy_runs (policy, started_at, max_user_id) VALUES (?, ?, ?);", Statement.RETURN_GENERATED_KEYS)) {
+            ResultSet maxResult = maxStatement.executeQuery();
+            long maxUserId = maxResult.next() ? maxResult.getLong("max_id") : 0L;
+
+            statement.setString(1, policy);
+            statement.setLong(2, startedAt);
+            statement.setLong(3, maxUserId);
+            statement.executeUpdate();
+
+            ResultSet keys = statement.getGeneratedKeys();
+            if (!keys.next()) {
+                return Optional.empty();
+            }
+
+            return Optional.of(new EconomyRun(keys.getLong(1), policy, startedAt, maxUserId, 0L, 0L));
+        } catch (SQLException exception) {
+            this.logger.error("Could not insert economy run into database.", exception);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Applies the policy to users with ids in the range and moves the checkpoint of the run,
+     * both in one transaction, so a crash never applies a chunk twice.
+     *
+     * @param run the running run
+     * @param policy the applied policy
+     * @param toUserId the highest user id of the chunk, inclusive
+     *
+     * @return amount of updated balances, -1 if the chunk failed
+     */
+    public int applyChunk(EconomyRun run, EconomyPolicy policy, long toUserId) {
+        try (Connection connection = this.dataSource.getConnection();
+             PreparedStatement updateStatement = connection.prepareStatement(
+                 "UPDATE users SET balance = " + policy.getUpdateExpression() + " WHERE id > ? AND id <= ?;");
+             PreparedStatement checkpointStatement = connection.prepareStatement(
+                 "UPDATE economy_runs SET checkpoint = ?, updated_rows = updated_rows + ? WHERE id = ?;")) {
+            connection.setAutoCommit(false);
+
+            try {
+                int parameter = 1;
+                for (long value : policy.getParameters()) {
+                    updateStatement.setLong(parameter++, value);
+                }
+                updateStatement.setLong(parameter++, run.getCheckpoint());
+                updateStatement.setLong(parameter, toUserId);
+
+                int updated = updateStatement.executeUpdate();
+
+                checkpointStatement.setLong(1, toUserId);
+                checkpointStatement.setLong(2, updated);
+                checkpointStatement.setLong(3, run.getId());
+                checkpointStatement.executeUpdate();
+
+                connection.commit();
+
+                run.advance(toUserId, updated);
+                return updated;
+            } catch (SQLException exception) {
+                connection.rollback();
+                throw exception;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        } catch (SQLException exception) {
+            this.logger.error("Could not apply economy policy to users in database.", exception);
+            return -1;
+        }
+    }
+
+    public boolean finish(EconomyRun run, long finishedAt) {
+        try (Connection connection = this.dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement("UPDATE economy_runs SET finished_at = ? WHERE id = ?;")) {
+            statement.setLong(1, finishedAt);
+            statement.setLong(2, run.getId());
+
+            return statement.executeUpdate() == 1;
+        } catch (SQLException exception) {
+            this.logger.error("Could not update economy run in database.", exception);
+            return false;
+        }
+    }
+
+}
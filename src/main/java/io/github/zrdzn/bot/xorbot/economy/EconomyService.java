@@ -15,7 +15,9 @@
  */
 package io.github.zrdzn.bot.xorbot.economy;
 
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.function.IntConsumer;
 
 public interface EconomyService {
 
@@ -24,7 +26,8 @@ public interface EconomyService {
      *
      * @param discordId a discord id of the searched user
      *
-     * @return current account balance
+     * @return current account balance, or the last known one while the database is degraded,
+     *         completed with {@link io.github.zrdzn.bot.xorbot.database.DatabaseUnavailableException} if it could not be read
      */
     CompletableFuture<Long> getMoney(long discordId);
 
@@ -34,7 +37,8 @@ public interface EconomyService {
      * @param discordId a discord id of the searched user
      * @param amount an amount of money that should be added to the user
      *
-     * @return new account balance, if -1 it means something went wrong
+     * @return new account balance, completed with {@link io.github.zrdzn.bot.xorbot.database.DatabaseUnavailableException}
+     *         if the database is unavailable
      */
     CompletableFuture<Long> setMoney(long discordId, long amount);
 
@@ -44,7 +48,8 @@ public interface EconomyService {
      * @param discordId a discord id of the searched user
      * @param amount an amount of money that should be added to the user
      *
-     * @return new account balance, if -1 it means something went wrong
+     * @return new account balance, completed with {@link io.github.zrdzn.bot.xorbot.database.DatabaseUnavailableException}
+     *         if the database is unavailable
      */
     CompletableFuture<Long> addMoney(long discordId, long amount);
 
@@ -54,8 +59,53 @@ public interface EconomyService {
      * @param discordId a discord id of the searched user
      * @param amount an amount of money that should be subtracted from the user
      *
-     * @return new account balance, if -1 it means something went wrong
+     * @return new account balance, completed with {@link io.github.zrdzn.bot.xorbot.database.DatabaseUnavailableException}
+     *         if the database is unavailable
      */
     CompletableFuture<Long> subtractMoney(long discordId, long amount);
 
+    /**
+     * Sets money for every user by discord ids in the database.
+     *
+     * @param discordIds discord ids of the existing users
+     * @param amount an amount of money that should be set
+     * @param progressConsumer consumer of the amount of processed users
+     *
+     * @return amount of updated users, if -1 it means something went wrong, completed with
+     *         {@link io.github.zrdzn.bot.xorbot.database.DatabaseUnavailableException} if the database is unavailable
+     */
+    CompletableFuture<Integer> setMoneyForAll(List<Long> discordIds, long amount, IntConsumer progressConsumer);
+
+    /**
+     * Adds money to every user by discord ids in the database.
+     *
+     * @param discordIds discord ids of the existing users
+     * @param amount an amount of money that should be added to every user
+     * @param progressConsumer consumer of the amount of processed users
+     *
+     * @return amount of updated users, if -1 it means something went wrong, completed with
+     *         {@link io.github.zrdzn.bot.xorbot.database.DatabaseUnavailableException} if the database is unavailable
+     */
+    CompletableFuture<Integer> addMoneyForAll(List<Long> discordIds, long amount, IntConsumer progressConsumer);
+
+    /**
+     * Subtracts money from every user by discord ids in the database, balances do not go below 0.
+     *
+     * @param discordIds discord ids of the existing users
+     * @param amount an amount of money that should be subtracted from every user
+     * @param progressConsumer consumer of the amount of processed users
+     *
+     * @return amount of updated users, if -1 it means something went wrong, completed with
+     *         {@link io.github.zrdzn.bot.xorbot.database.DatabaseUnavailableException} if the database is unavailable
+     */
+    CompletableFuture<Integer> subtractMoneyForAll(List<Long> discordIds, long amount, IntConsumer progressConsumer);
+
+    /**
+     * Checks if the database is unavailable or queued writes are not applied yet,
+     * balances may be outdated in that case.
+     *
+     * @return true if the service runs in degraded mode
+     */
+    boolean isDegraded();
+
 }
@@ -15,34 +15,172 @@
  */
 package io.github.zrdzn.bot.xorbot.economy;
 
+import io.github.zrdzn.bot.xorbot.database.BatchLoader;
+import io.github.zrdzn.bot.xorbot.database.CircuitBreaker;
+import io.github.zrdzn.bot.xorbot.database.DatabaseUnavailableException;
+import io.github.zrdzn.bot.xorbot.database.Deadline;
+import io.github.zrdzn.bot.xorbot.database.WriteReplayQueue;
+
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntConsumer;
+import java.util.function.LongFunction;
+import java.util.function.Supplier;
 
+/**
+ * Economy service guarded by the database circuit breaker.
+ * <p>
+ * While the breaker is open balances are served from the last known values, single
+ * account writes are queued for replay and bulk writes fail fast.
+ */
 public class XorEconomyService implements EconomyService {
 
     private final EconomyRepository economyRepository;
+    private final BatchLoader<Long, Long> balanceLoader;
+    private final CircuitBreaker circuitBreaker;
+    private final WriteReplayQueue replayQueue;
+    private final LongFunction<Long> cachedBalanceFunction;
 
-    public XorEconomyService(EconomyRepository economyRepository) {
+    private final Map<Long, Long> lastKnownBalances = new ConcurrentHashMap<>();
+
+    /**
+     * @param economyRepository the economy repository
+     * @param balanceLoader loader of balances backed by {@link EconomyRepository#getMoneyByDiscordIds}
+     * @param circuitBreaker the database circuit breaker
+     * @param replayQueue queue of writes rejected by the circuit breaker
+     * @param cachedBalanceFunction gets the cached balance of users not read by this service yet, or null
+     */
+    public XorEconomyService(EconomyRepository economyRepository, BatchLoader<Long, Long> balanceLoader,
+                             CircuitBreaker circuitBreaker, WriteReplayQueue replayQueue, LongFunction<Long> cachedBalanceFunction) {
         this.economyRepository = economyRepository;
+        this.balanceLoader = balanceLoader;
+        this.circuitBreaker = circuitBreaker;
+        this.replayQueue = replayQueue;
+        this.cachedBalanceFunction = cachedBalanceFunction;
     }
 
     @Override
     public CompletableFuture<Long> getMoney(long discordId) {
-        return CompletableFuture.supplyAsync(() -> this.economyRepository.getMoneyByDiscordId(discordId));
+        if (!this.circuitBreaker.tryAcquire()) {
+            Long balance = this.lastKnownBalances.get(discordId);
+            if (balance == null) {
+                balance = this.cachedBalanceFunction.apply(discordId);
+            }
+
+            return balance == null
+                ? CompletableFuture.failedFuture(new DatabaseUnavailableException(false))
+                : CompletableFuture.completedFuture(balance);
+        }
+
+        long start = System.nanoTime();
+        return Deadline.track(this.balanceLoader.load(discordId).thenApply(balance -> {
+            if (balance != null && balance < 0L) {
+                this.circuitBreaker.recordFailure();
+                throw new DatabaseUnavailableException(false);
+            }
+
+            this.circuitBreaker.recordSuccess(System.nanoTime() - start);
+
+            long result = balance == null ? 0L : balance;
+            this.lastKnownBalances.put(discordId, result);
+            return result;
+        }));
     }
 
     @Override
     public CompletableFuture<Long> setMoney(long discordId, long amount) {
-        return CompletableFuture.supplyAsync(() -> this.economyRepository.setMoneyByDiscordId(discordId, amount, EconomyRepository.MoneyOperation.SET));
+        return this.write(discordId, amount, EconomyRepository.MoneyOperation.SET);
     }
 
     @Override
     public CompletableFuture<Long> addMoney(long discordId, long amount) {
-        return CompletableFuture.supplyAsync(() -> this.economyRepository.setMoneyByDiscordId(discordId, amount, EconomyRepository.MoneyOperation.ADD));
+        return this.write(discordId, amount, EconomyRepository.MoneyOperation.ADD);
     }
 
     @Override
     public CompletableFuture<Long> subtractMoney(long discordId, long amount) {
-        return CompletableFuture.supplyAsync(() -> this.economyRepository.setMoneyByDiscordId(discordId, amount, EconomyRepository.MoneyOperation.SUBTRACT));
+        return this.write(discordId, amount, EconomyRepository.MoneyOperation.SUBTRACT);
+    }
+
+    @Override
+    public CompletableFuture<Integer> setMoneyForAll(List<Long> discordIds, long amount, IntConsumer progressConsumer) {
+        return this.writeAll(discordIds, () -> this.economyRepository.setMoneyByDiscordIds(discordIds, amount,
+            EconomyRepository.MoneyOperation.SET, progressConsumer));
+    }
+
+    @Override
+    public CompletableFuture<Integer> addMoneyForAll(List<Long> discordIds, long amount, IntConsumer progressConsumer) {
+        return this.writeAll(discordIds, () -> this.economyRepository.setMoneyByDiscordIds(discordIds, amount,
+            EconomyRepository.MoneyOperation.ADD, progressConsumer));
+    }
+
+    @Override
+    public CompletableFuture<Integer> subtractMoneyForAll(List<Long> discordIds, long amount, IntConsumer progressConsumer) {
+        return this.writeAll(discordIds, () -> this.economyRepository.setMoneyByDiscordIds(discordIds, amount,
+            EconomyRepository.MoneyOperation.SUBTRACT, progressConsumer));
+    }
+
+    @Override
+    public boolean isDegraded() {
+        return !this.circuitBreaker.isClosed() || !this.replayQueue.isEmpty();
+    }
+
+    private CompletableFuture<Long> write(long discordId, long amount, EconomyRepository.MoneyOperation operation) {
+        // Writes queue up behind the pending ones, so they are applied in the order they were made.
+        if (!this.replayQueue.isEmpty() || !this.circuitBreaker.tryAcquire()) {
+            boolean queued = this.replayQueue.offer(() -> this.applyWrite(discordId, amount, operation) >= 0L);
+            return CompletableFuture.failedFuture(new DatabaseUnavailableException(queued));
+        }
+
+        return Deadline.track(CompletableFuture.supplyAsync(Deadline.propagate(() -> {
+            long start = System.nanoTime();
+            long balance = this.applyWrite(discordId, amount, operation);
+            if (balance < 0L) {
+                this.circuitBreaker.recordFailure();
+                throw new DatabaseUnavailableException(false);
+            }
+
+            this.circuitBreaker.recordSuccess(System.nanoTime() - start);
+            return balance;
+        })));
+    }
+
+    private long applyWrite(long discordId, long amount, EconomyRepository.MoneyOperation operation) {
+        long balance = this.economyRepository.setMoneyByDiscordId(discordId, amount, operation);
+        if (balance >= 0L) {
+            this.lastKnownBalances.put(discordId, balance);
+        }
+
+        return balance;
+    }
+
+    private CompletableFuture<Integer> writeAll(List<Long> discordIds, Supplier<Integer> write) {
+        if (!this.circuitBreaker.tryAcquire()) {
+            return CompletableFuture.failedFuture(new DatabaseUnavailableException(false));
+        }
+
+        return Deadline.track(CompletableFuture.supplyAsync(Deadline.propagate(() -> {
+            int updated;
+            try {
+                updated = write.get();
+            } catch (RuntimeException exception) {
+                this.circuitBreaker.recordFailure();
+                throw exception;
+            }
+
+            if (updated < 0) {
+                this.circuitBreaker.recordFailure();
+                return updated;
+            }
+
+            // Bulk writes take long by design, their duration says nothing about the database health.
+            this.circuitBreaker.recordSuccess(0L);
+            discordIds.forEach(this.lastKnownBalances::remove);
+
+            return updated;
+        })));
     }
 
 }
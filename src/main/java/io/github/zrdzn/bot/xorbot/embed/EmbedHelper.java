@@ -21,7 +21,6 @@ import net.dv8tion.jda.api.entities.MessageEmbed;
 import net.dv8tion.jda.api.entities.User;
 
 import java.time.Instant;
-import java.util.Date;
 
 public class EmbedHelper {
 
@@ -41,9 +40,7 @@ public class EmbedHelper {
     }
 
     public static EmbedBuilder log(LogAction logAction) {
-        return getEmbed(null, EmbedType.LOG)
-            .addField("Action", logAction.getDescription(), true)
-            .addField("Date", new Date(System.currentTimeMillis()).toString(), true);
+        return EmbedTemplate.log(logAction).builder();
     }
 
     public static EmbedBuilder getEmbed(User executor, EmbedType type) {
@@ -60,7 +57,26 @@ public class EmbedHelper {
     }
 
     public static String formatUser(User user) {
-        return String.format("%s#%s (%s)", user.getName(), user.getDiscriminator(), user.getId());
+        return user.getName() + '#' + user.getDiscriminator() + " (" + user.getId() + ')';
+    }
+
+    /**
+     * Makes the value safe to be used as an embed field value.
+     *
+     * @param value the raw value, could be null
+     *
+     * @return value that is not empty and fits the embed field limit
+     */
+    public static String fieldValue(String value) {
+        if (value == null || value.isEmpty()) {
+            return "<None>";
+        }
+
+        if (value.length() > MessageEmbed.VALUE_MAX_LENGTH) {
+            return value.substring(0, MessageEmbed.VALUE_MAX_LENGTH - 3) + "...";
+        }
+
+        return value;
     }
 
 }
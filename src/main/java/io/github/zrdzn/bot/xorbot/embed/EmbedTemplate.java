@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2022 zrdzn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.zrdzn.bot.xorbot.embed;
+
+import io.github.zrdzn.bot.xorbot.log.LogAction;
+import net.dv8tion.jda.api.EmbedBuilder;
+import net.dv8tion.jda.api.entities.MessageEmbed;
+
+import java.time.Instant;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Precompiled embed skeleton. The color and the header field are built once into
+ * an embed that every message is copied from, only the timestamp and the variable
+ * field values are filled in.
+ */
+public class EmbedTemplate {
+
+    private static final Map<LogAction, EmbedTemplate> LOG_TEMPLATES = new EnumMap<>(LogAction.class);
+
+    static {
+        for (LogAction logAction : LogAction.values()) {
+            LOG_TEMPLATES.put(logAction, new EmbedTemplate(EmbedType.LOG,
+                new MessageEmbed.Field("Action", logAction.getDescription(), true),
+                logAction.getFieldNames()));
+        }
+    }
+
+    private final EmbedType type;
+    private final MessageEmbed skeleton;
+    private final String[] fieldNames;
+
+    public EmbedTemplate(EmbedType type, MessageEmbed.Field headerField, String... fieldNames) {
+        this.type = type;
+        // An embed without any content cannot be built, templates without a header only keep the color.
+        this.skeleton = headerField == null ? null : new EmbedBuilder()
+            .setColor(type.getColor())
+            .addField(headerField)
+            .build();
+        this.fieldNames = fieldNames;
+    }
+
+    public static EmbedTemplate log(LogAction logAction) {
+        return LOG_TEMPLATES.get(logAction);
+    }
+
+    /**
+     * Creates a builder containing only the static part of the template,
+     * for callers that need to append fields not known by the template.
+     *
+     * @return builder with the template skeleton
+     */
+    public EmbedBuilder builder() {
+        EmbedBuilder embedBuilder = this.skeleton == null
+            ? new EmbedBuilder().setColor(this.type.getColor())
+            : new EmbedBuilder(this.skeleton);
+
+        return embedBuilder.setTimestamp(Instant.now());
+    }
+
+    /**
+     * Builds the embed with the given values of the variable fields,
+     * in order of the field names of the template.
+     *
+     * @param values values of the variable fields, null values are shown as none
+     *
+     * @return built embed
+     */
+    public MessageEmbed fill(String... values) {
+        if (values.length != this.fieldNames.length) {
+            throw new IllegalArgumentException("Template expects " + this.fieldNames.length + " values, got " + values.length + ".");
+        }
+
+        EmbedBuilder embedBuilder = this.builder();
+
+        for (int index = 0; index < values.length; index++) {
+            embedBuilder.addField(this.fieldNames[index], EmbedHelper.fieldValue(values[index]), false);
+        }
+
+        return embedBuilder.build();
+    }
+
+}
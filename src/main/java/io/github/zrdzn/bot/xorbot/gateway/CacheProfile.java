@@ -0,0 +1,177 @@
+/*
+ * Copyright (c) 2022 zrdzn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.zrdzn.bot.xorbot.gateway;
+
+import net.dv8tion.jda.api.requests.GatewayIntent;
+import net.dv8tion.jda.api.sharding.DefaultShardManagerBuilder;
+import net.dv8tion.jda.api.utils.ChunkingFilter;
+import net.dv8tion.jda.api.utils.MemberCachePolicy;
+import net.dv8tion.jda.api.utils.cache.CacheFlag;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * Describes which parts of the JDA cache and which gateway intents are used by the bot.
+ */
+public class CacheProfile {
+
+    /**
+     * Intents required by the command and log listeners: guild messages for commands and
+     * message logs, guild members for join/leave logs and guild bans for ban/unban logs.
+     */
+    public static final Set<GatewayIntent> LEAN_INTENTS = Collections.unmodifiableSet(
+        EnumSet.of(GatewayIntent.GUILD_MESSAGES, GatewayIntent.GUILD_MEMBERS, GatewayIntent.GUILD_BANS));
+
+    public static final Set<CacheFlag> LEAN_DISABLED_FLAGS = Collections.unmodifiableSet(EnumSet.allOf(CacheFlag.class));
+
+    /**
+     * Intents that have to be enabled for the application in the developer portal,
+     * the JDA defaults contain neither of them.
+     */
+    public static final Set<GatewayIntent> PRIVILEGED_INTENTS = Collections.unmodifiableSet(
+        EnumSet.of(GatewayIntent.GUILD_MEMBERS, GatewayIntent.GUILD_PRESENCES));
+
+    private final String name;
+    private final String memberCachePolicyName;
+    private final MemberCachePolicy memberCachePolicy;
+    private final ChunkingFilter chunkingFilter;
+    private final Set<CacheFlag> disabledFlags;
+    private final Set<GatewayIntent> intents;
+
+    private CacheProfile(String name, String memberCachePolicyName, MemberCachePolicy memberCachePolicy,
+                         ChunkingFilter chunkingFilter, Set<CacheFlag> disabledFlags, Set<GatewayIntent> intents) {
+        this.name = name;
+        this.memberCachePolicyName = memberCachePolicyName;
+        this.memberCachePolicy = memberCachePolicy;
+        this.chunkingFilter = chunkingFilter;
+        this.disabledFlags = disabledFlags;
+        this.intents = intents;
+    }
+
+    /**
+     * Creates the cache profile from the bot configuration. Missing keys fall
+     * back to the lean profile values.
+     *
+     * @param configuration the bot configuration
+     *
+     * @return configured cache profile
+     *
+     * @throws IllegalArgumentException if any of the values could not be recognized
+     */
+    public static CacheProfile fromConfiguration(Properties configuration) {
+        String name = configuration.getProperty("cache_profile", "lean").trim().toLowerCase(Locale.ROOT);
+        if (name.equals("default")) {
+            return new CacheProfile(name, "default", MemberCachePolicy.DEFAULT, ChunkingFilter.ALL,
+                EnumSet.noneOf(CacheFlag.class), EnumSet.noneOf(GatewayIntent.class));
+        }
+
+        if (!name.equals("lean")) {
+            throw new IllegalArgumentException("Unknown cache profile: " + name);
+        }
+
+        String policyName = configuration.getProperty("cache_member_policy", "none").trim().toLowerCase(Locale.ROOT);
+
+        return new CacheProfile(name,
+            policyName,
+            parseMemberCachePolicy(policyName),
+            parseChunkingFilter(configuration.getProperty("cache_chunking", "none")),
+            parseEnumSet(CacheFlag.class, configuration.getProperty("cache_disabled_flags"), LEAN_DISABLED_FLAGS),
+            parseEnumSet(GatewayIntent.class, configuration.getProperty("gateway_intents"), LEAN_INTENTS));
+    }
+
+    public void apply(DefaultShardManagerBuilder shardManagerBuilder) {
+        if (this.isDefault()) {
+            return;
+        }
+
+        shardManagerBuilder.setEnabledIntents(this.intents)
+            .setMemberCachePolicy(this.memberCachePolicy)
+            .setChunkingFilter(this.chunkingFilter)
+            .disableCache(this.disabledFlags);
+    }
+
+    public boolean isDefault() {
+        return this.name.equals("default");
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    public Set<CacheFlag> getDisabledFlags() {
+        return Collections.unmodifiableSet(this.disabledFlags);
+    }
+
+    public Set<GatewayIntent> getIntents() {
+        return Collections.unmodifiableSet(this.intents);
+    }
+
+    public Set<GatewayIntent> getPrivilegedIntents() {
+        Set<GatewayIntent> privilegedIntents = EnumSet.noneOf(GatewayIntent.class);
+        this.intents.stream()
+            .filter(PRIVILEGED_INTENTS::contains)
+            .forEach(privilegedIntents::add);
+
+        return Collections.unmodifiableSet(privilegedIntents);
+    }
+
+    public String getMemberCachePolicyName() {
+        return this.memberCachePolicyName;
+    }
+
+    private static MemberCachePolicy parseMemberCachePolicy(String name) {
+        return switch (name) {
+            case "none" -> MemberCachePolicy.NONE;
+            case "owner" -> MemberCachePolicy.OWNER;
+            case "online" -> MemberCachePolicy.ONLINE;
+            case "voice" -> MemberCachePolicy.VOICE;
+            case "pending" -> MemberCachePolicy.PENDING;
+            case "default" -> MemberCachePolicy.DEFAULT;
+            case "all" -> MemberCachePolicy.ALL;
+            default -> throw new IllegalArgumentException("Unknown member cache policy: " + name);
+        };
+    }
+
+    private static ChunkingFilter parseChunkingFilter(String name) {
+        return switch (name.trim().toLowerCase(Locale.ROOT)) {
+            case "none" -> ChunkingFilter.NONE;
+            case "all" -> ChunkingFilter.ALL;
+            default -> throw new IllegalArgumentException("Unknown chunking filter: " + name);
+        };
+    }
+
+    private static <E extends Enum<E>> Set<E> parseEnumSet(Class<E> type, String value, Set<E> defaultValue) {
+        if (value == null) {
+            return EnumSet.copyOf(defaultValue);
+        }
+
+        Set<E> result = EnumSet.noneOf(type);
+        for (String element : value.split(",")) {
+            if (element.isBlank()) {
+                continue;
+            }
+
+            result.add(Enum.valueOf(type, element.trim().toUpperCase(Locale.ROOT)));
+        }
+
+        return result;
+    }
+
+}
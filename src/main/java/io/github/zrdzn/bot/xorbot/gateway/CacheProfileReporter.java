@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2022 zrdzn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.zrdzn.bot.xorbot.gateway;
+
+import io.github.zrdzn.bot.xorbot.shard.ShardMetrics;
+import net.dv8tion.jda.api.entities.Guild;
+import net.dv8tion.jda.api.events.ReadyEvent;
+import net.dv8tion.jda.api.requests.GatewayIntent;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+
+import java.util.Set;
+
+public class CacheProfileReporter {
+
+    private final CacheProfile cacheProfile;
+    private final Logger logger;
+
+    public CacheProfileReporter(CacheProfile cacheProfile, Logger logger) {
+        this.cacheProfile = cacheProfile;
+        this.logger = logger;
+    }
+
+    public void register(EventDispatcher dispatcher) {
+        dispatcher.register(ReadyEvent.class, "CacheProfileReporter#onReady", this::onReady);
+    }
+
+    public void onReady(@NotNull ReadyEvent event) {
+        int shardId = ShardMetrics.getShardId(event.getJDA());
+
+        if (this.cacheProfile.isDefault()) {
+            this.logger.info("Shard {} is using the default JDA cache and intents.", shardId);
+            return;
+        }
+
+        long memberCount = 0L;
+        for (Guild guild : event.getJDA().getGuilds()) {
+            memberCount += guild.getMemberCount();
+        }
+
+        this.logger.info("Shard {} is using '{}' cache profile with member cache policy '{}', intents {} and disabled cache flags {} on {} guild members.",
+            shardId,
+            this.cacheProfile.getName(),
+            this.cacheProfile.getMemberCachePolicyName(),
+            this.cacheProfile.getIntents(),
+            this.cacheProfile.getDisabledFlags(),
+            memberCount);
+
+        Set<GatewayIntent> privilegedIntents = this.cacheProfile.getPrivilegedIntents();
+        if (!privilegedIntents.isEmpty()) {
+            this.logger.info("Shard {} requests privileged intents {}, they are not part of the JDA defaults.", shardId, privilegedIntents);
+        }
+    }
+
+}
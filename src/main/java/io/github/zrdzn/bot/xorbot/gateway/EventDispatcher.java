@@ -0,0 +1,198 @@
+/*
+ * Copyright (c) 2022 zrdzn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.zrdzn.bot.xorbot.gateway;
+
+import net.dv8tion.jda.api.events.GenericEvent;
+import net.dv8tion.jda.api.events.guild.GenericGuildEvent;
+import net.dv8tion.jda.api.events.message.GenericMessageEvent;
+import net.dv8tion.jda.api.events.message.MessageBulkDeleteEvent;
+import net.dv8tion.jda.api.hooks.EventListener;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+/**
+ * Routes gateway events to handlers registered for their exact class.
+ * <p>
+ * Handlers are kept in a table of event classes to handler arrays built during
+ * registration, so an event is routed with a single lookup and events nobody handles
+ * are dropped without walking a chain of type checks. Whether the event comes from
+ * a guild is resolved once per event for all guild-only handlers, and every handler
+ * is timed separately.
+ */
+public class EventDispatcher implements EventListener {
+
+    private final Logger logger;
+    private final List<HandlerStatistics> statistics = new ArrayList<>();
+    private final LongAdder dispatched = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+
+    private volatile Map<Class<?>, Route> routes = Collections.emptyMap();
+
+    public EventDispatcher(Logger logger) {
+        this.logger = logger;
+    }
+
+    /**
+     * Registers the handler for events of exactly the given class, subclasses are not matched.
+     *
+     * @param type class of the handled events
+     * @param name name of the handler shown in statistics
+     * @param handler the handler
+     */
+    public <T extends GenericEvent> void register(Class<T> type, String name, EventHandler<T> handler) {
+        this.register(type, name, false, handler);
+    }
+
+    /**
+     * Registers the handler for events of exactly the given class that come from a guild.
+     *
+     * @param type class of the handled events
+     * @param name name of the handler shown in statistics
+     * @param handler the handler
+     */
+    public <T extends GenericEvent> void registerGuildOnly(Class<T> type, String name, EventHandler<T> handler) {
+        this.register(type, name, true, handler);
+    }
+
+    @SuppressWarnings("unchecked")
+    private synchronized <T extends GenericEvent> void register(Class<T> type, String name, boolean guildOnly, EventHandler<T> handler) {
+        HandlerStatistics handlerStatistics = new HandlerStatistics(name);
+        this.statistics.add(handlerStatistics);
+
+        Registration registration = new Registration((EventHandler<GenericEvent>) handler, guildOnly, handlerStatistics);
+
+        // Routes are replaced instead of modified, so dispatching never needs a lock.
+        Map<Class<?>, Route> routes = new HashMap<>(this.routes);
+        Route route = routes.get(type);
+        routes.put(type, route == null ? new Route(type, registration) : route.with(registration));
+        this.routes = routes;
+    }
+
+    @Override
+    public void onEvent(@NotNull GenericEvent event) {
+        Route route = this.routes.get(event.getClass());
+        if (route == null) {
+            this.dropped.increment();
+            return;
+        }
+
+        this.dispatched.increment();
+
+        boolean fromGuild = route.guildOnly && route.guildResolver.test(event);
+
+        for (Registration registration : route.registrations) {
+            if (registration.guildOnly && !fromGuild) {
+                continue;
+            }
+
+            long start = System.nanoTime();
+            try {
+                registration.handler.handle(event);
+            } catch (RuntimeException exception) {
+                registration.statistics.recordFailure();
+                this.logger.error("Handler '{}' failed on {}.", registration.statistics.getName(),
+                    event.getClass().getSimpleName(), exception);
+            }
+
+            registration.statistics.record(System.nanoTime() - start);
+        }
+    }
+
+    public void report() {
+        this.logger.info("Event dispatcher: {} events dispatched, {} unhandled events dropped.", this.getDispatched(), this.getDropped());
+
+        for (HandlerStatistics handlerStatistics : this.getStatistics()) {
+            this.logger.info("Handler '{}': {} invocations, {} us average, {} us max, {} failures.",
+                handlerStatistics.getName(),
+                handlerStatistics.getInvocations(),
+                handlerStatistics.getAverageMicros(),
+                handlerStatistics.getMaxMicros(),
+                handlerStatistics.getFailures());
+        }
+    }
+
+    public synchronized List<HandlerStatistics> getStatistics() {
+        return List.copyOf(this.statistics);
+    }
+
+    public long getDispatched() {
+        return this.dispatched.sum();
+    }
+
+    public long getDropped() {
+        return this.dropped.sum();
+    }
+
+    private static Predicate<GenericEvent> createGuildResolver(Class<?> type) {
+        if (GenericGuildEvent.class.isAssignableFrom(type) || MessageBulkDeleteEvent.class.isAssignableFrom(type)) {
+            return event -> true;
+        }
+
+        if (GenericMessageEvent.class.isAssignableFrom(type)) {
+            return event -> ((GenericMessageEvent) event).isFromGuild();
+        }
+
+        return event -> false;
+    }
+
+    private static class Route {
+
+        private final Predicate<GenericEvent> guildResolver;
+        private final Registration[] registrations;
+        private final boolean guildOnly;
+
+        private Route(Class<?> type, Registration registration) {
+            this(createGuildResolver(type), new Registration[] { registration });
+        }
+
+        private Route(Predicate<GenericEvent> guildResolver, Registration[] registrations) {
+            this.guildResolver = guildResolver;
+            this.registrations = registrations;
+            this.guildOnly = Arrays.stream(registrations).anyMatch(registration -> registration.guildOnly);
+        }
+
+        private Route with(Registration registration) {
+            Registration[] registrations = Arrays.copyOf(this.registrations, this.registrations.length + 1);
+            registrations[this.registrations.length] = registration;
+            return new Route(this.guildResolver, registrations);
+        }
+
+    }
+
+    private static class Registration {
+
+        private final EventHandler<GenericEvent> handler;
+        private final boolean guildOnly;
+        private final HandlerStatistics statistics;
+
+        private Registration(EventHandler<GenericEvent> handler, boolean guildOnly, HandlerStatistics statistics) {
+            this.handler = handler;
+            this.guildOnly = guildOnly;
+            this.statistics = statistics;
+        }
+
+    }
+
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2022 zrdzn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.zrdzn.bot.xorbot.gateway;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+public class HandlerStatistics {
+
+    private final String name;
+    private final LongAdder invocations = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0L);
+    private final LongAdder failures = new LongAdder();
+
+    public HandlerStatistics(String name) {
+        this.name = name;
+    }
+
+    void record(long nanos) {
+        this.invocations.increment();
+        this.totalNanos.add(nanos);
+        this.maxNanos.accumulate(nanos);
+    }
+
+    void recordFailure() {
+        this.failures.increment();
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    public long getInvocations() {
+        return this.invocations.sum();
+    }
+
+    public long getAverageMicros() {
+        long invocations = this.invocations.sum();
+        return invocations == 0L ? 0L : TimeUnit.NANOSECONDS.toMicros(this.totalNanos.sum() / invocations);
+    }
+
+    public long getMaxMicros() {
+        return TimeUnit.NANOSECONDS.toMicros(this.maxNanos.get());
+    }
+
+    public long getFailures() {
+        return this.failures.sum();
+    }
+
+}
@@ -17,26 +17,43 @@ package io.github.zrdzn.bot.xorbot.log;
 
 public enum LogAction {
 
-    MEMBER_JOIN("Member joined"),
-    MEMBER_LEAVE("Member leaved"),
-    MESSAGE_DELETE("Message deleted"),
-    MESSAGE_EDIT("Message edited"),
-    MEMBER_WARN_ADD("Member warned"),
-    MEMBER_WARN_REMOVE("Member unwarned"),
-    MEMBER_MUTE("Member muted"),
-    MEMBER_UNMUTE("Member unmuted"),
-    MEMBER_KICK("Member kicked"),
-    MEMBER_BAN("Member banned"),
-    MEMBER_UNBAN("Member unbanned");
+    MEMBER_JOIN("Member joined", "Member"),
+    MEMBER_LEAVE("Member leaved", "Member"),
+    MESSAGE_DELETE("Message deleted", "Member", "Message", "Edit history"),
+    MESSAGE_BULK_DELETE("Messages purged", "Channel", "Messages", "Cached"),
+    MESSAGE_EDIT("Message edited", "Member", "Old message", "New message"),
+    MEMBER_WARN_ADD("Member warned", "Member", "Executor", "Reason"),
+    MEMBER_WARN_REMOVE("Member unwarned", "Member", "Executor"),
+    MEMBER_MUTE("Member muted", "Member", "Executor", "Reason", "Duration"),
+    MEMBER_UNMUTE("Member unmuted", "Member", "Executor"),
+    MEMBER_KICK("Member kicked", "Member", "Executor", "Reason"),
+    MEMBER_BAN("Member banned", "Member", "Executor", "Reason"),
+    MEMBER_UNBAN("Member unbanned", "Member", "Executor"),
+    MEMBER_MASS_KICK("Members mass kicked", "Executor", "Reason", "Targets", "Result"),
+    MEMBER_MASS_BAN("Members mass banned", "Executor", "Reason", "Targets", "Result"),
+    MESSAGE_FLOOD("Message flood detected", "Scope", "Target", "Action"),
+    MEMBER_RAID("Join raid detected", "Joins", "Window", "Action"),
+    DUPLICATE_SPAM("Duplicate spam detected", "Scope", "Target", "Matches", "Action");
 
     private final String description;
+    private final String[] fieldNames;
 
-    LogAction(String description) {
+    LogAction(String description, String... fieldNames) {
         this.description = description;
+        this.fieldNames = fieldNames;
     }
 
     public String getDescription() {
         return this.description;
     }
 
+    /**
+     * Gets the names of the fields that are filled for every log of this action.
+     *
+     * @return names of the variable fields in order
+     */
+    public String[] getFieldNames() {
+        return this.fieldNames.clone();
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2022 zrdzn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.zrdzn.bot.xorbot.log;
+
+import org.slf4j.Logger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Archives log entries in the database.
+ * <p>
+ * Listeners only put entries in a bounded queue, a single writer drains it every
+ * flush interval and inserts up to a batch of entries per statement. Entries are
+ * dropped when the queue is full, so a slow database never blocks the gateway threads.
+ */
+public class LogArchive {
+
+    private final LogRepository logRepository;
+    private final BlockingQueue<LogEntry> queue;
+    private final int batchSize;
+    private final Logger logger;
+
+    private final LongAdder archived = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+
+    public LogArchive(LogRepository logRepository, int queueSize, int batchSize, Logger logger) {
+        this.logRepository = logRepository;
+        this.queue = new ArrayBlockingQueue<>(queueSize);
+        this.batchSize = batchSize;
+        this.logger = logger;
+    }
+
+    public void start(ScheduledExecutorService scheduler, long flushMillis) {
+        scheduler.scheduleWithFixedDelay(this::flush, flushMillis, flushMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public void record(LogEntry entry) {
+        if (!this.queue.offer(entry)) {
+            this.dropped.increment();
+        }
+    }
+
+    /**
+     * Inserts every queued entry. Called by the single writer and on shutdown.
+     */
+    public synchronized void flush() {
+        List<LogEntry> batch = new ArrayList<>(this.batchSize);
+        while (this.queue.drainTo(batch, this.batchSize) > 0) {
+            if (this.logRepository.saveAll(batch)) {
+                this.archived.add(batch.size());
+            } else {
+                this.dropped.add(batch.size());
+                this.logger.warn("Dropped {} log entries that could not be archived.", batch.size());
+            }
+
+            batch.clear();
+        }
+    }
+
+    public LogRepository getLogRepository() {
+        return this.logRepository;
+    }
+
+    public long getArchived() {
+        return this.archived.sum();
+    }
+
+    public long getDropped() {
+        return this.dropped.sum();
+    }
+
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2022 zrdzn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.zrdzn.bot.xorbot.log;
+
+/**
+ * Archived record of a single log message.
+ */
+public class LogEntry {
+
+    private final long id;
+    private final long guildId;
+    private final LogAction action;
+    private final long targetId;
+    private final long executorId;
+    private final long createdAt;
+    private final String details;
+
+    /**
+     * @param id id of the entry, 0 if it was not archived yet
+     * @param guildId id of the guild the entry belongs to
+     * @param action logged action
+     * @param targetId id of the user the action was done to, 0 if there is none
+     * @param executorId id of the user who did the action, 0 if there is none
+     * @param createdAt creation time in epoch milliseconds
+     * @param details logged field values, one field per line
+     */
+    public LogEntry(long id, long guildId, LogAction action, long targetId, long executorId, long createdAt, String details) {
+        this.id = id;
+        this.guildId = guildId;
+        this.action = action;
+        this.targetId = targetId;
+        this.executorId = executorId;
+        this.createdAt = createdAt;
+        this.details = details;
+    }
+
+    public long getId() {
+        return this.id;
+    }
+
+    public long getGuildId() {
+        return this.guildId;
+    }
+
+    public LogAction getAction() {
+        return this.action;
+    }
+
+    public long getTargetId() {
+        return this.targetId;
+    }
+
+    public long getExecutorId() {
+        return this.executorId;
+    }
+
+    public long getCreatedAt() {
+        return this.createdAt;
+    }
+
+    public String getDetails() {
+        return this.details;
+    }
+
+}
@@ -17,41 +17,77 @@ package io.github.zrdzn.bot.xorbot.log;
 
 import com.google.common.eventbus.EventBus;
 import com.google.common.eventbus.Subscribe;
+import io.github.zrdzn.bot.xorbot.cache.CachedMessage;
+import io.github.zrdzn.bot.xorbot.cache.DeletedMessage;
+import io.github.zrdzn.bot.xorbot.cache.DeletionIndex;
 import io.github.zrdzn.bot.xorbot.cache.MessageCache;
 import io.github.zrdzn.bot.xorbot.embed.EmbedHelper;
 import io.github.zrdzn.bot.xorbot.event.events.GuildMemberMuteEvent;
 import io.github.zrdzn.bot.xorbot.event.events.GuildMemberUnmuteEvent;
 import io.github.zrdzn.bot.xorbot.event.events.GuildMemberWarnAddEvent;
 import io.github.zrdzn.bot.xorbot.event.events.GuildMemberWarnRemoveEvent;
+import io.github.zrdzn.bot.xorbot.gateway.EventDispatcher;
+import io.github.zrdzn.bot.xorbot.rest.RestPriority;
+import io.github.zrdzn.bot.xorbot.rest.RestScheduler;
+import io.github.zrdzn.bot.xorbot.shard.ShardMetrics;
+import net.dv8tion.jda.api.JDA;
 import net.dv8tion.jda.api.audit.ActionType;
 import net.dv8tion.jda.api.audit.AuditLogEntry;
-import net.dv8tion.jda.api.entities.Message;
-import net.dv8tion.jda.api.entities.MessageChannel;
 import net.dv8tion.jda.api.events.guild.GuildBanEvent;
 import net.dv8tion.jda.api.events.guild.GuildUnbanEvent;
 import net.dv8tion.jda.api.events.guild.member.GuildMemberJoinEvent;
 import net.dv8tion.jda.api.events.guild.member.GuildMemberRemoveEvent;
+import net.dv8tion.jda.api.events.message.MessageBulkDeleteEvent;
 import net.dv8tion.jda.api.events.message.MessageReceivedEvent;
 import net.dv8tion.jda.api.events.message.guild.GuildMessageDeleteEvent;
 import net.dv8tion.jda.api.events.message.guild.GuildMessageUpdateEvent;
-import net.dv8tion.jda.api.hooks.ListenerAdapter;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-
-public class LogListener extends ListenerAdapter {
-
-    private final MessageCache cachedMessages;
-    private final long logChannelId;
-
-    public LogListener(EventBus eventBus, long logChannelId) {
-        this.cachedMessages = new MessageCache(5);
-        this.logChannelId = logChannelId;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class LogListener {
+
+    private final Map<Integer, MessageCache> cachedMessages;
+    private final TranscriptBuilder transcriptBuilder;
+    private final LogPublisher logPublisher;
+    private final LogSuppressions logSuppressions;
+    private final DeletionIndex deletionIndex;
+    private final RestScheduler restScheduler;
+    private final int messageCacheSize;
+    private final int messageVersions;
+
+    public LogListener(EventBus eventBus, LogPublisher logPublisher, LogSuppressions logSuppressions, DeletionIndex deletionIndex,
+                       RestScheduler restScheduler, int messageCacheSize, int messageVersions) {
+        this.cachedMessages = new ConcurrentHashMap<>();
+        this.transcriptBuilder = new TranscriptBuilder();
+        this.logPublisher = logPublisher;
+        this.logSuppressions = logSuppressions;
+        this.deletionIndex = deletionIndex;
+        this.restScheduler = restScheduler;
+        this.messageCacheSize = messageCacheSize;
+        this.messageVersions = messageVersions;
 
         eventBus.register(this);
     }
 
-    @Override
+    public void register(EventDispatcher dispatcher) {
+        dispatcher.registerGuildOnly(MessageReceivedEvent.class, "LogListener#onMessageReceived", this::onMessageReceived);
+        dispatcher.register(GuildMemberJoinEvent.class, "LogListener#onGuildMemberJoin", this::onGuildMemberJoin);
+        dispatcher.register(GuildMemberRemoveEvent.class, "LogListener#onGuildMemberRemove", this::onGuildMemberRemove);
+        dispatcher.register(GuildMessageDeleteEvent.class, "LogListener#onGuildMessageDelete", this::onGuildMessageDelete);
+        dispatcher.register(MessageBulkDeleteEvent.class, "LogListener#onMessageBulkDelete", this::onMessageBulkDelete);
+        dispatcher.register(GuildMessageUpdateEvent.class, "LogListener#onGuildMessageUpdate", this::onGuildMessageUpdate);
+        dispatcher.register(GuildBanEvent.class, "LogListener#onGuildBan", this::onGuildBan);
+        dispatcher.register(GuildUnbanEvent.class, "LogListener#onGuildUnban", this::onGuildUnban);
+    }
+
     public void onMessageReceived(@NotNull MessageReceivedEvent event) {
         if (event.getAuthor().isBot()) {
             return;
@@ -61,161 +97,147 @@ public class LogListener extends ListenerAdapter {
             return;
         }
 
-        this.cachedMessages.store(event.getMessage());
+        this.getMessageCache(event.getJDA()).store(event.getMessage());
     }
 
-    @Override
     public void onGuildMemberJoin(@NotNull GuildMemberJoinEvent event) {
-        MessageChannel logChannel = event.getGuild().getTextChannelById(this.logChannelId);
-        if (logChannel == null) {
-            return;
-        }
-
-        logChannel.sendMessageEmbeds(EmbedHelper.log(LogAction.MEMBER_JOIN)
-            .addField("Member", EmbedHelper.formatUser(event.getUser()), false)
-            .build()).queue();
+        this.logPublisher.publish(event.getGuild(), LogAction.MEMBER_JOIN, event.getUser().getIdLong(), 0L,
+            EmbedHelper.formatUser(event.getUser()));
     }
 
-    @Override
     public void onGuildMemberRemove(@NotNull GuildMemberRemoveEvent event) {
-        MessageChannel logChannel = event.getGuild().getTextChannelById(this.logChannelId);
-        if (logChannel == null) {
+        if (this.logSuppressions.consume(event.getGuild().getIdLong(), event.getUser().getIdLong(), LogSuppressions.Event.REMOVE)) {
             return;
         }
 
-        event.getGuild().retrieveAuditLogs()
+        this.restScheduler.queue(RestPriority.LOG, event.getGuild(), event.getGuild().retrieveAuditLogs()
             .type(ActionType.KICK)
-            .limit(1)
-            .queue(entries -> {
+            .limit(1), entries -> {
                 Optional<AuditLogEntry> entryMaybe = entries.stream()
                     .filter(entry -> entry.getTargetId().equals(event.getUser().getId()))
                     .findFirst();
                 if (entryMaybe.isEmpty()) {
-                    logChannel.sendMessageEmbeds(EmbedHelper.log(LogAction.MEMBER_LEAVE)
-                        .addField("Member", EmbedHelper.formatUser(event.getUser()), false)
-                        .build()).queue();
+                    this.logPublisher.publish(event.getGuild(), LogAction.MEMBER_LEAVE, event.getUser().getIdLong(), 0L,
+                        EmbedHelper.formatUser(event.getUser()));
                     return;
                 }
 
                 AuditLogEntry entry = entryMaybe.get();
 
-                logChannel.sendMessageEmbeds(EmbedHelper.log(LogAction.MEMBER_KICK)
-                    .addField("Member", EmbedHelper.formatUser(event.getUser()), false)
-                    .addField("Executor", EmbedHelper.formatUser(entry.getUser()), false)
-                    .addField("Reason", entry.getReason(), false)
-                    .build()).queue();
+                this.logPublisher.publish(event.getGuild(), LogAction.MEMBER_KICK,
+                    event.getUser().getIdLong(), entry.getUser().getIdLong(),
+                    EmbedHelper.formatUser(event.getUser()),
+                    EmbedHelper.formatUser(entry.getUser()),
+                    entry.getReason());
             });
     }
 
-    @Override
     public void onGuildMessageDelete(@NotNull GuildMessageDeleteEvent event) {
-        MessageChannel logChannel = event.getGuild().getTextChannelById(this.logChannelId);
-        if (logChannel == null) {
-            return;
-        }
-
-        Optional<Message> messageMaybe = this.cachedMessages.find(storedMessage ->
-            storedMessage.getId().equals(event.getMessageId()));
+        Optional<CachedMessage> messageMaybe = this.getMessageCache(event.getJDA()).find(event.getMessageIdLong());
         if (messageMaybe.isEmpty()) {
             return;
         }
 
-        Message message = messageMaybe.get();
+        CachedMessage message = messageMaybe.get();
+
+        long now = System.currentTimeMillis();
+        this.deletionIndex.record(new DeletedMessage(event.getGuild().getIdLong(), message, now), now);
 
-        logChannel.sendMessageEmbeds(EmbedHelper.log(LogAction.MESSAGE_DELETE)
-            .addField("Member", EmbedHelper.formatUser(message.getAuthor()), false)
-            .addField("Message", message.getContentRaw(), false)
-            .build()).queue();
+        this.logPublisher.publish(event.getGuild(), LogAction.MESSAGE_DELETE, message.getAuthor().getIdLong(), 0L,
+            EmbedHelper.formatUser(message.getAuthor()),
+            message.getContent(),
+            formatHistory(message));
+    }
+
+    public void onMessageBulkDelete(@NotNull MessageBulkDeleteEvent event) {
+        List<String> messageIds = event.getMessageIds();
+
+        List<CachedMessage> messages = this.getMessageCache(event.getJDA()).findAll(messageIds);
+
+        long now = System.currentTimeMillis();
+        messages.forEach(message -> this.deletionIndex.record(new DeletedMessage(event.getGuild().getIdLong(), message, now), now));
+
+        Set<String> missingIds = new HashSet<>(messageIds);
+        messages.forEach(message -> missingIds.remove(message.getId()));
+
+        byte[] transcript = this.transcriptBuilder.build(
+            "Messages purged from #" + event.getChannel().getName() + " (" + event.getChannel().getId() + ')',
+            messages,
+            missingIds);
+
+        this.logPublisher.publish(event.getGuild(), LogAction.MESSAGE_BULK_DELETE, 0L, 0L,
+            new LogPublisher.Attachment(transcript, "purge-" + event.getChannel().getId() + ".txt"),
+            event.getChannel().getAsMention(),
+            String.valueOf(messageIds.size()),
+            String.valueOf(messages.size()));
     }
 
-    @Override
     public void onGuildMessageUpdate(@NotNull GuildMessageUpdateEvent event) {
-        MessageChannel logChannel = event.getGuild().getTextChannelById(this.logChannelId);
-        if (logChannel == null) {
+        // Messages of bots are never cached, like in onMessageReceived, so progress replies edited by the bot are not logged.
+        if (event.getAuthor().isBot()) {
             return;
         }
 
-        Optional<Message> messageMaybe = this.cachedMessages.find(storedMessage ->
-            storedMessage.getId().equals(event.getMessageId()));
+        MessageCache messageCache = this.getMessageCache(event.getJDA());
+
+        Optional<CachedMessage> messageMaybe = messageCache.find(event.getMessageIdLong());
         if (messageMaybe.isEmpty()) {
+            // Keep the edited message, so its next edits and deletion can be logged.
+            messageCache.store(event.getMessage());
             return;
         }
 
-        Message message = messageMaybe.get();
+        String previousContent = messageMaybe.get().edit(event.getMessage().getContentRaw());
 
-        logChannel.sendMessageEmbeds(EmbedHelper.log(LogAction.MESSAGE_EDIT)
-            .addField("Member", EmbedHelper.formatUser(event.getAuthor()), false)
-            .addField("Old message", message.getContentRaw(), false)
-            .addField("New message", event.getMessage().getContentRaw(), false)
-            .build()).queue();
+        this.logPublisher.publish(event.getGuild(), LogAction.MESSAGE_EDIT, event.getAuthor().getIdLong(), 0L,
+            EmbedHelper.formatUser(event.getAuthor()),
+            previousContent,
+            event.getMessage().getContentRaw());
     }
 
     @Subscribe
     public void onGuildMemberWarnAdd(@NotNull GuildMemberWarnAddEvent event) {
-        MessageChannel logChannel = event.getTarget().getGuild().getTextChannelById(this.logChannelId);
-        if (logChannel == null) {
-            return;
-        }
-
-        logChannel.sendMessageEmbeds(EmbedHelper.log(LogAction.MEMBER_WARN_ADD)
-            .addField("Member", EmbedHelper.formatUser(event.getTarget().getUser()), false)
-            .addField("Executor", EmbedHelper.formatUser(event.getExecutor().getUser()), false)
-            .addField("Reason", event.getReason(), false)
-            .build()).queue();
+        this.logPublisher.publish(event.getTarget().getGuild(), LogAction.MEMBER_WARN_ADD,
+            event.getTarget().getIdLong(), event.getExecutor().getIdLong(),
+            EmbedHelper.formatUser(event.getTarget().getUser()),
+            EmbedHelper.formatUser(event.getExecutor().getUser()),
+            event.getReason());
     }
 
     @Subscribe
     public void onGuildMemberWarnRemove(@NotNull GuildMemberWarnRemoveEvent event) {
-        MessageChannel logChannel = event.getTarget().getGuild().getTextChannelById(this.logChannelId);
-        if (logChannel == null) {
-            return;
-        }
-
-        logChannel.sendMessageEmbeds(EmbedHelper.log(LogAction.MEMBER_WARN_REMOVE)
-            .addField("Member", EmbedHelper.formatUser(event.getTarget().getUser()), false)
-            .addField("Executor", EmbedHelper.formatUser(event.getExecutor().getUser()), false)
-            .build()).queue();
+        this.logPublisher.publish(event.getTarget().getGuild(), LogAction.MEMBER_WARN_REMOVE,
+            event.getTarget().getIdLong(), event.getExecutor().getIdLong(),
+            EmbedHelper.formatUser(event.getTarget().getUser()),
+            EmbedHelper.formatUser(event.getExecutor().getUser()));
     }
 
     @Subscribe
     public void onGuildMemberMute(@NotNull GuildMemberMuteEvent event) {
-        MessageChannel logChannel = event.getTarget().getGuild().getTextChannelById(this.logChannelId);
-        if (logChannel == null) {
-            return;
-        }
-
-        logChannel.sendMessageEmbeds(EmbedHelper.log(LogAction.MEMBER_MUTE)
-            .addField("Member", EmbedHelper.formatUser(event.getTarget().getUser()), false)
-            .addField("Executor", EmbedHelper.formatUser(event.getExecutor().getUser()), false)
-            .addField("Reason", event.getReason(), false)
-            .addField("Duration", event.getDurationString(), false)
-            .build()).queue();
+        this.logPublisher.publish(event.getTarget().getGuild(), LogAction.MEMBER_MUTE,
+            event.getTarget().getIdLong(), event.getExecutor().getIdLong(),
+            EmbedHelper.formatUser(event.getTarget().getUser()),
+            EmbedHelper.formatUser(event.getExecutor().getUser()),
+            event.getReason(),
+            event.getDurationString());
     }
 
     @Subscribe
     public void onGuildMemberUnmute(@NotNull GuildMemberUnmuteEvent event) {
-        MessageChannel logChannel = event.getTarget().getGuild().getTextChannelById(this.logChannelId);
-        if (logChannel == null) {
-            return;
-        }
-
-        logChannel.sendMessageEmbeds(EmbedHelper.log(LogAction.MEMBER_UNMUTE)
-            .addField("Member", EmbedHelper.formatUser(event.getTarget().getUser()), false)
-            .addField("Executor", EmbedHelper.formatUser(event.getExecutor().getUser()), false)
-            .build()).queue();
+        this.logPublisher.publish(event.getTarget().getGuild(), LogAction.MEMBER_UNMUTE,
+            event.getTarget().getIdLong(), event.getExecutor().getIdLong(),
+            EmbedHelper.formatUser(event.getTarget().getUser()),
+            EmbedHelper.formatUser(event.getExecutor().getUser()));
     }
 
-    @Override
     public void onGuildBan(@NotNull GuildBanEvent event) {
-        MessageChannel logChannel = event.getGuild().getTextChannelById(this.logChannelId);
-        if (logChannel == null) {
+        if (this.logSuppressions.consume(event.getGuild().getIdLong(), event.getUser().getIdLong(), LogSuppressions.Event.BAN)) {
             return;
         }
 
-        event.getGuild().retrieveAuditLogs()
+        this.restScheduler.queue(RestPriority.LOG, event.getGuild(), event.getGuild().retrieveAuditLogs()
             .type(ActionType.BAN)
-            .limit(1)
-            .queue(entries -> {
+            .limit(1), entries -> {
                 Optional<AuditLogEntry> entryMaybe = entries.stream()
                     .filter(entry -> entry.getTargetId().equals(event.getUser().getId()))
                     .findFirst();
@@ -225,25 +247,18 @@ public class LogListener extends ListenerAdapter {
 
                 AuditLogEntry entry = entryMaybe.get();
 
-                logChannel.sendMessageEmbeds(EmbedHelper.log(LogAction.MEMBER_BAN)
-                    .addField("Member", EmbedHelper.formatUser(event.getUser()), false)
-                    .addField("Executor", EmbedHelper.formatUser(entry.getUser()), false)
-                    .addField("Reason", entry.getReason(), false)
-                    .build()).queue();
+                this.logPublisher.publish(event.getGuild(), LogAction.MEMBER_BAN,
+                    event.getUser().getIdLong(), entry.getUser().getIdLong(),
+                    EmbedHelper.formatUser(event.getUser()),
+                    EmbedHelper.formatUser(entry.getUser()),
+                    entry.getReason());
             });
     }
 
-    @Override
     public void onGuildUnban(@NotNull GuildUnbanEvent event) {
-        MessageChannel logChannel = event.getGuild().getTextChannelById(this.logChannelId);
-        if (logChannel == null) {
-            return;
-        }
-
-        event.getGuild().retrieveAuditLogs()
+        this.restScheduler.queue(RestPriority.LOG, event.getGuild(), event.getGuild().retrieveAuditLogs()
             .type(ActionType.UNBAN)
-            .limit(1)
-            .queue(entries -> {
+            .limit(1), entries -> {
                 Optional<AuditLogEntry> entryMaybe = entries.stream()
                     .filter(entry -> entry.getTargetId().equals(event.getUser().getId()))
                     .findFirst();
@@ -253,11 +268,57 @@ public class LogListener extends ListenerAdapter {
 
                 AuditLogEntry entry = entryMaybe.get();
 
-                logChannel.sendMessageEmbeds(EmbedHelper.log(LogAction.MEMBER_UNBAN)
-                    .addField("Member", EmbedHelper.formatUser(event.getUser()), false)
-                    .addField("Executor", EmbedHelper.formatUser(entry.getUser()), false)
-                    .build()).queue();
+                this.logPublisher.publish(event.getGuild(), LogAction.MEMBER_UNBAN,
+                    event.getUser().getIdLong(), entry.getUser().getIdLong(),
+                    EmbedHelper.formatUser(event.getUser()),
+                    EmbedHelper.formatUser(entry.getUser()));
             });
     }
 
+    /**
+     * Formats every version of the message before the latest one.
+     *
+     * @param message the cached message
+     *
+     * @return numbered list of the previous versions, or null if the message was never edited
+     */
+    private static String formatHistory(CachedMessage message) {
+        List<String> versions = message.getVersions();
+        if (versions.size() < 2) {
+            return null;
+        }
+
+        StringBuilder history = new StringBuilder();
+
+        int number = message.getDroppedVersions() + 1;
+        for (String version : versions.subList(0, versions.size() - 1)) {
+            history.append(number++).append(". ").append(version).append('\n');
+        }
+
+        return history.toString();
+    }
+
+    /**
+     * Gets the message caches of every shard that received a message so far.
+     *
+     * @return message caches of the shards
+     */
+    public Collection<MessageCache> getMessageCaches() {
+        return Collections.unmodifiableCollection(this.cachedMessages.values());
+    }
+
+    /**
+     * Gets the message cache of the shard that received the event.
+     * Every shard handles a disjoint set of guilds, so caches do not
+     * have to be shared and shards never contend on the same lock.
+     *
+     * @param jda the shard instance
+     *
+     * @return message cache of the shard
+     */
+    private MessageCache getMessageCache(JDA jda) {
+        return this.cachedMessages.computeIfAbsent(ShardMetrics.getShardId(jda), shardId -> new MessageCache(this.messageCacheSize,
+            this.messageVersions));
+    }
+
 }
@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2022 zrdzn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.zrdzn.bot.xorbot.log;
+
+import io.github.zrdzn.bot.xorbot.embed.EmbedTemplate;
+import io.github.zrdzn.bot.xorbot.rest.RestPriority;
+import io.github.zrdzn.bot.xorbot.rest.RestScheduler;
+import net.dv8tion.jda.api.entities.Guild;
+import net.dv8tion.jda.api.entities.MessageChannel;
+import net.dv8tion.jda.api.entities.MessageEmbed;
+import net.dv8tion.jda.api.requests.restaction.MessageAction;
+
+/**
+ * Single place every log message goes through. Sends the embed to the log
+ * channel and archives the entry, if the archive is enabled.
+ */
+public class LogPublisher {
+
+    private final long logChannelId;
+    private final LogArchive logArchive;
+    private final RestScheduler restScheduler;
+
+    /**
+     * @param logChannelId id of the log channel
+     * @param logArchive archive of the log entries, {@code null} if the archive is disabled
+     * @param restScheduler scheduler sending the log messages
+     */
+    public LogPublisher(long logChannelId, LogArchive logArchive, RestScheduler restScheduler) {
+        this.logChannelId = logChannelId;
+        this.logArchive = logArchive;
+        this.restScheduler = restScheduler;
+    }
+
+    /**
+     * Sends the log message and archives it.
+     *
+     * @param guild the guild the action happened in
+     * @param action the logged action
+     * @param targetId id of the user the action was done to, 0 if there is none
+     * @param executorId id of the user who did the action, 0 if there is none
+     * @param values values of the fields of the action, in order
+     */
+    public void publish(Guild guild, LogAction action, long targetId, long executorId, String... values) {
+        this.publish(guild, action, targetId, executorId, null, values);
+    }
+
+    /**
+     * Sends the log message with a file attachment and archives it.
+     *
+     * @param guild the guild the action happened in
+     * @param action the logged action
+     * @param targetId id of the user the action was done to, 0 if there is none
+     * @param executorId id of the user who did the action, 0 if there is none
+     * @param attachment attached file, {@code null} if there is none
+     * @param values values of the fields of the action, in order
+     */
+    public void publish(Guild guild, LogAction action, long targetId, long executorId, Attachment attachment, String... values) {
+        MessageEmbed embed = EmbedTemplate.log(action).fill(values);
+
+        if (this.logArchive != null) {
+            this.logArchive.record(new LogEntry(0L, guild.getIdLong(), action, targetId, executorId, System.currentTimeMillis(),
+                formatDetails(action, values)));
+        }
+
+        MessageChannel logChannel = guild.getTextChannelById(this.logChannelId);
+        if (logChannel == null) {
+            return;
+        }
+
+        MessageAction messageAction = attachment == null
+            ? logChannel.sendMessageEmbeds(embed)
+            : logChannel.sendFile(attachment.data, attachment.fileName).setEmbeds(embed);
+
+        this.restScheduler.queue(RestPriority.LOG, logChannel, messageAction);
+    }
+
+    private static String formatDetails(LogAction action, String[] values) {
+        StringBuilder details = new StringBuilder();
+
+        String[] fieldNames = action.getFieldNames();
+        for (int index = 0; index < fieldNames.length && index < values.length; index++) {
+            if (index > 0) {
+                details.append('\n');
+            }
+
+            details.append(fieldNames[index]).append(": ").append(values[index] == null ? "<None>" : values[index]);
+        }
+
+        return details.toString();
+    }
+
+    public static class Attachment {
+
+        private final byte[] data;
+        private final String fileName;
+
+        public Attachment(byte[] data, String fileName) {
+            this.data = data;
+            this.fileName = fileName;
+        }
+
+    }
+
+}
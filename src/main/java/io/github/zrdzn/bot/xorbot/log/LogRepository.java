@@ -0,0 +1,174 @@
+/*
+ * Copyright (c) 2022 zrdzn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.zrdzn.bot.xorbot.log;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.github.zrdzn.bot.xorbot.database.Deadline;
+import org.slf4j.Logger;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+public class LogRepository {
+
+    private final HikariDataSource dataSource;
+    private final Logger logger;
+
+    public LogRepository(HikariDataSource dataSource, Logger logger) {
+        this.dataSource = dataSource;
+        this.logger = logger;
+    }
+
+    /**
+     * Inserts every entry using a single multi-row statement.
+     *
+     * @param entries entries to insert
+     *
+     * @return true if the entries were inserted
+     */
+    public boolean saveAll(List<LogEntry> entries) {
+        if (entries.isEmpty()) {
+            return true;
+        }
+
+        StringBuilder query = new StringBuilder(128 + entries.size() * 24)
+            .append("INSERT INTO log_entries (guild_id, action, target_id, executor_id, created_at, details) VALUES ");
+        for (int index = 0; index < entries.size(); index++) {
+            query.append(index == 0 ? "(?, ?, ?, ?, ?, ?)" : ", (?, ?, ?, ?, ?, ?)");
+        }
+        query.append(';');
+
+        try (Connection connection = this.dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(query.toString())) {
+            Deadline.applyQueryTimeout(statement);
+
+            int parameter = 1;
+            for (LogEntry entry : entries) {
+                statement.setLong(parameter++, entry.getGuildId());
+                statement.setString(parameter++, entry.getAction().name());
+                statement.setLong(parameter++, entry.getTargetId());
+                statement.setLong(parameter++, entry.getExecutorId());
+                statement.setLong(parameter++, entry.getCreatedAt());
+                statement.setString(parameter++, entry.getDetails());
+            }
+
+            return statement.executeUpdate() == entries.size();
+        } catch (SQLException exception) {
+            this.logger.error("Could not insert log entries into database.", exception);
+            return false;
+        }
+    }
+
+    /**
+     * Searches entries of the guild from the newest to the oldest one.
+     * <p>
+     * Pages are fetched with a keyset on (created_at, id) instead of an offset, so every
+     * page is a single index range scan regardless of how deep it is.
+     *
+     * @param guildId id of the guild
+     * @param targetId id of the target user, 0 matches every user
+     * @param action logged action, null matches every action
+     * @param sinceMillis the oldest creation time in epoch milliseconds
+     * @param beforeId id of the last entry of the previous page, 0 for the first page
+     * @param limit maximum amount of entries
+     *
+     * @return found entries, empty list if nothing was found, empty if the query failed
+     */
+    public Optional<List<LogEntry>> search(long guildId, long targetId, LogAction action, long sinceMillis, long beforeId, int limit) {
+        List<LogEntry> entries = new ArrayList<>();
+
+        StringBuilder query = new StringBuilder("SELECT * FROM log_entries WHERE guild_id = ?");
+        if (targetId != 0L) {
+            query.append(" AND target_id = ?");
+        }
+        if (action != null) {
+            query.append(" AND action = ?");
+        }
+        query.append(" AND created_at >= ?");
+        if (beforeId != 0L) {
+            // The bound on created_at alone limits the index range, the rest only filters rows at the boundary.
+            query.append(" AND created_at <= ? AND (created_at < ? OR id < ?)");
+        }
+        query.append(" ORDER BY created_at DESC, id DESC LIMIT ?;");
+
+        try (Connection connection = this.dataSource.getConnection();
+             PreparedStatement cursorStatement = connection.prepareStatement("SELECT created_at FROM log_entries WHERE id = ? AND guild_id = ?;");
+             PreparedStatement statement = connection.prepareStatement(query.toString())) {
+            Deadline.applyQueryTimeout(cursorStatement);
+            Deadline.applyQueryTimeout(statement);
+
+            long beforeCreatedAt = 0L;
+            if (beforeId != 0L) {
+                // A cursor taken from another guild must not leak when its entry was created.
+                cursorStatement.setLong(1, beforeId);
+                cursorStatement.setLong(2, guildId);
+
+                ResultSet cursorResult = cursorStatement.executeQuery();
+                if (!cursorResult.next()) {
+                    return Optional.of(entries);
+                }
+
+                beforeCreatedAt = cursorResult.getLong("created_at");
+            }
+
+            int parameter = 1;
+            statement.setLong(parameter++, guildId);
+            if (targetId != 0L) {
+                statement.setLong(parameter++, targetId);
+            }
+            if (action != null) {
+                statement.setString(parameter++, action.name());
+            }
+            statement.setLong(parameter++, sinceMillis);
+            if (beforeId != 0L) {
+                statement.setLong(parameter++, beforeCreatedAt);
+                statement.setLong(parameter++, beforeCreatedAt);
+                statement.setLong(parameter++, beforeId);
+            }
+            statement.setInt(parameter, limit);
+
+            ResultSet result = statement.executeQuery();
+            while (result.next()) {
+                LogAction entryAction;
+                try {
+                    entryAction = LogAction.valueOf(result.getString("action"));
+                } catch (IllegalArgumentException exception) {
+                    continue;
+                }
+
+                entries.add(new LogEntry(
+                    result.getLong("id"),
+                    result.getLong("guild_id"),
+                    entryAction,
+                    result.getLong("target_id"),
+                    result.getLong("executor_id"),
+                    result.getLong("created_at"),
+                    result.getString("details")));
+            }
+
+            return Optional.of(entries);
+        } catch (SQLException exception) {
+            this.logger.error("Could not select log entries from database.", exception);
+            return Optional.empty();
+        }
+    }
+
+}
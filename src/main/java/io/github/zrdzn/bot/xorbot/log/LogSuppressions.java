@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2022 zrdzn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.zrdzn.bot.xorbot.log;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Members whose next ban or removal is already covered by a consolidated log entry,
+ * their single logs and the audit log lookups behind them are skipped.
+ * <p>
+ * A ban fires both a ban and a removal event, so every event has its own mark and
+ * consuming one of them keeps the other one in place.
+ */
+public class LogSuppressions {
+
+    private final long ttlMillis;
+    private final Map<Event, Map<Long, Map<Long, Long>>> events = new EnumMap<>(Event.class);
+
+    /**
+     * @param ttlMillis how long a suppression waits for its event before it is forgotten
+     */
+    public LogSuppressions(long ttlMillis) {
+        this.ttlMillis = ttlMillis;
+
+        for (Event event : Event.values()) {
+            this.events.put(event, new ConcurrentHashMap<>());
+        }
+    }
+
+    public void suppress(long guildId, long[] userIds, Set<Event> suppressedEvents) {
+        long now = System.currentTimeMillis();
+
+        for (Event event : suppressedEvents) {
+            Map<Long, Long> users = this.events.get(event).computeIfAbsent(guildId, id -> new ConcurrentHashMap<>());
+            users.values().removeIf(expiresAt -> expiresAt < now);
+
+            for (long userId : userIds) {
+                users.put(userId, now + this.ttlMillis);
+            }
+        }
+    }
+
+    /**
+     * Consumes the suppression of the event of the member, if there is one.
+     *
+     * @param guildId id of the guild
+     * @param userId id of the member
+     * @param event the received event
+     *
+     * @return true if the log of the member should be skipped
+     */
+    public boolean consume(long guildId, long userId, Event event) {
+        Map<Long, Long> users = this.events.get(event).get(guildId);
+        if (users == null) {
+            return false;
+        }
+
+        Long expiresAt = users.remove(userId);
+        return expiresAt != null && expiresAt >= System.currentTimeMillis();
+    }
+
+    /**
+     * Removes the suppressions of the member, used when the action that would fire the events failed.
+     *
+     * @param guildId id of the guild
+     * @param userId id of the member
+     * @param suppressedEvents events that will not be fired
+     */
+    public void release(long guildId, long userId, Set<Event> suppressedEvents) {
+        for (Event event : suppressedEvents) {
+            Map<Long, Long> users = this.events.get(event).get(guildId);
+            if (users != null) {
+                users.remove(userId);
+            }
+        }
+    }
+
+    public enum Event {
+
+        BAN,
+        REMOVE
+
+    }
+
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2022 zrdzn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.zrdzn.bot.xorbot.log;
+
+import io.github.zrdzn.bot.xorbot.cache.CachedMessage;
+
+import java.nio.charset.StandardCharsets;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Builds plain text transcripts of deleted messages.
+ * <p>
+ * Every thread reuses its own buffer, so purges of hundreds of messages do not
+ * grow a new builder each time. Buffers that grew above the retained capacity
+ * are dropped after use.
+ */
+public class TranscriptBuilder {
+
+    private static final int INITIAL_CAPACITY = 8 * 1024;
+    private static final int MAX_RETAINED_CAPACITY = 256 * 1024;
+    private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")
+        .withZone(ZoneOffset.UTC);
+
+    private final ThreadLocal<StringBuilder> buffers = ThreadLocal.withInitial(() -> new StringBuilder(INITIAL_CAPACITY));
+
+    /**
+     * Builds the transcript of the messages.
+     *
+     * @param title first line of the transcript
+     * @param messages cached messages, from the oldest to the newest one
+     * @param missingIds ids of the messages that were not cached
+     *
+     * @return UTF-8 encoded transcript
+     */
+    public byte[] build(String title, List<CachedMessage> messages, Collection<String> missingIds) {
+        StringBuilder buffer = this.buffers.get();
+        buffer.setLength(0);
+
+        buffer.append(title).append('\n').append('\n');
+
+        for (CachedMessage message : messages) {
+            buffer.append('[');
+            TIME_FORMATTER.formatTo(message.getTimeCreated(), buffer);
+            buffer.append(" UTC] ")
+                .append(message.getAuthor().getAsTag())
+                .append(" (").append(message.getAuthor().getId()).append("): ")
+                .append(message.getContent())
+                .append('\n');
+
+            List<String> versions = message.getVersions();
+            int number = message.getDroppedVersions() + 1;
+            for (String version : versions.subList(0, versions.size() - 1)) {
+                buffer.append("    version ").append(number++).append(": ").append(version).append('\n');
+            }
+        }
+
+        if (!missingIds.isEmpty()) {
+            buffer.append('\n').append("Messages not found in the cache:").append('\n');
+            for (String messageId : missingIds) {
+                buffer.append(messageId).append('\n');
+            }
+        }
+
+        byte[] transcript = buffer.toString().getBytes(StandardCharsets.UTF_8);
+
+        if (buffer.capacity() > MAX_RETAINED_CAPACITY) {
+            this.buffers.remove();
+        }
+
+        return transcript;
+    }
+
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2022 zrdzn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.zrdzn.bot.xorbot.logging;
+
+import org.slf4j.MDC;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Structured fields attached to every log message of the current thread until the
+ * context is closed. Fields are available to the layout one by one, as {@code %X{guild}},
+ * and together as {@code %X{context}}, which renders only the fields that are present.
+ */
+public class LogContext implements AutoCloseable {
+
+    public static final String CONTEXT_KEY = "context";
+
+    private final List<String> keys = new ArrayList<>(4);
+    private final String previousContext;
+    private final StringBuilder context;
+
+    private LogContext() {
+        this.previousContext = MDC.get(CONTEXT_KEY);
+        this.context = new StringBuilder(this.previousContext == null ? "" : this.previousContext);
+    }
+
+    public static LogContext open() {
+        return new LogContext();
+    }
+
+    /**
+     * Adds the field to the context.
+     *
+     * @param key name of the field
+     * @param value value of the field
+     *
+     * @return this context
+     */
+    public LogContext with(String key, Object value) {
+        String text = String.valueOf(value);
+
+        MDC.put(key, text);
+        this.keys.add(key);
+
+        this.context.append(key).append('=').append(text).append(' ');
+        MDC.put(CONTEXT_KEY, this.context.toString());
+
+        return this;
+    }
+
+    @Override
+    public void close() {
+        for (String key : this.keys) {
+            MDC.remove(key);
+        }
+
+        if (this.previousContext == null) {
+            MDC.remove(CONTEXT_KEY);
+        } else {
+            MDC.put(CONTEXT_KEY, this.previousContext);
+        }
+    }
+
+}
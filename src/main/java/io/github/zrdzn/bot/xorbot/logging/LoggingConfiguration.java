@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2022 zrdzn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.zrdzn.bot.xorbot.logging;
+
+import org.apache.log4j.BasicConfigurator;
+import org.apache.log4j.ConsoleAppender;
+import org.apache.log4j.Level;
+import org.apache.log4j.LogManager;
+import org.apache.log4j.PatternLayout;
+
+import java.util.Properties;
+
+public final class LoggingConfiguration {
+
+    public static final String DEFAULT_PATTERN = "%d{HH:mm:ss.SSS} [%t] %-5p %c - %X{context}%m%n";
+
+    private LoggingConfiguration() {
+    }
+
+    /**
+     * Replaces the logging configuration with a console appender behind a ring buffer.
+     * Missing keys use default values.
+     *
+     * @param configuration the bot configuration
+     *
+     * @return the asynchronous appender, to be closed on shutdown
+     *
+     * @throws IllegalArgumentException if any of the values is invalid
+     */
+    public static RingBufferAppender configure(Properties configuration) {
+        String pattern = configuration.getProperty("log_pattern", DEFAULT_PATTERN);
+        int queueSize = Integer.parseInt(configuration.getProperty("log_queue_size", "8192").trim());
+        OverflowPolicy overflowPolicy = OverflowPolicy.fromName(configuration.getProperty("log_overflow_policy", "discard_below_warn"));
+        Level level = Level.toLevel(configuration.getProperty("log_level", "INFO").trim(), Level.INFO);
+
+        if (queueSize <= 0) {
+            throw new IllegalArgumentException("log_queue_size must be above 0.");
+        }
+
+        RingBufferAppender appender = new RingBufferAppender(new ConsoleAppender(new PatternLayout(pattern)), queueSize, overflowPolicy);
+        appender.setName("async-console");
+
+        BasicConfigurator.resetConfiguration();
+        BasicConfigurator.configure(appender);
+        LogManager.getRootLogger().setLevel(level);
+
+        return appender;
+    }
+
+}
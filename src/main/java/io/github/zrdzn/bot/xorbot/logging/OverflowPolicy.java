@@ -0,0 +1,44 @@
+/*
+ * Copyright (c) 2022 zrdzn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.zrdzn.bot.xorbot.logging;
+
+import java.util.Locale;
+
+/**
+ * What happens to a log event when the queue of the asynchronous appender is full.
+ */
+public enum OverflowPolicy {
+
+    /**
+     * Every event is dropped, logging never slows down the caller.
+     */
+    DISCARD,
+
+    /**
+     * Events below WARN are dropped, warnings and errors wait for free space.
+     */
+    DISCARD_BELOW_WARN,
+
+    /**
+     * Every event waits for free space.
+     */
+    BLOCK;
+
+    public static OverflowPolicy fromName(String name) {
+        return valueOf(name.trim().toUpperCase(Locale.ROOT));
+    }
+
+}
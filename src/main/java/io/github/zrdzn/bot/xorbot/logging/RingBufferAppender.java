@@ -0,0 +1,248 @@
+/*
+ * Copyright (c) 2022 zrdzn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.zrdzn.bot.xorbot.logging;
+
+import org.apache.log4j.Appender;
+import org.apache.log4j.Layout;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.apache.log4j.spi.ErrorHandler;
+import org.apache.log4j.spi.Filter;
+import org.apache.log4j.spi.LoggingEvent;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Appender handing log events to a single writer thread through a bounded ring buffer.
+ * <p>
+ * Callers only capture the thread dependent parts of the event and claim a slot with a
+ * single compare-and-set, so JDA event threads and database threads never wait for the
+ * console. The writer thread passes events to the wrapped appender in order. When the
+ * ring is full the event is dropped or waits, depending on the overflow policy, and the
+ * amount of dropped events is logged once the writer catches up.
+ * <p>
+ * The appender implements {@link Appender} directly, the synchronized
+ * {@code AppenderSkeleton#doAppend} would serialize every caller.
+ */
+public class RingBufferAppender implements Appender {
+
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10L);
+    private static final long FULL_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50L);
+
+    // Looked up once, the hierarchy is locked while it closes this appender.
+    private static final Logger LOGGER = Logger.getLogger(RingBufferAppender.class);
+
+    private final Appender appender;
+    private final OverflowPolicy overflowPolicy;
+    private final AtomicReferenceArray<LoggingEvent> slots;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private final Thread writer;
+    private final LongAdder dropped = new LongAdder();
+
+    private volatile long head;
+    private volatile boolean writerIdle;
+    private volatile boolean closed;
+
+    private String name;
+    private long reportedDropped;
+
+    /**
+     * @param appender appender the events are written to
+     * @param capacity maximum amount of queued events, rounded up to a power of two
+     * @param overflowPolicy what happens to events when the queue is full
+     */
+    public RingBufferAppender(Appender appender, int capacity, OverflowPolicy overflowPolicy) {
+        int size = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+
+        this.appender = appender;
+        this.overflowPolicy = overflowPolicy;
+        this.slots = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+
+        this.writer = new Thread(this::write, "XorBot-Logging");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    @Override
+    public void doAppend(LoggingEvent event) {
+        // Captured on the calling thread, the writer thread has different thread-local state.
+        event.getThreadName();
+        event.getNDC();
+        event.getMDCCopy();
+        event.getRenderedMessage();
+        event.getThrowableStrRep();
+
+        if (this.closed || Thread.currentThread() == this.writer) {
+            this.appender.doAppend(event);
+            return;
+        }
+
+        boolean mayWait = this.overflowPolicy == OverflowPolicy.BLOCK
+            || (this.overflowPolicy == OverflowPolicy.DISCARD_BELOW_WARN && event.getLevel().isGreaterOrEqual(Level.WARN));
+
+        while (true) {
+            long sequence = this.tail.get();
+            if (sequence - this.head >= this.slots.length()) {
+                if (!mayWait) {
+                    this.dropped.increment();
+                    return;
+                }
+
+                LockSupport.parkNanos(this, FULL_PARK_NANOS);
+                continue;
+            }
+
+            if (this.tail.compareAndSet(sequence, sequence + 1L)) {
+                this.slots.set((int) sequence & this.mask, event);
+                break;
+            }
+        }
+
+        if (this.writerIdle) {
+            LockSupport.unpark(this.writer);
+        }
+    }
+
+    private void write() {
+        while (true) {
+            int index = (int) this.head & this.mask;
+            LoggingEvent event = this.slots.get(index);
+            if (event != null) {
+                this.slots.set(index, null);
+                this.head++;
+                this.appender.doAppend(event);
+                continue;
+            }
+
+            if (this.reportDropped()) {
+                continue;
+            }
+
+            if (this.closed && this.tail.get() == this.head) {
+                return;
+            }
+
+            this.writerIdle = true;
+            if (this.slots.get(index) == null) {
+                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+            }
+            this.writerIdle = false;
+        }
+    }
+
+    private boolean reportDropped() {
+        long total = this.dropped.sum();
+        if (total == this.reportedDropped) {
+            return false;
+        }
+
+        this.appender.doAppend(new LoggingEvent(RingBufferAppender.class.getName(), LOGGER, Level.WARN,
+            "Dropped " + (total - this.reportedDropped) + " log events, the log queue was full.", null));
+        this.reportedDropped = total;
+        return true;
+    }
+
+    /**
+     * Writes every queued event and stops the writer thread. Events appended
+     * afterwards are written directly by the calling thread.
+     */
+    @Override
+    public void close() {
+        if (this.closed) {
+            return;
+        }
+
+        this.closed = true;
+        LockSupport.unpark(this.writer);
+
+        try {
+            this.writer.join(TimeUnit.SECONDS.toMillis(5L));
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+
+        this.appender.close();
+    }
+
+    public int getCapacity() {
+        return this.slots.length();
+    }
+
+    public long getQueued() {
+        return this.tail.get() - this.head;
+    }
+
+    public long getDropped() {
+        return this.dropped.sum();
+    }
+
+    @Override
+    public void addFilter(Filter filter) {
+        this.appender.addFilter(filter);
+    }
+
+    @Override
+    public Filter getFilter() {
+        return this.appender.getFilter();
+    }
+
+    @Override
+    public void clearFilters() {
+        this.appender.clearFilters();
+    }
+
+    @Override
+    public String getName() {
+        return this.name;
+    }
+
+    @Override
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    @Override
+    public void setErrorHandler(ErrorHandler errorHandler) {
+        this.appender.setErrorHandler(errorHandler);
+    }
+
+    @Override
+    public ErrorHandler getErrorHandler() {
+        return this.appender.getErrorHandler();
+    }
+
+    @Override
+    public void setLayout(Layout layout) {
+        this.appender.setLayout(layout);
+    }
+
+    @Override
+    public Layout getLayout() {
+        return this.appender.getLayout();
+    }
+
+    @Override
+    public boolean requiresLayout() {
+        return false;
+    }
+
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2022 zrdzn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.zrdzn.bot.xorbot.moderation;
+
+import io.github.zrdzn.bot.xorbot.log.LogAction;
+import io.github.zrdzn.bot.xorbot.log.LogSuppressions;
+import net.dv8tion.jda.api.Permission;
+import net.dv8tion.jda.api.entities.Guild;
+import net.dv8tion.jda.api.requests.RestAction;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+public enum MassAction {
+
+    KICK("kick", "Kicking", "kicked", Permission.KICK_MEMBERS, LogAction.MEMBER_MASS_KICK,
+        EnumSet.of(LogSuppressions.Event.REMOVE)),
+    BAN("ban", "Banning", "banned", Permission.BAN_MEMBERS, LogAction.MEMBER_MASS_BAN,
+        EnumSet.of(LogSuppressions.Event.BAN, LogSuppressions.Event.REMOVE));
+
+    private final String name;
+    private final String progressive;
+    private final String pastTense;
+    private final Permission permission;
+    private final LogAction logAction;
+    private final Set<LogSuppressions.Event> triggeredEvents;
+
+    MassAction(String name, String progressive, String pastTense, Permission permission, LogAction logAction,
+               Set<LogSuppressions.Event> triggeredEvents) {
+        this.name = name;
+        this.progressive = progressive;
+        this.pastTense = pastTense;
+        this.permission = permission;
+        this.logAction = logAction;
+        this.triggeredEvents = triggeredEvents;
+    }
+
+    public RestAction<Void> create(Guild guild, long userId, String reason) {
+        return this == BAN
+            ? guild.ban(Long.toUnsignedString(userId), 0, reason)
+            : guild.kick(Long.toUnsignedString(userId), reason);
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    public String getProgressive() {
+        return this.progressive;
+    }
+
+    public String getPastTense() {
+        return this.pastTense;
+    }
+
+    public Permission getPermission() {
+        return this.permission;
+    }
+
+    public LogAction getLogAction() {
+        return this.logAction;
+    }
+
+    /**
+     * Gets the events fired for every target of the action, a ban removes the member as well.
+     *
+     * @return events fired for every target
+     */
+    public Set<LogSuppressions.Event> getTriggeredEvents() {
+        return this.triggeredEvents;
+    }
+
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2022 zrdzn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.zrdzn.bot.xorbot.moderation;
+
+import io.github.zrdzn.bot.xorbot.embed.EmbedHelper;
+import io.github.zrdzn.bot.xorbot.log.LogPublisher;
+import io.github.zrdzn.bot.xorbot.log.LogSuppressions;
+import io.github.zrdzn.bot.xorbot.rest.RestPriority;
+import io.github.zrdzn.bot.xorbot.rest.RestScheduler;
+import net.dv8tion.jda.api.entities.Guild;
+import net.dv8tion.jda.api.entities.User;
+import net.dv8tion.jda.api.exceptions.ErrorResponseException;
+import net.dv8tion.jda.api.requests.ErrorResponse;
+import net.dv8tion.jda.api.requests.RestAction;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+
+/**
+ * Applies one moderation action to many members of a guild.
+ * <p>
+ * Actions go through the REST scheduler with the moderation priority, which keeps a few
+ * of them in flight per guild and leaves the rate limit buckets to JDA. The single ban and
+ * removal logs of the targets are suppressed, the whole run is logged as one entry with
+ * the list of targets attached.
+ */
+public class MassModerator {
+
+    private final LogPublisher logPublisher;
+    private final LogSuppressions logSuppressions;
+    private final RestScheduler restScheduler;
+
+    public MassModerator(LogPublisher logPublisher, LogSuppressions logSuppressions, RestScheduler restScheduler) {
+        this.logPublisher = logPublisher;
+        this.logSuppressions = logSuppressions;
+        this.restScheduler = restScheduler;
+    }
+
+    /**
+     * Applies the action to every target.
+     *
+     * @param guild the guild
+     * @param action the action to apply
+     * @param userIds ids of the targets
+     * @param source description of how the targets were selected
+     * @param reason reason shown in the audit log
+     * @param executor the moderator
+     * @param progressConsumer consumer of the amount of processed targets
+     *
+     * @return future completed with the amount of targets the action failed for
+     */
+    public CompletableFuture<Integer> apply(Guild guild, MassAction action, long[] userIds, String source, String reason,
+                                            User executor, IntConsumer progressConsumer) {
+        CompletableFuture<Integer> result = new CompletableFuture<>();
+        if (userIds.length == 0) {
+            result.complete(0);
+            return result;
+        }
+
+        this.logSuppressions.suppress(guild.getIdLong(), userIds, action.getTriggeredEvents());
+
+        AtomicInteger processed = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        boolean[] failures = new boolean[userIds.length];
+
+        for (int index = 0; index < userIds.length; index++) {
+            int targetIndex = index;
+            Runnable complete = () -> {
+                int count = processed.incrementAndGet();
+                progressConsumer.accept(count);
+
+                if (count == userIds.length) {
+                    this.publish(guild, action, userIds, failures, failed.get(), source, reason, executor);
+                    result.complete(failed.get());
+                }
+            };
+
+            Runnable fail = () -> {
+                // A failed action fires no events, a later manual action on the member has to be logged.
+                this.logSuppressions.release(guild.getIdLong(), userIds[targetIndex], action.getTriggeredEvents());
+
+                synchronized (failures) {
+                    failures[targetIndex] = true;
+                }
+                failed.incrementAndGet();
+
+                complete.run();
+            };
+
+            // Actions on members ranked above the bot are rejected before any request is made.
+            RestAction<Void> restAction;
+            try {
+                restAction = action.create(guild, userIds[targetIndex], reason);
+            } catch (RuntimeException exception) {
+                fail.run();
+                continue;
+            }
+
+            this.restScheduler.queue(RestPriority.MODERATION, guild, restAction,
+                ignored -> complete.run(),
+                failure -> {
+                    // Kicking a member who already left is not a failure worth reporting.
+                    if (action == MassAction.KICK && failure instanceof ErrorResponseException
+                        && ((ErrorResponseException) failure).getErrorResponse() == ErrorResponse.UNKNOWN_MEMBER) {
+                        complete.run();
+                        return;
+                    }
+
+                    fail.run();
+                });
+        }
+
+        return result;
+    }
+
+    private void publish(Guild guild, MassAction action, long[] userIds, boolean[] failures, int failed, String source, String reason,
+                         User executor) {
+        StringBuilder targets = new StringBuilder(userIds.length * 24);
+        synchronized (failures) {
+            for (int index = 0; index < userIds.length; index++) {
+                targets.append(Long.toUnsignedString(userIds[index]));
+                if (failures[index]) {
+                    targets.append(" failed");
+                }
+                targets.append('\n');
+            }
+        }
+
+        this.logPublisher.publish(guild, action.getLogAction(), 0L, executor.getIdLong(),
+            new LogPublisher.Attachment(targets.toString().getBytes(StandardCharsets.UTF_8), "targets.txt"),
+            EmbedHelper.formatUser(executor),
+            reason,
+            userIds.length + " members selected by " + source,
+            (userIds.length - failed) + " " + action.getPastTense() + ", " + failed + " failed");
+    }
+
+}
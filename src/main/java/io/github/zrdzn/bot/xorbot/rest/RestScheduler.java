@@ -0,0 +1,232 @@
+/*
+ * Copyright (c) 2022 zrdzn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.zrdzn.bot.xorbot.rest;
+
+import net.dv8tion.jda.api.entities.ISnowflake;
+import net.dv8tion.jda.api.requests.RestAction;
+import org.slf4j.Logger;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Orders outbound requests by priority before they reach the rate limit buckets of JDA.
+ * <p>
+ * Requests are grouped by the channel or guild they target, which is how Discord splits
+ * most of its rate limits. Every route holds a few tokens and a request is handed to JDA
+ * only after taking one, the token is returned when the request completes. Requests
+ * waiting for a token are sent by priority, so a moderation action or a command reply
+ * never waits behind a burst of log messages queued before it, and requests waiting
+ * longer than the deadline of their priority are dropped instead of being sent late.
+ */
+public class RestScheduler {
+
+    private final int routeTokens;
+    private final long[] deadlineNanos;
+    private final Map<RestPriority, RestStatistics> statistics = new EnumMap<>(RestPriority.class);
+    private final Map<Long, Route> routes = new ConcurrentHashMap<>();
+    private final Logger logger;
+
+    /**
+     * @param routeTokens maximum amount of requests of a single route handed to JDA at once
+     * @param deadlineMillis how long requests of every priority can wait before being dropped, 0 if they are never dropped
+     */
+    public RestScheduler(int routeTokens, Map<RestPriority, Long> deadlineMillis, Logger logger) {
+        this.routeTokens = Math.max(routeTokens, 1);
+        this.deadlineNanos = new long[RestPriority.values().length];
+        this.logger = logger;
+
+        for (RestPriority priority : RestPriority.values()) {
+            this.deadlineNanos[priority.ordinal()] = deadlineMillis.getOrDefault(priority, 0L) * 1_000_000L;
+            this.statistics.put(priority, new RestStatistics(priority));
+        }
+    }
+
+    public <T> void queue(RestPriority priority, ISnowflake route, RestAction<T> action) {
+        this.queue(priority, route, action, null, null);
+    }
+
+    public <T> void queue(RestPriority priority, ISnowflake route, RestAction<T> action, Consumer<? super T> success) {
+        this.queue(priority, route, action, success, null);
+    }
+
+    /**
+     * Queues the request, it is sent once the route has a free token and no request
+     * of a higher priority is waiting for it.
+     *
+     * @param priority priority of the request
+     * @param route channel or guild the request targets
+     * @param action the request
+     * @param success callback of the result, {@code null} if the result is not needed
+     * @param failure callback of the failure, {@code null} to use the default failure handler
+     */
+    public <T> void queue(RestPriority priority, ISnowflake route, RestAction<T> action, Consumer<? super T> success,
+                          Consumer<? super Throwable> failure) {
+        while (true) {
+            Route routeQueue = this.routes.computeIfAbsent(route.getIdLong(), Route::new);
+
+            synchronized (routeQueue) {
+                // The route was removed as idle in the meantime, the request goes to the one replacing it.
+                if (routeQueue.removed) {
+                    continue;
+                }
+
+                routeQueue.waiting.add(new Request<>(priority, routeQueue.sequence++, System.nanoTime(), action, success, failure));
+            }
+
+            this.drain(routeQueue);
+            return;
+        }
+    }
+
+    private void drain(Route route) {
+        List<Request<?>> ready = new ArrayList<>();
+        List<Request<?>> expired = new ArrayList<>();
+
+        long now = System.nanoTime();
+
+        synchronized (route) {
+            while (route.tokens > 0 && !route.waiting.isEmpty()) {
+                Request<?> request = route.waiting.poll();
+
+                long deadline = this.deadlineNanos[request.priority.ordinal()];
+                if (deadline > 0L && now - request.queuedNanos > deadline) {
+                    expired.add(request);
+                    continue;
+                }
+
+                route.tokens--;
+                ready.add(request);
+            }
+
+            // Routes are created for every channel and guild requests are made to, idle ones are removed to keep the map small.
+            if (route.tokens == this.routeTokens && route.waiting.isEmpty()) {
+                route.removed = true;
+                this.routes.remove(route.id, route);
+            }
+        }
+
+        for (Request<?> request : expired) {
+            this.statistics.get(request.priority).recordDropped();
+            if (request.failure != null) {
+                request.failure.accept(new CancellationException("Request waited longer than the deadline of its priority."));
+            }
+        }
+
+        for (Request<?> request : ready) {
+            this.statistics.get(request.priority).recordSent(now - request.queuedNanos);
+            this.send(route, request);
+        }
+    }
+
+    private <T> void send(Route route, Request<T> request) {
+        try {
+            request.action.queue(result -> {
+                this.release(route);
+                if (request.success != null) {
+                    request.success.accept(result);
+                }
+            }, throwable -> {
+                this.release(route);
+                this.fail(request, throwable);
+            });
+        } catch (RuntimeException exception) {
+            this.release(route);
+            this.fail(request, exception);
+        }
+    }
+
+    private void fail(Request<?> request, Throwable throwable) {
+        if (request.failure != null) {
+            request.failure.accept(throwable);
+            return;
+        }
+
+        RestAction.getDefaultFailure().accept(throwable);
+    }
+
+    private void release(Route route) {
+        synchronized (route) {
+            route.tokens++;
+        }
+
+        this.drain(route);
+    }
+
+    public void report() {
+        for (RestStatistics priorityStatistics : this.getStatistics()) {
+            this.logger.info("REST {}: {} requests sent, {} dropped, {} ms average and {} ms max queue delay.",
+                priorityStatistics.getPriority(),
+                priorityStatistics.getSent(),
+                priorityStatistics.getDropped(),
+                priorityStatistics.getAverageDelayMillis(),
+                priorityStatistics.getMaxDelayMillis());
+        }
+    }
+
+    public List<RestStatistics> getStatistics() {
+        return List.copyOf(this.statistics.values());
+    }
+
+    private class Route {
+
+        private final long id;
+        private final PriorityQueue<Request<?>> waiting = new PriorityQueue<>();
+
+        private int tokens = RestScheduler.this.routeTokens;
+        private long sequence;
+        private boolean removed;
+
+        private Route(long id) {
+            this.id = id;
+        }
+
+    }
+
+    private static class Request<T> implements Comparable<Request<?>> {
+
+        private final RestPriority priority;
+        private final long sequence;
+        private final long queuedNanos;
+        private final RestAction<T> action;
+        private final Consumer<? super T> success;
+        private final Consumer<? super Throwable> failure;
+
+        private Request(RestPriority priority, long sequence, long queuedNanos, RestAction<T> action, Consumer<? super T> success,
+                        Consumer<? super Throwable> failure) {
+            this.priority = priority;
+            this.sequence = sequence;
+            this.queuedNanos = queuedNanos;
+            this.action = action;
+            this.success = success;
+            this.failure = failure;
+        }
+
+        @Override
+        public int compareTo(Request<?> other) {
+            int result = this.priority.compareTo(other.priority);
+            return result != 0 ? result : Long.compare(this.sequence, other.sequence);
+        }
+
+    }
+
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2022 zrdzn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.zrdzn.bot.xorbot.rest;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+public class RestStatistics {
+
+    private final RestPriority priority;
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder totalDelayNanos = new LongAdder();
+    private final LongAccumulator maxDelayNanos = new LongAccumulator(Math::max, 0L);
+
+    public RestStatistics(RestPriority priority) {
+        this.priority = priority;
+    }
+
+    void recordSent(long delayNanos) {
+        this.sent.increment();
+        this.totalDelayNanos.add(delayNanos);
+        this.maxDelayNanos.accumulate(delayNanos);
+    }
+
+    void recordDropped() {
+        this.dropped.increment();
+    }
+
+    public RestPriority getPriority() {
+        return this.priority;
+    }
+
+    public long getSent() {
+        return this.sent.sum();
+    }
+
+    public long getDropped() {
+        return this.dropped.sum();
+    }
+
+    public long getAverageDelayMillis() {
+        long sent = this.sent.sum();
+        return sent == 0L ? 0L : TimeUnit.NANOSECONDS.toMillis(this.totalDelayNanos.sum() / sent);
+    }
+
+    public long getMaxDelayMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(this.maxDelayNanos.get());
+    }
+
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2022 zrdzn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.zrdzn.bot.xorbot.shard;
+
+import net.dv8tion.jda.api.JDA;
+import net.dv8tion.jda.api.events.GenericEvent;
+import net.dv8tion.jda.api.hooks.EventListener;
+import net.dv8tion.jda.api.sharding.ShardManager;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Collects event loop statistics for every shard handled by this process.
+ */
+public class ShardMetrics implements EventListener {
+
+    private final Map<Integer, ShardStatistics> statistics = new ConcurrentHashMap<>();
+    private final Logger logger;
+
+    public ShardMetrics(Logger logger) {
+        this.logger = logger;
+    }
+
+    @Override
+    public void onEvent(@NotNull GenericEvent event) {
+        this.getStatistics(event.getJDA()).recordEvent();
+    }
+
+    public void recordCommand(JDA jda) {
+        this.getStatistics(jda).recordCommand();
+    }
+
+    public ShardStatistics getStatistics(JDA jda) {
+        return this.getStatistics(getShardId(jda));
+    }
+
+    public ShardStatistics getStatistics(int shardId) {
+        return this.statistics.computeIfAbsent(shardId, ShardStatistics::new);
+    }
+
+    public Collection<ShardStatistics> getAllStatistics() {
+        return Collections.unmodifiableCollection(this.statistics.values());
+    }
+
+    public void report(ShardManager shardManager) {
+        for (JDA shard : shardManager.getShards()) {
+            ShardStatistics shardStatistics = this.getStatistics(shard);
+
+            this.logger.info("Shard {}: {} guilds, {} ms gateway ping, {} events/s, {} events total, {} commands total, idle for {} ms.",
+                getShardId(shard),
+                shard.getGuilds().size(),
+                shard.getGatewayPing(),
+                String.format("%.2f", shardStatistics.pollEventRate()),
+                shardStatistics.getEvents(),
+                shardStatistics.getCommands(),
+                shardStatistics.getIdleMillis());
+        }
+    }
+
+    public static int getShardId(JDA jda) {
+        JDA.ShardInfo shardInfo = jda.getShardInfo();
+        return shardInfo == null ? 0 : shardInfo.getShardId();
+    }
+
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2022 zrdzn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.zrdzn.bot.xorbot.shard;
+
+import java.util.concurrent.atomic.LongAdder;
+
+public class ShardStatistics {
+
+    private final int shardId;
+    private final LongAdder events = new LongAdder();
+    private final LongAdder commands = new LongAdder();
+
+    private volatile long lastEventNanos = System.nanoTime();
+    private long lastReportedEvents;
+    private long lastReportNanos = System.nanoTime();
+
+    public ShardStatistics(int shardId) {
+        this.shardId = shardId;
+    }
+
+    void recordEvent() {
+        this.events.increment();
+        this.lastEventNanos = System.nanoTime();
+    }
+
+    void recordCommand() {
+        this.commands.increment();
+    }
+
+    /**
+     * Calculates the event rate since the previous call of this method.
+     * Should be called only from the single reporting thread.
+     *
+     * @return events per second since the last report
+     */
+    synchronized double pollEventRate() {
+        long now = System.nanoTime();
+        long total = this.events.sum();
+
+        double elapsedSeconds = (now - this.lastReportNanos) / 1_000_000_000.0D;
+        double rate = elapsedSeconds <= 0.0D ? 0.0D : (total - this.lastReportedEvents) / elapsedSeconds;
+
+        this.lastReportedEvents = total;
+        this.lastReportNanos = now;
+
+        return rate;
+    }
+
+    public int getShardId() {
+        return this.shardId;
+    }
+
+    public long getEvents() {
+        return this.events.sum();
+    }
+
+    public long getCommands() {
+        return this.commands.sum();
+    }
+
+    public long getIdleMillis() {
+        return (System.nanoTime() - this.lastEventNanos) / 1_000_000L;
+    }
+
+}
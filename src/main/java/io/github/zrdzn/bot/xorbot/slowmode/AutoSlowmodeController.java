@@ -0,0 +1,235 @@
+/*
+ * Copyright (c) 2022 zrdzn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.zrdzn.bot.xorbot.slowmode;
+
+import io.github.zrdzn.bot.xorbot.rest.RestPriority;
+import io.github.zrdzn.bot.xorbot.rest.RestScheduler;
+import net.dv8tion.jda.api.Permission;
+import net.dv8tion.jda.api.entities.TextChannel;
+import net.dv8tion.jda.api.sharding.ShardManager;
+import org.slf4j.Logger;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Adjusts slowmode of the enabled channels based on their message rate.
+ * <p>
+ * Slowmode is raised by one level when the rate is above the raise rate and lowered
+ * by one level when it is below the lower rate. The gap between both rates and the
+ * cooldown between changes keep the controller from flapping.
+ */
+public class AutoSlowmodeController {
+
+    private final AutoSlowmodeSettings settings;
+    private final int[] levels;
+    private final RestScheduler restScheduler;
+    private final Logger logger;
+    private final Map<Long, ChannelState> channels = new ConcurrentHashMap<>();
+
+    private final LongAdder raises = new LongAdder();
+    private final LongAdder lowers = new LongAdder();
+    private final LongAdder heldByCooldown = new LongAdder();
+
+    private ShardManager shardManager;
+
+    public AutoSlowmodeController(AutoSlowmodeSettings settings, RestScheduler restScheduler, Logger logger) {
+        this.settings = settings;
+        this.levels = settings.getLevels();
+        this.restScheduler = restScheduler;
+        this.logger = logger;
+
+        // Levels of configured channels are taken from their current slowmode on the first evaluation.
+        settings.getChannels().forEach(channelId -> this.channels.put(channelId, new ChannelState(-1)));
+    }
+
+    public void start(ShardManager shardManager, ScheduledExecutorService scheduler) {
+        this.shardManager = shardManager;
+
+        long interval = this.settings.getIntervalSeconds();
+        scheduler.scheduleAtFixedRate(this::evaluate, interval, interval, TimeUnit.SECONDS);
+    }
+
+    public void recordMessage(long channelId, long nowMillis) {
+        ChannelState state = this.channels.get(channelId);
+        if (state == null) {
+            return;
+        }
+
+        state.rate.record(nowMillis);
+    }
+
+    public void enable(TextChannel channel) {
+        this.channels.computeIfAbsent(channel.getIdLong(), channelId -> new ChannelState(this.findLevelIndex(channel.getSlowmode())));
+    }
+
+    public boolean disable(long channelId) {
+        return this.channels.remove(channelId) != null;
+    }
+
+    public boolean isEnabled(long channelId) {
+        return this.channels.containsKey(channelId);
+    }
+
+    void evaluate() {
+        if (this.shardManager == null) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+
+        this.channels.forEach((channelId, state) -> {
+            TextChannel channel = this.shardManager.getTextChannelById(channelId);
+            if (channel == null) {
+                return;
+            }
+
+            // One failing channel must not cancel the scheduled evaluation of the others.
+            try {
+                this.evaluate(channel, state, now);
+            } catch (RuntimeException exception) {
+                this.logger.error("Could not evaluate auto slowmode of #{} ({}).", channel.getName(), channelId, exception);
+            }
+        });
+    }
+
+    private void evaluate(TextChannel channel, ChannelState state, long now) {
+        if (state.levelIndex < 0) {
+            state.levelIndex = this.findLevelIndex(channel.getSlowmode());
+        }
+
+        // The previous change is still queued, its level is not known yet.
+        if (state.pending) {
+            return;
+        }
+
+        double rate = state.rate.getRate(now);
+
+        int targetIndex = state.levelIndex;
+        if (rate > this.settings.getRaiseRate() && targetIndex < this.levels.length - 1) {
+            targetIndex++;
+        } else if (rate < this.settings.getLowerRate() && targetIndex > 0) {
+            targetIndex--;
+        }
+
+        if (targetIndex == state.levelIndex) {
+            return;
+        }
+
+        if (now - state.lastChangeMillis < this.settings.getCooldownMillis()) {
+            this.heldByCooldown.increment();
+            return;
+        }
+
+        if (!channel.getGuild().getSelfMember().hasPermission(channel, Permission.MANAGE_CHANNEL)) {
+            this.logger.warn("Missing permission to change auto slowmode of #{} ({}).", channel.getName(), channel.getIdLong());
+            state.lastChangeMillis = now;
+            return;
+        }
+
+        int previousLevel = this.levels[state.levelIndex];
+        int level = this.levels[targetIndex];
+        int finalTargetIndex = targetIndex;
+
+        state.pending = true;
+
+        this.restScheduler.queue(RestPriority.MODERATION, channel, channel.getManager().setSlowmode(Math.min(level, TextChannel.MAX_SLOWMODE)),
+            ignored -> {
+                state.levelIndex = finalTargetIndex;
+                state.lastChangeMillis = System.currentTimeMillis();
+                state.pending = false;
+
+                if (level > previousLevel) {
+                    this.raises.increment();
+                } else {
+                    this.lowers.increment();
+                }
+
+                this.logger.info("Auto slowmode of #{} ({}) changed from {} to {} seconds at {} messages/s.",
+                    channel.getName(), channel.getIdLong(), previousLevel, level, String.format("%.2f", rate));
+            },
+            failure -> {
+                // Failed changes wait for the cooldown as well, so a rejected request is not retried every interval.
+                state.lastChangeMillis = System.currentTimeMillis();
+                state.pending = false;
+
+                this.logger.warn("Could not change auto slowmode of #{} ({}).", channel.getName(), channel.getIdLong(), failure);
+            });
+    }
+
+    private int findLevelIndex(int slowmode) {
+        int index = 0;
+        while (index < this.levels.length - 1 && this.levels[index + 1] <= slowmode) {
+            index++;
+        }
+
+        return index;
+    }
+
+    public void report() {
+        this.logger.info("Auto slowmode: {} raises, {} lowers, {} changes held by cooldown.", this.getRaises(), this.getLowers(),
+            this.getHeldByCooldown());
+
+        this.getLevels().forEach((channelId, level) -> this.logger.info("Auto slowmode of channel {}: {} seconds.", channelId, level));
+    }
+
+    public long getRaises() {
+        return this.raises.sum();
+    }
+
+    public long getLowers() {
+        return this.lowers.sum();
+    }
+
+    public long getHeldByCooldown() {
+        return this.heldByCooldown.sum();
+    }
+
+    /**
+     * Gets the current slowmode level of every controlled channel.
+     *
+     * @return map of channel ids to slowmode seconds
+     */
+    public Map<Long, Integer> getLevels() {
+        Map<Long, Integer> result = new ConcurrentHashMap<>();
+        this.channels.forEach((channelId, state) -> {
+            // Channels not evaluated yet have no known level.
+            if (state.levelIndex >= 0) {
+                result.put(channelId, this.levels[state.levelIndex]);
+            }
+        });
+        return Collections.unmodifiableMap(result);
+    }
+
+    private class ChannelState {
+
+        private final DecayingRate rate = new DecayingRate(AutoSlowmodeController.this.settings.getHalfLifeMillis());
+
+        private volatile int levelIndex;
+        private volatile long lastChangeMillis;
+        private volatile boolean pending;
+
+        private ChannelState(int levelIndex) {
+            this.levelIndex = levelIndex;
+        }
+
+    }
+
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright (c) 2022 zrdzn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.zrdzn.bot.xorbot.slowmode;
+
+import io.github.zrdzn.bot.xorbot.gateway.EventDispatcher;
+import net.dv8tion.jda.api.events.message.MessageReceivedEvent;
+import org.jetbrains.annotations.NotNull;
+
+public class AutoSlowmodeListener {
+
+    private final AutoSlowmodeController controller;
+
+    public AutoSlowmodeListener(AutoSlowmodeController controller) {
+        this.controller = controller;
+    }
+
+    public void register(EventDispatcher dispatcher) {
+        dispatcher.registerGuildOnly(MessageReceivedEvent.class, "AutoSlowmodeListener#onMessageReceived", this::onMessageReceived);
+    }
+
+    public void onMessageReceived(@NotNull MessageReceivedEvent event) {
+        if (!event.isFromGuild() || event.getAuthor().isBot()) {
+            return;
+        }
+
+        this.controller.recordMessage(event.getChannel().getIdLong(), System.currentTimeMillis());
+    }
+
+}
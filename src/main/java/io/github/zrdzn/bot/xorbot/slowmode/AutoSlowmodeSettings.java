@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2022 zrdzn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.zrdzn.bot.xorbot.slowmode;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Properties;
+import java.util.Set;
+
+public class AutoSlowmodeSettings {
+
+    private int[] levels;
+    private double raiseRate;
+    private double lowerRate;
+    private long halfLifeMillis;
+    private long cooldownMillis;
+    private long intervalSeconds;
+    private Set<Long> channels;
+
+    private AutoSlowmodeSettings() {
+    }
+
+    /**
+     * Creates the settings from the bot configuration, missing keys use default values.
+     *
+     * @param configuration the bot configuration
+     *
+     * @return auto slowmode settings
+     *
+     * @throws IllegalArgumentException if any of the values is invalid
+     */
+    public static AutoSlowmodeSettings fromConfiguration(Properties configuration) {
+        AutoSlowmodeSettings settings = new AutoSlowmodeSettings();
+
+        settings.levels = Arrays.stream(configuration.getProperty("auto_slowmode_levels", "0,2,5,10,30,60").split(","))
+            .map(String::trim)
+            .filter(level -> !level.isEmpty())
+            .mapToInt(Integer::parseInt)
+            .sorted()
+            .distinct()
+            .toArray();
+        settings.raiseRate = Double.parseDouble(configuration.getProperty("auto_slowmode_raise_rate", "2.0").trim());
+        settings.lowerRate = Double.parseDouble(configuration.getProperty("auto_slowmode_lower_rate", "0.5").trim());
+        settings.halfLifeMillis = Long.parseLong(configuration.getProperty("auto_slowmode_half_life_seconds", "30").trim()) * 1000L;
+        settings.cooldownMillis = Long.parseLong(configuration.getProperty("auto_slowmode_cooldown_seconds", "120").trim()) * 1000L;
+        settings.intervalSeconds = Long.parseLong(configuration.getProperty("auto_slowmode_interval_seconds", "10").trim());
+
+        settings.channels = new HashSet<>();
+        for (String channelId : configuration.getProperty("auto_slowmode_channels", "").split(",")) {
+            if (!channelId.isBlank()) {
+                settings.channels.add(Long.parseLong(channelId.trim()));
+            }
+        }
+
+        if (settings.levels.length < 2 || settings.levels[0] < 0) {
+            throw new IllegalArgumentException("auto_slowmode_levels must contain at least two non-negative levels.");
+        }
+
+        if (settings.lowerRate >= settings.raiseRate) {
+            throw new IllegalArgumentException("auto_slowmode_lower_rate must be below auto_slowmode_raise_rate.");
+        }
+
+        if (settings.halfLifeMillis <= 0L || settings.intervalSeconds <= 0L) {
+            throw new IllegalArgumentException("Auto slowmode half-life and interval must be above 0.");
+        }
+
+        return settings;
+    }
+
+    public int[] getLevels() {
+        return this.levels.clone();
+    }
+
+    public double getRaiseRate() {
+        return this.raiseRate;
+    }
+
+    public double getLowerRate() {
+        return this.lowerRate;
+    }
+
+    public long getHalfLifeMillis() {
+        return this.halfLifeMillis;
+    }
+
+    public long getCooldownMillis() {
+        return this.cooldownMillis;
+    }
+
+    public long getIntervalSeconds() {
+        return this.intervalSeconds;
+    }
+
+    public Set<Long> getChannels() {
+        return this.channels;
+    }
+
+}
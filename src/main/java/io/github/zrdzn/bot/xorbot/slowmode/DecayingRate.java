@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2022 zrdzn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.zrdzn.bot.xorbot.slowmode;
+
+/**
+ * Exponentially decayed event rate. Every event adds 1 to the accumulator,
+ * which halves every half-life, so recent events weigh more than old ones.
+ */
+public class DecayingRate {
+
+    private final double decayPerMilli;
+    private final double rateFactor;
+
+    private double accumulator;
+    private long lastUpdateMillis;
+
+    public DecayingRate(long halfLifeMillis) {
+        this.decayPerMilli = Math.log(2.0D) / halfLifeMillis;
+        // Steady state of the accumulator is rate / decay, this brings it back to events per second.
+        this.rateFactor = this.decayPerMilli * 1000.0D;
+    }
+
+    public synchronized void record(long nowMillis) {
+        this.decay(nowMillis);
+        this.accumulator += 1.0D;
+    }
+
+    /**
+     * Gets the estimated rate at the given time.
+     *
+     * @param nowMillis current time in milliseconds
+     *
+     * @return estimated amount of events per second
+     */
+    public synchronized double getRate(long nowMillis) {
+        this.decay(nowMillis);
+        return this.accumulator * this.rateFactor;
+    }
+
+    private void decay(long nowMillis) {
+        long elapsed = nowMillis - this.lastUpdateMillis;
+        if (elapsed > 0L) {
+            this.accumulator *= Math.exp(-this.decayPerMilli * elapsed);
+            this.lastUpdateMillis = nowMillis;
+        }
+    }
+
+}
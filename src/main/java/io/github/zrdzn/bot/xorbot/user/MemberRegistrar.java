@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2022 zrdzn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.zrdzn.bot.xorbot.user;
+
+import io.github.zrdzn.bot.xorbot.gateway.EventDispatcher;
+import net.dv8tion.jda.api.entities.Guild;
+import net.dv8tion.jda.api.events.guild.GuildJoinEvent;
+import net.dv8tion.jda.api.events.guild.GuildReadyEvent;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registers the members of a guild in bulk when the bot joins it or it becomes ready,
+ * so commands do not have to create users on first use.
+ * <p>
+ * Members are streamed from the gateway and inserted in chunks, one chunk after another,
+ * without holding the whole member list. Registered users are loaded into the cache by
+ * a reconciliation once the guild is done.
+ */
+public class MemberRegistrar {
+
+    private final XorUserService userService;
+    private final int chunkSize;
+    private final Logger logger;
+
+    private final Set<Long> registeredGuilds = ConcurrentHashMap.newKeySet();
+
+    public MemberRegistrar(XorUserService userService, int chunkSize, Logger logger) {
+        this.userService = userService;
+        this.chunkSize = chunkSize;
+        this.logger = logger;
+    }
+
+    public void register(EventDispatcher dispatcher) {
+        dispatcher.register(GuildJoinEvent.class, "MemberRegistrar#onGuildJoin", this::onGuildJoin);
+        dispatcher.register(GuildReadyEvent.class, "MemberRegistrar#onGuildReady", this::onGuildReady);
+    }
+
+    public void onGuildJoin(@NotNull GuildJoinEvent event) {
+        this.registerMembers(event.getGuild());
+    }
+
+    public void onGuildReady(@NotNull GuildReadyEvent event) {
+        this.registerMembers(event.getGuild());
+    }
+
+    /**
+     * Registers every member of the guild that is not registered yet. Guilds are registered
+     * once per run, later ready events after reconnects are ignored.
+     *
+     * @param guild the guild
+     */
+    public void registerMembers(Guild guild) {
+        long guildId = guild.getIdLong();
+        if (!this.registeredGuilds.add(guildId)) {
+            return;
+        }
+
+        long start = System.currentTimeMillis();
+        MemberChunks chunks = new MemberChunks();
+
+        guild.loadMembers(member -> {
+                if (!member.getUser().isBot()) {
+                    chunks.add(member.getIdLong(), member.getUser().getName());
+                }
+            })
+            .onSuccess(ignored -> chunks.finish().whenComplete((registered, throwable) -> {
+                if (throwable != null) {
+                    this.registeredGuilds.remove(guildId);
+                    this.logger.warn("Could not register members of guild {} ({}), retrying on the next ready event.",
+                        guild.getName(), guildId, throwable);
+                    return;
+                }
+
+                if (registered > 0) {
+                    this.userService.reconcile();
+                }
+
+                this.logger.info("Registered {} new members of guild {} ({}) in {} ms.", registered, guild.getName(), guildId,
+                    System.currentTimeMillis() - start);
+            }))
+            .onError(exception -> {
+                this.registeredGuilds.remove(guildId);
+                this.logger.warn("Could not load members of guild {} ({}).", guild.getName(), guildId, exception);
+            });
+    }
+
+    /**
+     * Collects streamed members into chunks and inserts every full chunk after the previous one.
+     */
+    private class MemberChunks {
+
+        private Map<Long, String> chunk = new HashMap<>();
+        private CompletableFuture<Integer> inserted = CompletableFuture.completedFuture(0);
+
+        private synchronized void add(long discordId, String username) {
+            this.chunk.put(discordId, username);
+            if (this.chunk.size() >= MemberRegistrar.this.chunkSize) {
+                this.insertChunk();
+            }
+        }
+
+        private synchronized CompletableFuture<Integer> finish() {
+            if (!this.chunk.isEmpty()) {
+                this.insertChunk();
+            }
+
+            return this.inserted;
+        }
+
+        private void insertChunk() {
+            Map<Long, String> usernames = this.chunk;
+            this.chunk = new HashMap<>();
+
+            this.inserted = this.inserted.thenCompose(total -> MemberRegistrar.this.userService.createUsers(usernames)
+                .thenApply(created -> {
+                    if (created < 0) {
+                        throw new IllegalStateException("Could not insert a chunk of " + usernames.size() + " members.");
+                    }
+
+                    return total + created;
+                }));
+        }
+
+    }
+
+}
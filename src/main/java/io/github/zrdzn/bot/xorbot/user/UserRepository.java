@@ -16,6 +16,7 @@
 package io.github.zrdzn.bot.xorbot.user;
 
 import com.zaxxer.hikari.HikariDataSource;
+import io.github.zrdzn.bot.xorbot.database.Deadline;
 import org.slf4j.Logger;
 
 import java.sql.Connection;
@@ -23,12 +24,19 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 public class UserRepository {
 
+    private static final int BULK_CHUNK_SIZE = 1000;
+
     private final HikariDataSource dataSource;
     private final Logger logger;
 
@@ -45,6 +53,8 @@ public class UserRepository {
         try (Connection connection = this.dataSource.getConnection();
              PreparedStatement statement = connection.prepareStatement("INSERT INTO users (discord_id, username, balance) VALUES (?, ?, ?);",
                      Statement.RETURN_GENERATED_KEYS)) {
+            Deadline.applyQueryTimeout(statement);
+
             statement.setLong(1, discordId);
             statement.setString(2, username);
             statement.setLong(3, balance);
@@ -58,16 +68,112 @@ public class UserRepository {
         }
     }
 
+    /**
+     * Inserts every user that does not exist yet, with chunked multi-row statements.
+     *
+     * @param usernames usernames by discord ids
+     *
+     * @return amount of inserted users, -1 if the insert failed
+     */
+    public int saveAll(Map<Long, String> usernames) {
+        List<Map.Entry<Long, String>> entries = new ArrayList<>(usernames.entrySet());
+
+        int inserted = 0;
+        try (Connection connection = this.dataSource.getConnection()) {
+            for (int start = 0; start < entries.size(); start += BULK_CHUNK_SIZE) {
+                List<Map.Entry<Long, String>> chunk = entries.subList(start, Math.min(start + BULK_CHUNK_SIZE, entries.size()));
+
+                StringBuilder query = new StringBuilder(64 + chunk.size() * 13)
+                    .append("INSERT IGNORE INTO users (discord_id, username, balance) VALUES ");
+                for (int index = 0; index < chunk.size(); index++) {
+                    query.append(index == 0 ? "(?, ?, 0)" : ", (?, ?, 0)");
+                }
+                query.append(';');
+
+                try (PreparedStatement statement = connection.prepareStatement(query.toString())) {
+                    Deadline.applyQueryTimeout(statement);
+
+                    int parameter = 1;
+                    for (Map.Entry<Long, String> entry : chunk) {
+                        statement.setLong(parameter++, entry.getKey());
+                        statement.setString(parameter++, entry.getValue());
+                    }
+
+                    inserted += statement.executeUpdate();
+                }
+            }
+
+            return inserted;
+        } catch (SQLException exception) {
+            this.logger.error("Could not insert users into database.", exception);
+            return -1;
+        }
+    }
+
+    /**
+     * Updates the usernames of the registered users, with chunked statements on one connection.
+     * Users that are not registered are skipped.
+     *
+     * @param usernames new usernames by discord ids
+     *
+     * @return amount of updated users, -1 if the update failed
+     */
+    public int updateUsernames(Map<Long, String> usernames) {
+        List<Map.Entry<Long, String>> entries = new ArrayList<>(usernames.entrySet());
+
+        int updated = 0;
+        try (Connection connection = this.dataSource.getConnection()) {
+            for (int start = 0; start < entries.size(); start += BULK_CHUNK_SIZE) {
+                List<Map.Entry<Long, String>> chunk = entries.subList(start, Math.min(start + BULK_CHUNK_SIZE, entries.size()));
+
+                StringBuilder query = new StringBuilder(96 + chunk.size() * 16)
+                    .append("UPDATE users SET username = CASE discord_id");
+                for (int index = 0; index < chunk.size(); index++) {
+                    query.append(" WHEN ? THEN ?");
+                }
+                query.append(" ELSE username END WHERE discord_id IN (");
+                for (int index = 0; index < chunk.size(); index++) {
+                    query.append(index == 0 ? "?" : ", ?");
+                }
+                query.append(");");
+
+                try (PreparedStatement statement = connection.prepareStatement(query.toString())) {
+                    Deadline.applyQueryTimeout(statement);
+
+                    // Ids are bound as strings, comparing the VARCHAR column with numbers would go through doubles.
+                    int parameter = 1;
+                    for (Map.Entry<Long, String> entry : chunk) {
+                        statement.setString(parameter++, String.valueOf(entry.getKey()));
+                        statement.setString(parameter++, entry.getValue());
+                    }
+
+                    for (Map.Entry<Long, String> entry : chunk) {
+                        statement.setString(parameter++, String.valueOf(entry.getKey()));
+                    }
+
+                    updated += statement.executeUpdate();
+                }
+            }
+
+            return updated;
+        } catch (SQLException exception) {
+            this.logger.error("Could not update usernames in database.", exception);
+            return -1;
+        }
+    }
+
     public List<User> list() {
         List<User> users = new ArrayList<>();
         try (Connection connection = this.dataSource.getConnection();
              PreparedStatement statement = connection.prepareStatement("SELECT * FROM users;")) {
+            Deadline.applyQueryTimeout(statement);
+
             ResultSet result = statement.executeQuery();
             if (result == null) {
                 return users;
             }
 
-            if (result.next()) {
+            while (result.next()) {
                 users.add(XorUser.builder()
                     .id(result.getLong("id"))
                     .discordId(result.getLong("discord_id"))
@@ -83,6 +189,42 @@ public class UserRepository {
         }
     }
 
+    /**
+     * Streams every user inserted or updated at or after the given watermark.
+     *
+     * @param watermark the epoch millis of the last seen update
+     * @param consumer the consumer of the updated users
+     *
+     * @return the new watermark, unchanged if nothing was updated
+     */
+    public long listUpdatedSince(long watermark, Consumer<User> consumer) {
+        try (Connection connection = this.dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement("SELECT * FROM users WHERE updated_at >= ?;")) {
+            Deadline.applyQueryTimeout(statement);
+
+            statement.setTimestamp(1, new Timestamp(watermark));
+
+            ResultSet result = statement.executeQuery();
+
+            long newWatermark = watermark;
+            while (result.next()) {
+                consumer.accept(XorUser.builder()
+                    .id(result.getLong("id"))
+                    .discordId(result.getLong("discord_id"))
+                    .username(result.getString("username"))
+                    .balance(result.getLong("balance"))
+                    .build());
+
+                newWatermark = Math.max(newWatermark, result.getTimestamp("updated_at").getTime());
+            }
+
+            return newWatermark;
+        } catch (SQLException exception) {
+            this.logger.error("Could not select updated users from database.", exception);
+            return watermark;
+        }
+    }
+
     public boolean deleteByDiscordId(long discordId) {
         if (!this.existsByDiscordId(discordId)) {
             return false;
@@ -90,6 +232,8 @@ public class UserRepository {
 
         try (Connection connection = this.dataSource.getConnection();
              PreparedStatement statement = connection.prepareStatement("DELETE FROM users WHERE discord_id = ? LIMIT 1;")) {
+            Deadline.applyQueryTimeout(statement);
+
             statement.setLong(1, discordId);
 
             return statement.executeUpdate() == 1;
@@ -102,6 +246,8 @@ public class UserRepository {
     public Optional<User> findByDiscordId(long discordId) {
         try (Connection connection = this.dataSource.getConnection();
              PreparedStatement statement = connection.prepareStatement("SELECT * FROM users WHERE discord_id = ?;")) {
+            Deadline.applyQueryTimeout(statement);
+
             statement.setLong(1, discordId);
 
             ResultSet result = statement.executeQuery();
@@ -121,9 +267,55 @@ public class UserRepository {
         }
     }
 
+    /**
+     * Selects every user with a single query.
+     *
+     * @param discordIds discord ids of the users
+     *
+     * @return users by discord ids, users that do not exist are missing, empty if the query failed
+     */
+    public Optional<Map<Long, User>> findAllByDiscordIds(Collection<Long> discordIds) {
+        Map<Long, User> users = new HashMap<>();
+
+        StringBuilder query = new StringBuilder("SELECT * FROM users WHERE discord_id IN (");
+        for (int index = 0; index < discordIds.size(); index++) {
+            query.append(index == 0 ? "?" : ", ?");
+        }
+        query.append(");");
+
+        try (Connection connection = this.dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(query.toString())) {
+            Deadline.applyQueryTimeout(statement);
+
+            int parameter = 1;
+            for (long discordId : discordIds) {
+                statement.setString(parameter++, String.valueOf(discordId));
+            }
+
+            ResultSet result = statement.executeQuery();
+            while (result.next()) {
+                User user = XorUser.builder()
+                    .id(result.getLong("id"))
+                    .discordId(result.getLong("discord_id"))
+                    .username(result.getString("username"))
+                    .balance(result.getLong("balance"))
+                    .build();
+
+                users.put(user.getDiscordId(), user);
+            }
+
+            return Optional.of(users);
+        } catch (SQLException exception) {
+            this.logger.error("Could not select users from database.", exception);
+            return Optional.empty();
+        }
+    }
+
     public boolean existsByDiscordId(long discordId) {
         try (Connection connection = this.dataSource.getConnection();
              PreparedStatement statement = connection.prepareStatement("SELECT id FROM users WHERE discord_id = ?;")){
+            Deadline.applyQueryTimeout(statement);
+
             statement.setLong(1, discordId);
 
             return statement.executeQuery().next();
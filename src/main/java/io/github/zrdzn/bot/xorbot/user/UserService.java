@@ -15,6 +15,7 @@
  */
 package io.github.zrdzn.bot.xorbot.user;
 
+import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 
@@ -31,6 +32,15 @@ public interface UserService {
      */
     CompletableFuture<Optional<User>> createUser(long discordId, String username, long balance);
 
+    /**
+     * Creates every User that does not exist yet and adds them to the database.
+     *
+     * @param usernames usernames of the users by discord ids
+     *
+     * @return amount of newly created users, if -1 it means something went wrong
+     */
+    CompletableFuture<Integer> createUsers(Map<Long, String> usernames);
+
     /**
      * Removes User by discord id from the database.
      *
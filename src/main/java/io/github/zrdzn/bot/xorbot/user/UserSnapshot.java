@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2022 zrdzn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.zrdzn.bot.xorbot.user;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Column-oriented copy of the cached users. Every user is stored as one slot
+ * in the primitive arrays, usernames are deduplicated into a shared table.
+ */
+public class UserSnapshot {
+
+    private final long watermark;
+    private final long[] discordIds;
+    private final long[] ids;
+    private final long[] balances;
+    private final int[] usernameIndexes;
+    private final String[] usernames;
+
+    UserSnapshot(long watermark, long[] discordIds, long[] ids, long[] balances, int[] usernameIndexes, String[] usernames) {
+        this.watermark = watermark;
+        this.discordIds = discordIds;
+        this.ids = ids;
+        this.balances = balances;
+        this.usernameIndexes = usernameIndexes;
+        this.usernames = usernames;
+    }
+
+    public static UserSnapshot of(Collection<User> users, long watermark) {
+        int size = users.size();
+
+        long[] discordIds = new long[size];
+        long[] ids = new long[size];
+        long[] balances = new long[size];
+        int[] usernameIndexes = new int[size];
+
+        Map<String, Integer> usernameTable = new HashMap<>();
+        List<String> usernames = new ArrayList<>();
+
+        int slot = 0;
+        for (User user : users) {
+            if (slot == size) {
+                // Users were added concurrently, they will be picked up by the next snapshot.
+                break;
+            }
+
+            discordIds[slot] = user.getDiscordId();
+            ids[slot] = user.getId();
+            balances[slot] = user.getBalance();
+            usernameIndexes[slot] = usernameTable.computeIfAbsent(user.getUsername(), username -> {
+                usernames.add(username);
+                return usernames.size() - 1;
+            });
+
+            slot++;
+        }
+
+        if (slot < size) {
+            discordIds = Arrays.copyOf(discordIds, slot);
+            ids = Arrays.copyOf(ids, slot);
+            balances = Arrays.copyOf(balances, slot);
+            usernameIndexes = Arrays.copyOf(usernameIndexes, slot);
+        }
+
+        return new UserSnapshot(watermark, discordIds, ids, balances, usernameIndexes, usernames.toArray(new String[0]));
+    }
+
+    public List<User> toUsers() {
+        List<User> users = new ArrayList<>(this.discordIds.length);
+
+        for (int slot = 0; slot < this.discordIds.length; slot++) {
+            users.add(XorUser.builder()
+                .id(this.ids[slot])
+                .discordId(this.discordIds[slot])
+                .username(this.usernames[this.usernameIndexes[slot]])
+                .balance(this.balances[slot])
+                .build());
+        }
+
+        return users;
+    }
+
+    public long getWatermark() {
+        return this.watermark;
+    }
+
+    public int getSize() {
+        return this.discordIds.length;
+    }
+
+    long[] getDiscordIds() {
+        return this.discordIds;
+    }
+
+    long[] getIds() {
+        return this.ids;
+    }
+
+    long[] getBalances() {
+        return this.balances;
+    }
+
+    int[] getUsernameIndexes() {
+        return this.usernameIndexes;
+    }
+
+    String[] getUsernames() {
+        return this.usernames;
+    }
+
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright (c) 2022 zrdzn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.zrdzn.bot.xorbot.user;
+
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
+
+/**
+ * Reads and writes {@link UserSnapshot} in the following binary layout:
+ * magic, version, watermark, user count, discord ids, ids, balances,
+ * username indexes, username count and length-prefixed UTF-8 usernames.
+ */
+public class UserSnapshotStore {
+
+    private static final int MAGIC = 0x58555352;
+    private static final int VERSION = 1;
+
+    private final Path file;
+    private final Logger logger;
+
+    public UserSnapshotStore(Path file, Logger logger) {
+        this.file = file;
+        this.logger = logger;
+    }
+
+    public Optional<UserSnapshot> load() {
+        if (Files.notExists(this.file)) {
+            return Optional.empty();
+        }
+
+        try (FileChannel channel = FileChannel.open(this.file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0L, channel.size());
+
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                this.logger.warn("User snapshot {} has unknown format, ignoring it.", this.file);
+                return Optional.empty();
+            }
+
+            long watermark = buffer.getLong();
+            int size = buffer.getInt();
+
+            // Counts are checked against the file length, so a corrupted count cannot allocate huge arrays.
+            if (size < 0 || (long) size * (Long.BYTES * 3 + Integer.BYTES) > buffer.remaining()) {
+                this.logger.warn("User snapshot {} has invalid user count {}, ignoring it.", this.file, size);
+                return Optional.empty();
+            }
+
+            long[] discordIds = new long[size];
+            long[] ids = new long[size];
+            long[] balances = new long[size];
+            int[] usernameIndexes = new int[size];
+
+            buffer.asLongBuffer().get(discordIds);
+            buffer.position(buffer.position() + size * Long.BYTES);
+            buffer.asLongBuffer().get(ids);
+            buffer.position(buffer.position() + size * Long.BYTES);
+            buffer.asLongBuffer().get(balances);
+            buffer.position(buffer.position() + size * Long.BYTES);
+            buffer.asIntBuffer().get(usernameIndexes);
+            buffer.position(buffer.position() + size * Integer.BYTES);
+
+            int usernameCount = buffer.getInt();
+            if (usernameCount < 0 || (long) usernameCount * Short.BYTES > buffer.remaining()) {
+                this.logger.warn("User snapshot {} has invalid username count {}, ignoring it.", this.file, usernameCount);
+                return Optional.empty();
+            }
+
+            for (int usernameIndex : usernameIndexes) {
+                if (usernameIndex < 0 || usernameIndex >= usernameCount) {
+                    this.logger.warn("User snapshot {} has invalid username index {}, ignoring it.", this.file, usernameIndex);
+                    return Optional.empty();
+                }
+            }
+
+            String[] usernames = new String[usernameCount];
+            byte[] usernameBytes = new byte[Short.MAX_VALUE];
+            for (int index = 0; index < usernames.length; index++) {
+                int length = buffer.getShort();
+                buffer.get(usernameBytes, 0, length);
+                usernames[index] = new String(usernameBytes, 0, length, StandardCharsets.UTF_8);
+            }
+
+            return Optional.of(new UserSnapshot(watermark, discordIds, ids, balances, usernameIndexes, usernames));
+        } catch (IOException | BufferUnderflowException | IndexOutOfBoundsException exception) {
+            this.logger.error("Could not read user snapshot {}.", this.file, exception);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Writes the snapshot to a temporary file and moves it over the snapshot file.
+     * Saves are serialized, as all of them share the same temporary file.
+     *
+     * @param snapshot the snapshot to write
+     *
+     * @return true if the snapshot was written
+     */
+    public synchronized boolean save(UserSnapshot snapshot) {
+        int size = snapshot.getSize();
+
+        byte[][] usernames = new byte[snapshot.getUsernames().length][];
+        int usernamesLength = 0;
+        for (int index = 0; index < usernames.length; index++) {
+            usernames[index] = snapshot.getUsernames()[index].getBytes(StandardCharsets.UTF_8);
+            usernamesLength += Short.BYTES + usernames[index].length;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(Integer.BYTES * 3 + Long.BYTES
+            + size * (Long.BYTES * 3 + Integer.BYTES)
+            + Integer.BYTES + usernamesLength);
+
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+        buffer.putLong(snapshot.getWatermark());
+        buffer.putInt(size);
+
+        buffer.asLongBuffer().put(snapshot.getDiscordIds());
+        buffer.position(buffer.position() + size * Long.BYTES);
+        buffer.asLongBuffer().put(snapshot.getIds());
+        buffer.position(buffer.position() + size * Long.BYTES);
+        buffer.asLongBuffer().put(snapshot.getBalances());
+        buffer.position(buffer.position() + size * Long.BYTES);
+        buffer.asIntBuffer().put(snapshot.getUsernameIndexes());
+        buffer.position(buffer.position() + size * Integer.BYTES);
+
+        buffer.putInt(usernames.length);
+        for (byte[] username : usernames) {
+            buffer.putShort((short) username.length);
+            buffer.put(username);
+        }
+
+        buffer.flip();
+
+        Path temporaryFile = this.file.resolveSibling(this.file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporaryFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+
+            channel.force(true);
+        } catch (IOException exception) {
+            this.logger.error("Could not write user snapshot {}.", temporaryFile, exception);
+            return false;
+        }
+
+        try {
+            Files.move(temporaryFile, this.file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException exception) {
+            this.logger.error("Could not replace user snapshot {}.", this.file, exception);
+            return false;
+        }
+
+        return true;
+    }
+
+}
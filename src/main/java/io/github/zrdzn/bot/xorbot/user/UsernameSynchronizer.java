@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2022 zrdzn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.zrdzn.bot.xorbot.user;
+
+import io.github.zrdzn.bot.xorbot.database.CircuitBreaker;
+import io.github.zrdzn.bot.xorbot.gateway.EventDispatcher;
+import net.dv8tion.jda.api.events.message.MessageReceivedEvent;
+import net.dv8tion.jda.api.events.user.update.UserUpdateNameEvent;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps stored usernames current without writing on every name change.
+ * <p>
+ * Names seen in name updates and in messages are compared with the cached users, only
+ * the latest changed name of every registered user is kept until the next flush, which
+ * updates all of them with one batched statement per chunk.
+ */
+public class UsernameSynchronizer {
+
+    private final XorUserService userService;
+    private final UserRepository userRepository;
+    private final CircuitBreaker circuitBreaker;
+    private final Logger logger;
+
+    private final Map<Long, String> pending = new ConcurrentHashMap<>();
+    private final LongAdder recorded = new LongAdder();
+
+    public UsernameSynchronizer(XorUserService userService, UserRepository userRepository, CircuitBreaker circuitBreaker,
+                                Logger logger) {
+        this.userService = userService;
+        this.userRepository = userRepository;
+        this.circuitBreaker = circuitBreaker;
+        this.logger = logger;
+    }
+
+    public void register(EventDispatcher dispatcher) {
+        dispatcher.register(UserUpdateNameEvent.class, "UsernameSynchronizer#onUserUpdateName", this::onUserUpdateName);
+        // Name updates are only sent for cached users, messages catch the changes of the others.
+        dispatcher.registerGuildOnly(MessageReceivedEvent.class, "UsernameSynchronizer#onMessageReceived", this::onMessageReceived);
+    }
+
+    public void start(ScheduledExecutorService scheduler, long intervalSeconds) {
+        scheduler.scheduleWithFixedDelay(this::flush, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    public void onUserUpdateName(@NotNull UserUpdateNameEvent event) {
+        if (event.getUser().isBot()) {
+            return;
+        }
+
+        this.record(event.getUser().getIdLong(), event.getNewName());
+    }
+
+    public void onMessageReceived(@NotNull MessageReceivedEvent event) {
+        if (event.getAuthor().isBot()) {
+            return;
+        }
+
+        this.record(event.getAuthor().getIdLong(), event.getAuthor().getName());
+    }
+
+    /**
+     * Records the current name of the user, if the user is registered and the name differs
+     * from the stored one. A name recorded later replaces the pending one.
+     *
+     * @param discordId a discord id of the user
+     * @param username current name of the user
+     */
+    public void record(long discordId, String username) {
+        String storedUsername = this.userService.getCachedUsername(discordId);
+        if (storedUsername == null || storedUsername.equals(username)) {
+            return;
+        }
+
+        if (!username.equals(this.pending.put(discordId, username))) {
+            this.recorded.increment();
+        }
+    }
+
+    /**
+     * Writes every pending name. Names stay pending while the database is unavailable,
+     * names recorded during the write stay pending for the next flush.
+     */
+    public synchronized void flush() {
+        if (this.pending.isEmpty() || !this.circuitBreaker.tryAcquire()) {
+            return;
+        }
+
+        Map<Long, String> usernames = new HashMap<>(this.pending);
+
+        long start = System.nanoTime();
+        int updated = this.userRepository.updateUsernames(usernames);
+        if (updated < 0) {
+            this.circuitBreaker.recordFailure();
+            this.logger.warn("Could not update {} usernames, retrying with the next flush.", usernames.size());
+            return;
+        }
+
+        this.circuitBreaker.recordSuccess(System.nanoTime() - start);
+
+        usernames.forEach((discordId, username) -> {
+            this.pending.remove(discordId, username);
+            this.userService.updateCachedUsername(discordId, username);
+        });
+
+        this.logger.debug("Updated {} usernames, {} name changes recorded since start.", updated, this.recorded.sum());
+    }
+
+}
@@ -15,83 +15,231 @@
  */
 package io.github.zrdzn.bot.xorbot.user;
 
-import java.util.ArrayList;
+import io.github.zrdzn.bot.xorbot.database.BatchLoader;
+import io.github.zrdzn.bot.xorbot.database.CircuitBreaker;
+import io.github.zrdzn.bot.xorbot.database.DatabaseUnavailableException;
+import io.github.zrdzn.bot.xorbot.database.Deadline;
+
+import java.util.Collection;
 import java.util.Collections;
-import java.util.List;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class XorUserService implements UserService {
 
-    private final List<User> users;
+    private final Map<Long, User> users;
     private final UserRepository userRepository;
-
-    public XorUserService(UserRepository userRepository) {
-        this.users = new ArrayList<>();
+    private final BatchLoader<Long, User> userLoader;
+    private final CircuitBreaker circuitBreaker;
+
+    private volatile long watermark;
+
+    /**
+     * @param userRepository the user repository
+     * @param userLoader loader of users backed by {@link UserRepository#findAllByDiscordIds}
+     * @param circuitBreaker the database circuit breaker, lookups of uncached users fail fast while it is not closed
+     */
+    public XorUserService(UserRepository userRepository, BatchLoader<Long, User> userLoader, CircuitBreaker circuitBreaker) {
+        this.users = new ConcurrentHashMap<>();
         this.userRepository = userRepository;
+        this.userLoader = userLoader;
+        this.circuitBreaker = circuitBreaker;
     }
 
     public void loadUsers() {
-        this.users.addAll(this.userRepository.list());
+        this.users.clear();
+        this.watermark = 0L;
+        this.reconcile();
+    }
+
+    /**
+     * Populates the cache from the snapshot written by the previous run.
+     * Rows changed after the snapshot was taken are picked up by {@link #reconcile()}.
+     *
+     * @param snapshot the snapshot read at startup
+     */
+    public void loadSnapshot(UserSnapshot snapshot) {
+        snapshot.toUsers().forEach(this::cacheUser);
+        this.watermark = snapshot.getWatermark();
+    }
+
+    /**
+     * Refreshes every cached user that was inserted or updated in the database
+     * since the last reconciliation. Nothing is refreshed while the database is unavailable.
+     *
+     * @return amount of refreshed users
+     */
+    public synchronized int reconcile() {
+        if (!this.circuitBreaker.isClosed()) {
+            return 0;
+        }
+
+        int[] refreshed = new int[1];
+
+        this.watermark = this.userRepository.listUpdatedSince(this.watermark, user -> {
+            this.cacheUser(user);
+            refreshed[0]++;
+        });
+
+        return refreshed[0];
+    }
+
+    public void cacheUser(User user) {
+        this.users.put(user.getDiscordId(), user);
     }
 
     @Override
     public CompletableFuture<Optional<User>> createUser(long discordId, String username, long balance) {
-        return CompletableFuture.supplyAsync(() -> {
-            if (this.userRepository.save(discordId, username, balance)) {
-                return Optional.empty();
+        // Members are registered in bulk, so the first command of a user usually finds it here.
+        User cachedUser = this.users.get(discordId);
+        if (cachedUser != null) {
+            return CompletableFuture.completedFuture(Optional.of(cachedUser));
+        }
+
+        return Deadline.track(CompletableFuture.supplyAsync(Deadline.propagate(() -> {
+            if (!this.circuitBreaker.tryAcquire()) {
+                throw new DatabaseUnavailableException(false);
             }
 
-            this.userRepository.findByDiscordId(discordId).ifPresent(this.users::add);
+            long start = System.nanoTime();
+            try {
+                this.userRepository.save(discordId, username, balance);
+            } catch (UserCreationException exception) {
+                this.circuitBreaker.recordFailure();
+                throw exception;
+            }
 
-            return this.users.stream()
-                .filter(user -> user.getId() == discordId)
-                .findAny();
-        });
+            Optional<User> userMaybe = this.userRepository.findByDiscordId(discordId);
+            this.circuitBreaker.recordSuccess(System.nanoTime() - start);
+            userMaybe.ifPresent(this::cacheUser);
+
+            return userMaybe;
+        })));
+    }
+
+    @Override
+    public CompletableFuture<Integer> createUsers(Map<Long, String> usernames) {
+        return Deadline.track(CompletableFuture.supplyAsync(Deadline.propagate(() -> {
+            Map<Long, String> missingUsers = new HashMap<>(usernames);
+            missingUsers.keySet().removeIf(this.users::containsKey);
+
+            if (missingUsers.isEmpty()) {
+                return 0;
+            }
+
+            if (!this.circuitBreaker.isClosed()) {
+                throw new DatabaseUnavailableException(false);
+            }
+
+            return this.userRepository.saveAll(missingUsers);
+        })));
     }
 
     @Override
     public CompletableFuture<Void> removeUser(long discordId) {
-        return CompletableFuture.runAsync(() -> {
+        return Deadline.track(CompletableFuture.supplyAsync(Deadline.propagate(() -> {
+            if (!this.circuitBreaker.isClosed()) {
+                throw new DatabaseUnavailableException(false);
+            }
+
             if (this.userRepository.deleteByDiscordId(discordId)) {
-                return;
+                this.users.remove(discordId);
             }
 
-            this.users.removeIf(user -> user.getId() == discordId);
-        });
+            return null;
+        })));
     }
 
     @Override
     public CompletableFuture<Optional<User>> getUser(long discordId) {
-        return CompletableFuture.supplyAsync(() -> {
-            Optional<User> userMaybe = this.users.stream()
-                .filter(user -> user.getId() == discordId)
-                .findAny();
-            if (userMaybe.isPresent()) {
-                return userMaybe;
-            }
+        User cachedUser = this.users.get(discordId);
+        if (cachedUser != null) {
+            return CompletableFuture.completedFuture(Optional.of(cachedUser));
+        }
 
-            return this.userRepository.findByDiscordId(discordId);
-        });
+        return this.loadUser(discordId);
     }
 
     @Override
     public CompletableFuture<Boolean> userExists(long discordId) {
-        return CompletableFuture.supplyAsync(() -> {
-            if (this.users.stream().noneMatch(user -> user.getId() == discordId)) {
-                Optional<User> userMaybe = this.userRepository.findByDiscordId(discordId);
-                if (userMaybe.isPresent()) {
-                    this.users.add(userMaybe.get());
-                    return true;
-                }
+        if (this.users.containsKey(discordId)) {
+            return CompletableFuture.completedFuture(true);
+        }
+
+        return this.loadUser(discordId).thenApply(Optional::isPresent);
+    }
+
+    private CompletableFuture<Optional<User>> loadUser(long discordId) {
+        // Acquiring instead of checking the state lets a read probe a half-open breaker.
+        if (!this.circuitBreaker.tryAcquire()) {
+            return CompletableFuture.failedFuture(new DatabaseUnavailableException(false));
+        }
+
+        long start = System.nanoTime();
+        return Deadline.track(this.userLoader.load(discordId).whenComplete((user, exception) -> {
+            if (exception != null) {
+                this.circuitBreaker.recordFailure();
+            } else {
+                this.circuitBreaker.recordSuccess(System.nanoTime() - start);
+            }
+        }).thenApply(user -> {
+            if (user == null) {
+                return Optional.empty();
             }
 
-            return false;
-        });
+            this.cacheUser(user);
+            return Optional.of(user);
+        }));
+    }
+
+    /**
+     * Gets the balance of the cached user, as of the last reconciliation.
+     *
+     * @param discordId a discord id of the user
+     *
+     * @return balance of the user, or null if the user is not cached
+     */
+    public Long getCachedBalance(long discordId) {
+        User user = this.users.get(discordId);
+        return user == null ? null : user.getBalance();
+    }
+
+    /**
+     * Gets the stored username of the cached user.
+     *
+     * @param discordId a discord id of the user
+     *
+     * @return username of the user, or null if the user is not cached
+     */
+    public String getCachedUsername(long discordId) {
+        User user = this.users.get(discordId);
+        return user == null ? null : user.getUsername();
+    }
+
+    /**
+     * Replaces the username of the cached user, if it is cached.
+     *
+     * @param discordId a discord id of the user
+     * @param username the new username
+     */
+    public void updateCachedUsername(long discordId, String username) {
+        this.users.computeIfPresent(discordId, (key, user) -> new XorUser.Builder()
+            .id(user.getId())
+            .discordId(user.getDiscordId())
+            .username(username)
+            .balance(user.getBalance())
+            .build());
+    }
+
+    public Collection<User> getCachedUsers() {
+        return Collections.unmodifiableCollection(this.users.values());
     }
 
-    public List<User> getCachedUsers() {
-        return Collections.unmodifiableList(this.users);
+    public long getWatermark() {
+        return this.watermark;
     }
 
 }